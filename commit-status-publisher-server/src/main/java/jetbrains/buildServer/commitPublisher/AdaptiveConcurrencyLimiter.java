@@ -0,0 +1,173 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Limits the number of concurrent requests to a VCS hosting. The limit is adjusted per host:
+ * it grows additively while the requests succeed in time and is cut multiplicatively
+ * when the host responds with a retryable error code (429, 5xx) or the request fails with a network error.
+ * <p>
+ * Requests over the limit wait for a short while only, as the caller may hold the publishing lock of the revision
+ * and other events of the revision would wait for it. Then they are rejected with {@link PublishingThrottledException},
+ * and the status is published again later without being counted as a failure.
+ * </p>
+ */
+public class AdaptiveConcurrencyLimiter {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.adaptiveConcurrency.enabled";
+  static final String INITIAL_LIMIT_PROPERTY = "teamcity.commitStatusPublisher.adaptiveConcurrency.initialLimit";
+  static final String MIN_LIMIT_PROPERTY = "teamcity.commitStatusPublisher.adaptiveConcurrency.minLimit";
+  static final String MAX_LIMIT_PROPERTY = "teamcity.commitStatusPublisher.adaptiveConcurrency.maxLimit";
+  static final String HEALTHY_LATENCY_PROPERTY = "teamcity.commitStatusPublisher.adaptiveConcurrency.healthyLatencyMs";
+  static final String ACQUIRE_TIMEOUT_PROPERTY = "teamcity.commitStatusPublisher.adaptiveConcurrency.acquireTimeoutMs";
+  private static final int DEFAULT_INITIAL_LIMIT = 8;
+  private static final int DEFAULT_MIN_LIMIT = 1;
+  private static final int DEFAULT_MAX_LIMIT = 64;
+  private static final long DEFAULT_HEALTHY_LATENCY_MS = 5_000;
+  private static final long DEFAULT_ACQUIRE_TIMEOUT_MS = 2_000;
+  private static final long MIN_DECREASE_INTERVAL_MS = 1_000;
+  private static final double BACKOFF_RATIO = 0.5;
+
+  private static final Permit NO_LIMIT = outcome -> {};
+
+  private final ConcurrentMap<String, HostLimit> myLimits = new ConcurrentHashMap<>();
+  private final PublishingMetrics myMetrics;
+
+  public AdaptiveConcurrencyLimiter(@NotNull PublishingMetrics metrics) {
+    myMetrics = metrics;
+    myMetrics.registerGauges("adaptiveConcurrency.limit", this::getLimits);
+  }
+
+  public enum Outcome {
+    /** request has completed successfully */
+    SUCCESS,
+    /** the host is overloaded: retryable error code or network error */
+    OVERLOADED,
+    /** request has failed for a reason not related to the host load */
+    IGNORED
+  }
+
+  public interface Permit {
+    void release(@NotNull Outcome outcome);
+  }
+
+  /**
+   * Waits until a request to the host of the url can be made
+   * @return permit which must be released once the request is completed
+   * @throws PublishingThrottledException if the limit of concurrent requests to the host is still reached after the wait
+   */
+  @NotNull
+  public Permit acquire(@NotNull String url) throws PublisherException {
+    if (!TeamCityProperties.getBoolean(ENABLED_PROPERTY)) return NO_LIMIT;
+
+    final String host = GitRepositoryParser.extractHost(url);
+    final HostLimit limit = myLimits.computeIfAbsent(host, h -> new HostLimit());
+    try {
+      if (!limit.acquire(TeamCityProperties.getLong(ACQUIRE_TIMEOUT_PROPERTY, DEFAULT_ACQUIRE_TIMEOUT_MS))) {
+        myMetrics.increment("adaptiveConcurrency.rejected");
+        throw new PublishingThrottledException("Too many concurrent requests to " + host + ", current limit is " + limit.getLimit());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PublisherException("Interrupted while waiting for a request to " + host, e);
+    }
+    final long startTime = System.currentTimeMillis();
+    return outcome -> {
+      if (outcome == Outcome.SUCCESS && System.currentTimeMillis() - startTime > TeamCityProperties.getLong(HEALTHY_LATENCY_PROPERTY, DEFAULT_HEALTHY_LATENCY_MS)) {
+        outcome = Outcome.IGNORED;
+      }
+      limit.release(outcome);
+    };
+  }
+
+  /**
+   * Reports a network error or a failed response for the host which has happened outside a permit,
+   * e.g. rate limit exhaustion detected before the request
+   */
+  public void reportOverload(@NotNull String url) {
+    if (!TeamCityProperties.getBoolean(ENABLED_PROPERTY)) return;
+    myLimits.computeIfAbsent(GitRepositoryParser.extractHost(url), h -> new HostLimit()).decrease();
+  }
+
+  @NotNull
+  public static Outcome getOutcome(@NotNull Throwable t) {
+    if (t instanceof IOException || (t instanceof PublisherException && ((PublisherException)t).shouldRetry())) {
+      return Outcome.OVERLOADED;
+    }
+    return Outcome.IGNORED;
+  }
+
+  @NotNull
+  public static Outcome getOutcome(int statusCode) {
+    if (statusCode < 400) return Outcome.SUCCESS;
+    return RetryResponseProcessor.shouldRetryOnCode(statusCode) ? Outcome.OVERLOADED : Outcome.IGNORED;
+  }
+
+  @NotNull
+  Map<String, Integer> getLimits() {
+    Map<String, Integer> result = new TreeMap<>();
+    myLimits.forEach((host, limit) -> result.put(host, limit.getLimit()));
+    return result;
+  }
+
+  private static class HostLimit {
+    private double myLimit = TeamCityProperties.getInteger(INITIAL_LIMIT_PROPERTY, DEFAULT_INITIAL_LIMIT);
+    private int myInFlight = 0;
+    private long myLastDecreaseTime = 0;
+
+    synchronized boolean acquire(long timeoutMs) throws InterruptedException {
+      final long deadline = System.currentTimeMillis() + timeoutMs;
+      while (myInFlight >= getLimit()) {
+        final long timeToWait = deadline - System.currentTimeMillis();
+        if (timeToWait <= 0) return false;
+        wait(timeToWait);
+      }
+      myInFlight++;
+      return true;
+    }
+
+    synchronized void release(@NotNull Outcome outcome) {
+      final boolean limitReached = myInFlight >= getLimit();
+      myInFlight--;
+      if (outcome == Outcome.OVERLOADED) {
+        decrease();
+      } else if (outcome == Outcome.SUCCESS && limitReached) {
+        // grows by one when the whole window of requests has succeeded
+        myLimit = Math.min(TeamCityProperties.getInteger(MAX_LIMIT_PROPERTY, DEFAULT_MAX_LIMIT), myLimit + 1.0 / myLimit);
+      }
+      notifyAll();
+    }
+
+    synchronized void decrease() {
+      long now = System.currentTimeMillis();
+      if (now - myLastDecreaseTime < MIN_DECREASE_INTERVAL_MS) return;
+      myLastDecreaseTime = now;
+      myLimit = Math.max(Math.max(1, TeamCityProperties.getInteger(MIN_LIMIT_PROPERTY, DEFAULT_MIN_LIMIT)), myLimit * BACKOFF_RATIO);
+    }
+
+    synchronized int getLimit() {
+      return Math.max(1, (int)myLimit);
+    }
+  }
+}
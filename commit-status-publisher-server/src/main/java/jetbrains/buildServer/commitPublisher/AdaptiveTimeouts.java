@@ -0,0 +1,126 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Derives request timeouts from the latencies observed per VCS host: the timeout is the 99th percentile
+ * of the recent latencies multiplied by a factor, bounded by a floor and by the configured timeout.
+ * The configured timeout is used until enough latencies are observed.
+ */
+public class AdaptiveTimeouts {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.adaptiveTimeout.enabled";
+  static final String MULTIPLIER_PROPERTY = "teamcity.commitStatusPublisher.adaptiveTimeout.multiplier";
+  static final String FLOOR_PROPERTY = "teamcity.commitStatusPublisher.adaptiveTimeout.floorMs";
+  static final String MIN_SAMPLES_PROPERTY = "teamcity.commitStatusPublisher.adaptiveTimeout.minSamples";
+  static final String RETRY_ON_TIMEOUT_PROPERTY = "teamcity.commitStatusPublisher.adaptiveTimeout.retryGetOnTimeout";
+  private static final int DEFAULT_MULTIPLIER = 3;
+  private static final int DEFAULT_FLOOR_MS = 2000;
+  private static final int DEFAULT_MIN_SAMPLES = 20;
+  private static final int SAMPLES_COUNT = 200;
+  private static final int RECALCULATE_EVERY = 10;
+
+  private final ConcurrentMap<String, Latencies> myLatencies = new ConcurrentHashMap<>();
+
+  public AdaptiveTimeouts(@NotNull PublishingMetrics metrics) {
+    metrics.registerGauges("adaptiveTimeout.p99", this::getPercentiles);
+  }
+
+  public static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(ENABLED_PROPERTY);
+  }
+
+  /**
+   * @return true if a GET request which has timed out with the adaptive timeout should be repeated once with the configured timeout
+   */
+  public static boolean isRetryOnTimeoutEnabled() {
+    return isEnabled() && TeamCityProperties.getBooleanOrTrue(RETRY_ON_TIMEOUT_PROPERTY);
+  }
+
+  /**
+   * @param url request url
+   * @param configuredTimeout timeout configured for the request, the adaptive timeout never exceeds it
+   * @return timeout to use for the request in milliseconds
+   */
+  public int getTimeout(@NotNull String url, int configuredTimeout) {
+    if (!isEnabled()) return configuredTimeout;
+    Latencies latencies = myLatencies.get(GitRepositoryParser.extractHost(url));
+    if (latencies == null) return configuredTimeout;
+    long p99 = latencies.getPercentile99(TeamCityProperties.getInteger(MIN_SAMPLES_PROPERTY, DEFAULT_MIN_SAMPLES));
+    if (p99 < 0) return configuredTimeout;
+    long timeout = Math.max(TeamCityProperties.getInteger(FLOOR_PROPERTY, DEFAULT_FLOOR_MS), p99 * TeamCityProperties.getInteger(MULTIPLIER_PROPERTY, DEFAULT_MULTIPLIER));
+    return (int)Math.min(configuredTimeout, timeout);
+  }
+
+  /**
+   * Records the time the host took to respond. Requests that have timed out should be recorded with the timeout value
+   */
+  public void recordLatency(@NotNull String url, long latencyMs) {
+    if (!isEnabled()) return;
+    myLatencies.computeIfAbsent(GitRepositoryParser.extractHost(url), h -> new Latencies()).add(latencyMs);
+  }
+
+  public static boolean isTimeout(@Nullable Throwable t) {
+    while (t != null) {
+      if (t instanceof SocketTimeoutException) return true;
+      t = t.getCause();
+    }
+    return false;
+  }
+
+  @NotNull
+  Map<String, Long> getPercentiles() {
+    Map<String, Long> result = new TreeMap<>();
+    myLatencies.forEach((host, latencies) -> result.put(host, latencies.getPercentile99(1)));
+    return result;
+  }
+
+  private static class Latencies {
+    private final long[] mySamples = new long[SAMPLES_COUNT];
+    private int myNext = 0;
+    private int myCount = 0;
+    private int myAddedSinceCalculation = 0;
+    private long myPercentile99 = -1;
+
+    synchronized void add(long latency) {
+      mySamples[myNext] = latency;
+      myNext = (myNext + 1) % SAMPLES_COUNT;
+      myCount = Math.min(SAMPLES_COUNT, myCount + 1);
+      myAddedSinceCalculation++;
+    }
+
+    synchronized long getPercentile99(int minSamples) {
+      if (myCount < Math.max(1, minSamples)) return -1;
+      if (myPercentile99 < 0 || myAddedSinceCalculation >= RECALCULATE_EVERY) {
+        long[] sorted = Arrays.copyOf(mySamples, myCount);
+        Arrays.sort(sorted);
+        myPercentile99 = sorted[Math.min(myCount - 1, (int)Math.ceil(myCount * 0.99) - 1)];
+        myAddedSinceCalculation = 0;
+      }
+      return myPercentile99;
+    }
+  }
+}
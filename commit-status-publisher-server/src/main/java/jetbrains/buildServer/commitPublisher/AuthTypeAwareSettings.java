@@ -56,11 +56,14 @@ public abstract class AuthTypeAwareSettings extends BasePublisherSettings {
                                @NotNull WebLinks links,
                                @NotNull CommitStatusPublisherProblems problems,
                                @NotNull SSLTrustStoreProvider trustStoreProvider,
+                               @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                               @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                               @NotNull PublishedPayloads publishedPayloads,
                                @NotNull OAuthTokensStorage oAuthTokensStorage,
                                @NotNull UserModel userModel,
                                @NotNull OAuthConnectionsManager oAuthConnectionsManager,
                                @NotNull SecurityContext securityContext) {
-    super(descriptor, links, problems, trustStoreProvider);
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads);
     myOAuthTokensStorage = oAuthTokensStorage;
     myUserModel = userModel;
     myOAuthConnectionsManager = oAuthConnectionsManager;
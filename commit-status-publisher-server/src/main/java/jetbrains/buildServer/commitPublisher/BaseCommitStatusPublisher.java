@@ -38,6 +38,7 @@ public abstract class BaseCommitStatusPublisher implements CommitStatusPublisher
   public static final String CONNECTION_TIMEOUT_PARAM = "commitStatusPublisher.connectionTimeout";
   protected final Map<String, String> myParams;
   private int myConnectionTimeout;
+  private boolean myConnectionTimeoutConfigured = false;
   protected CommitStatusPublisherProblems myProblems;
   protected SBuildType myBuildType;
   private final String myBuildFeatureId;
@@ -59,6 +60,7 @@ public abstract class BaseCommitStatusPublisher implements CommitStatusPublisher
       if (!StringUtil.isEmpty(strTimeout)) {
         try {
           myConnectionTimeout = Integer.parseInt(strTimeout);
+          myConnectionTimeoutConfigured = true;
         } catch (NumberFormatException ex) {
           LOG.warnAndDebugDetails("Failure to parse connection timeout value " + strTimeout, ex);
         }
@@ -105,8 +107,13 @@ public abstract class BaseCommitStatusPublisher implements CommitStatusPublisher
     return myConnectionTimeout;
   }
 
+  protected boolean isConnectionTimeoutConfigured() {
+    return myConnectionTimeoutConfigured;
+  }
+
   public void setConnectionTimeout(int timeout) {
     myConnectionTimeout = timeout;
+    myConnectionTimeoutConfigured = true;
   }
 
   @NotNull
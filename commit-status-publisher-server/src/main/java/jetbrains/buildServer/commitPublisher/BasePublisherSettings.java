@@ -45,6 +45,9 @@ public abstract class BasePublisherSettings implements CommitStatusPublisherSett
   protected final WebLinks myLinks;
   protected final CommitStatusPublisherProblems myProblems;
   private final SSLTrustStoreProvider myTrustStoreProvider;
+  private final AdaptiveConcurrencyLimiter myConcurrencyLimiter;
+  private final AdaptiveTimeouts myAdaptiveTimeouts;
+  private final PublishedPayloads myPublishedPayloads;
   private final ConcurrentHashMap<String, TimestampedServerVersion> myServerVersions;
   protected final Gson myGson = new Gson();
   protected final Comparator<OAuthConnectionDescriptor> CONNECTION_DESCRIPTOR_NAME_COMPARATOR = Comparator.comparing(desc -> desc.getConnectionDisplayName());
@@ -52,11 +55,17 @@ public abstract class BasePublisherSettings implements CommitStatusPublisherSett
   public BasePublisherSettings(@NotNull PluginDescriptor descriptor,
                                @NotNull WebLinks links,
                                @NotNull CommitStatusPublisherProblems problems,
-                               @NotNull SSLTrustStoreProvider trustStoreProvider) {
+                               @NotNull SSLTrustStoreProvider trustStoreProvider,
+                               @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                               @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                               @NotNull PublishedPayloads publishedPayloads) {
     myDescriptor = descriptor;
     myLinks= links;
     myProblems = problems;
     myTrustStoreProvider = trustStoreProvider;
+    myConcurrencyLimiter = concurrencyLimiter;
+    myAdaptiveTimeouts = adaptiveTimeouts;
+    myPublishedPayloads = publishedPayloads;
     myServerVersions = new ConcurrentHashMap<>();
   }
 
@@ -111,6 +120,21 @@ public abstract class BasePublisherSettings implements CommitStatusPublisherSett
     return myTrustStoreProvider.getTrustStore();
   }
 
+  @NotNull
+  AdaptiveConcurrencyLimiter concurrencyLimiter() {
+    return myConcurrencyLimiter;
+  }
+
+  @NotNull
+  AdaptiveTimeouts adaptiveTimeouts() {
+    return myAdaptiveTimeouts;
+  }
+
+  @NotNull
+  PublishedPayloads publishedPayloads() {
+    return myPublishedPayloads;
+  }
+
   @Override
   public boolean isFeatureLessPublishingSupported(@NotNull SBuildType buildType) {
     return false;
@@ -94,6 +94,18 @@ public interface CommitStatusPublisher {
    */
   boolean hasBuildFeature();
 
+  /**
+   * Returns the context the status of the build is published with: statuses of a commit with different contexts
+   * do not override each other.
+   *
+   * @param buildPromotion build promotion whose status is published
+   * @return null if the context is not known or the publisher does not distinguish statuses of a commit by context
+   */
+  @Nullable
+  default String getStatusContext(@NotNull BuildPromotion buildPromotion) {
+    return null;
+  }
+
   enum Event {
     STARTED("buildStarted", EventPriority.FIRST, true), FINISHED("buildFinished", true),
     QUEUED("buildQueued", EventPriority.FIRST, true), REMOVED_FROM_QUEUE("buildRemovedFromQueue", EventPriority.FIRST, false),
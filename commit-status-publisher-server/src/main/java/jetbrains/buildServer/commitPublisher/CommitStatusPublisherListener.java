@@ -19,8 +19,6 @@
 package jetbrains.buildServer.commitPublisher;
 
 import com.google.common.util.concurrent.Striped;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.Cache;
 import com.intellij.openapi.util.Pair;
 import java.time.Instant;
 import java.util.*;
@@ -46,7 +44,6 @@ import jetbrains.buildServer.serverSide.userChanges.CanceledInfo;
 import jetbrains.buildServer.users.User;
 import jetbrains.buildServer.users.UserModel;
 import jetbrains.buildServer.util.EventDispatcher;
-import jetbrains.buildServer.vcs.SVcsRootEx;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -60,17 +57,24 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
   final static String QUEUE_PAUSER_SYSTEM_PROPERTY = "teamcity.plugin.queuePauser.queue.enabled";
   final static String CHECK_STATUS_BEFORE_PUBLISHING = "teamcity.commitStatusPubliser.checkStatus.enabled";
   final static String LOCKS_STRIPES = "teamcity.commitStatusPublisher.locks.stripes";
+  final static String STARTED_GRACE_PERIOD_PROPERTY = "teamcity.commitStatusPublisher.startedGracePeriodMs";
+  final static String EVENT_FILTERED_PUBLISHERS_PROPERTY = "teamcity.commitStatusPublisher.eventFilteredPublishers.enabled";
+  final static String QUEUED_CHAIN_AGGREGATION_PROPERTY = "teamcity.commitStatusPublisher.queuedChainAggregation.enabled";
 
   private final static int LOCKS_STRIPES_DEFAULT = 1000;
-  private final static int MAX_LAST_EVENTS_TO_REMEMBER = 1000;
+  final static String PROMOTION_STATES_CAPACITY_PROPERTY = "teamcity.commitStatusPublisher.promotionStates.capacity";
+  private final static int DEFAULT_PROMOTION_STATES_CAPACITY = 16384;
 
   final static String RETRY_ENABLED_PROPERTY_NAME = "teamcity.commitStatusPublisher.retry.enabled";
   final static String RETRY_INITAL_DELAY_PROPERTY_NAME = "teamcity.commitStatusPublisher.retry.initDelayMs";
   final static String RETRY_MAX_DELAY_PROPERTY_NAME = "teamcity.commitStatusPublisher.retry.maxDelayMs";
   final static String RETRY_MAX_TIME_BEFORE_DISABLING = "teamcity.commitStatusPublisher.retry.maxBeforeDisablingMs";
+  final static String RETRY_THROTTLED_DELAY_PROPERTY_NAME = "teamcity.commitStatusPublisher.retry.throttledDelayMs";
   private final static long DEFAULT_INITIAL_RETRY_DELAY_MS = 10_000;
   private final static long DEFAULT_MAX_RETRY_DELAY_MS = 60 * 60 * 1000; // 30 minutes
   private final static long DEFAULT_MAX_TIME_BEFORE_DISABLING_RETRY = 24 * 60 * 60 * 1000; // 24 hours
+  private final static long DEFAULT_THROTTLED_RETRY_DELAY_MS = 5_000;
+  private final static String ATTEMPT_TASK_ARG_PREFIX = "attempt:";
 
   final static String FINALIZED_SETTINGS_EVENT_ENABLED = "teamcity.commitStatusPublisher.finalizedSettingsEvent";
   private final static String FINALIZED_EVENT_CACHE_TTL_PROPERTY = "teamcity.commitStatusPublisher.finalizedEventCacheTtlSeconds";
@@ -90,20 +94,19 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
   private final UserModel myUserModel;
   private final FavoriteBuildProcessor myFavoriteBuildProcessor;
   private final BuildOwnerSupplier myBuildOwnerSupplier;
+  private final PublishingMetrics myMetrics;
   private final Map<String, Event> myEventTypes = new HashMap<>();
   private final Striped<Lock> myPublishingLocks;
-  private final Map<Long, Event> myLastEvents =
-    new LinkedHashMap<Long, Event> () {
-      @Override
-      protected boolean removeEldestEntry(Map.Entry<Long, Event> eldest)
-      {
-        return size() > MAX_LAST_EVENTS_TO_REMEMBER;
-      }
-    };
   private final ConcurrentMap<String, ValueWithTTL<Boolean>> myBuildTypeCommitStatusPublisherConfiguredCache = new ConcurrentHashMap<>();
   private final ConcurrentMap<String, Long> myBuildTypeToFirstPublishFailure = new ConcurrentHashMap<>();
-  private final Cache<Long, Boolean> myFinalizedEventReceived; // builds for which finalized event was received before changes collection
-  private final Striped<Lock> myFinalizedEventLocks = Striped.lock(256);
+  private final RevisionRoutingIndex myRevisionRoutingIndex = new RevisionRoutingIndex();
+  private final PromotionStateTable myPromotionStates; // last processed events and builds for which finalized event was received before changes collection
+  private final PublishingRecoveryTracker myRecoveryTracker = new PublishingRecoveryTracker();
+  private final PublishingDeadLetters myDeadLetters = new PublishingDeadLetters();
+  private final PublishingTaskDispatcher myTaskDispatcher;
+  private final PublishedStatusLedger myPublishedStatusLedger = new PublishedStatusLedger();
+  private final QueuedChainStatuses myQueuedChainStatuses = new QueuedChainStatuses();
+  private final IntermediateEventsDebouncer myIntermediateEventsDebouncer;
 
   private Consumer<Event> myEventProcessedCallback = null;
 
@@ -120,7 +123,8 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
                                        @NotNull UserModel userModel,
                                        @NotNull MultiNodeTasks multiNodeTasks,
                                        @NotNull FavoriteBuildProcessor favoriteBuildProcessor,
-                                       @NotNull BuildOwnerSupplier buildOwnerStrategy) {
+                                       @NotNull BuildOwnerSupplier buildOwnerStrategy,
+                                       @NotNull PublishingMetrics metrics) {
     myPublisherManager = voterManager;
     myBuildHistory = buildHistory;
     myBuildsManager = buildsManager;
@@ -134,21 +138,24 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     myUserModel = userModel;
     myFavoriteBuildProcessor = favoriteBuildProcessor;
     myBuildOwnerSupplier = buildOwnerStrategy;
+    myMetrics = metrics;
     myEventTypes.putAll(Arrays.stream(Event.values()).collect(Collectors.toMap(Event::getName, et -> et)));
     myPublishingLocks = Striped.lazyWeakLock(TeamCityProperties.getInteger(LOCKS_STRIPES, LOCKS_STRIPES_DEFAULT));
+    myTaskDispatcher = new PublishingTaskDispatcher(command -> myExecutorServices.getLowPriorityExecutorService().execute(command));
+    myIntermediateEventsDebouncer = new IntermediateEventsDebouncer(myExecutorServices::getNormalExecutorService, this::publishDebouncedEvent);
 
-    myFinalizedEventReceived = CacheBuilder.newBuilder()
-                                           .expireAfterWrite(TeamCityProperties.getInteger(FINALIZED_EVENT_CACHE_TTL_PROPERTY, DEFAULT_FINALIZED_EVENTS_CACHE_TTL), TimeUnit.SECONDS)
-                                           .build();
+    myPromotionStates = new PromotionStateTable(TeamCityProperties.getInteger(PROMOTION_STATES_CAPACITY_PROPERTY, DEFAULT_PROMOTION_STATES_CAPACITY),
+                                                TimeUnit.SECONDS.toMillis(TeamCityProperties.getInteger(FINALIZED_EVENT_CACHE_TTL_PROPERTY, DEFAULT_FINALIZED_EVENTS_CACHE_TTL)));
 
     events.addListener(this);
 
     myMultiNodeTasks.subscribeOnSingletonTask(Event.STARTED.getName(), new BuildPublisherTaskConsumer (
       build -> new PublishTask() {
         @Override
-        public void run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
-          publisher.buildStarted(build, revision);
+        public boolean run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
+          boolean updated = publisher.buildStarted(build, revision);
           myFavoriteBuildProcessor.markAsFavorite(build.getBuildPromotion(), myBuildOwnerSupplier);
+          return updated;
         }
       }
     ));
@@ -156,9 +163,10 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     myMultiNodeTasks.subscribe(Event.FINISHED.getName(), new BuildPublisherTaskConsumer (
        build -> new PublishTask() {
          @Override
-         public void run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
-           publisher.buildFinished(build, revision);
+         public boolean run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
+           boolean updated = publisher.buildFinished(build, revision);
            myFavoriteBuildProcessor.markAsFavorite(build.getBuildPromotion(), myBuildOwnerSupplier);
+           return updated;
          }
        }
     ));
@@ -166,8 +174,8 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     myMultiNodeTasks.subscribe(Event.MARKED_AS_SUCCESSFUL.getName(), new BuildPublisherTaskConsumer (
        build -> new PublishTask() {
          @Override
-         public void run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
-           publisher.buildMarkedAsSuccessful(build, revision, isBuildInProgress(build));
+         public boolean run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
+           return publisher.buildMarkedAsSuccessful(build, revision, isBuildInProgress(build));
          }
         }
     ));
@@ -175,11 +183,11 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     myMultiNodeTasks.subscribe(Event.COMMENTED.getName(), new BuildPublisherTaskConsumer (
       build -> new PublishTask() {
         @Override
-        public void run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
+        public boolean run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
           Comment comment = build.getBuildComment();
           if (null == comment)
-            return;
-          publisher.buildCommented(build, revision, comment.getUser(), comment.getComment(), isBuildInProgress(build));
+            return false;
+          return publisher.buildCommented(build, revision, comment.getUser(), comment.getComment(), isBuildInProgress(build));
         }
       }
     ));
@@ -187,8 +195,8 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     myMultiNodeTasks.subscribe(Event.INTERRUPTED.getName(), new BuildPublisherTaskConsumer (
       build -> new PublishTask() {
         @Override
-        public void run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
-          publisher.buildInterrupted(build, revision);
+        public boolean run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
+          return publisher.buildInterrupted(build, revision);
         }
       }
     ));
@@ -196,8 +204,8 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     myMultiNodeTasks.subscribe(Event.FAILURE_DETECTED.getName(), new BuildPublisherTaskConsumer (
       build -> new PublishTask() {
         @Override
-        public void run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
-          publisher.buildFailureDetected(build, revision);
+        public boolean run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException {
+          return publisher.buildFailureDetected(build, revision);
         }
       }
     ));
@@ -205,9 +213,13 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     myMultiNodeTasks.subscribeOnSingletonTask(Event.QUEUED.getName(), new QueuedBuildPublisherTaskConsumer(
       buildPromotion -> new PublishQueuedTask() {
         @Override
-        public void run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision, @NotNull AdditionalTaskInfo additionalTaskInfo) throws PublisherException {
-          publisher.buildQueued(buildPromotion, revision, additionalTaskInfo);
+        public boolean run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision, @NotNull AdditionalTaskInfo additionalTaskInfo) throws PublisherException {
+          boolean updated = publisher.buildQueued(buildPromotion, revision, additionalTaskInfo);
+          if (updated && isQueuedChainAggregationApplicable(buildPromotion)) {
+            myQueuedChainStatuses.published(buildPromotion, publisher, revision);
+          }
           myFavoriteBuildProcessor.markAsFavorite(buildPromotion, myBuildOwnerSupplier);
+          return updated;
         }
       }
     ));
@@ -234,6 +246,46 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     return new Pair<>(comment, author);
   }
 
+  @Override
+  public void buildTypePersisted(@NotNull SBuildType buildType) {
+    invalidateBuildTypeCaches(buildType);
+  }
+
+  @Override
+  public void buildTypeUnregistered(@NotNull SBuildType buildType) {
+    invalidateBuildTypeCaches(buildType);
+  }
+
+  @Override
+  public void buildTypeTemplatePersisted(@NotNull BuildTypeTemplate buildTemplate) {
+    buildTemplate.getUsages().forEach(this::invalidateBuildTypeCaches);
+  }
+
+  /**
+   * Connections are persisted with their project and are available to its subprojects as well
+   */
+  @Override
+  public void projectPersisted(@NotNull String projectId) {
+    invalidateBuildTypeCaches(projectId);
+  }
+
+  @Override
+  public void projectRestored(@NotNull String projectId) {
+    invalidateBuildTypeCaches(projectId);
+  }
+
+  private void invalidateBuildTypeCaches(@NotNull String projectId) {
+    SProject project = myProjectManager.findProjectById(projectId);
+    if (project != null) {
+      project.getBuildTypes().forEach(this::invalidateBuildTypeCaches);
+    }
+  }
+
+  private void invalidateBuildTypeCaches(@NotNull SBuildType buildType) {
+    myRevisionRoutingIndex.invalidate(buildType.getInternalId());
+    myPublisherManager.invalidateSupplementaryPublishers(buildType.getInternalId());
+  }
+
   @Override
   public void buildTypeAddedToQueue(@NotNull SQueuedBuild queuedBuild) {  // required only in case of starting build for exact commit
     if (isFinalizedEventEnabled()) {
@@ -250,17 +302,9 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
   public void changesLoaded(@NotNull BuildPromotion buildPromotion) {
     if (isFinalizedEventEnabled()) {
       // check if we already recevied buildPromotionSettingsFinalized event, in this case we can publish the status
-      Lock lock = myFinalizedEventLocks.get(buildPromotion.getId());
-      lock.lock();
-      try {
-        if (myFinalizedEventReceived.getIfPresent(buildPromotion.getId()) == null) {
-          // we've already published the event for this build
-          return;
-        } else {
-          myFinalizedEventReceived.invalidate(buildPromotion.getId());
-        }
-      } finally {
-        lock.unlock();
+      if (!myPromotionStates.consumeFinalizedEvent(buildPromotion.getId())) {
+        // we've already published the event for this build
+        return;
       }
     }
     if (shouldNotPublish(buildPromotion, buildReason(buildPromotion))) return;
@@ -279,15 +323,12 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     BuildPromotionEx promotion = (BuildPromotionEx)buildPromotion;
 
     // if we didn't collect changes yet, we will need to publish status only after receiving changesLoaded event for the build
-    Lock lock = myFinalizedEventLocks.get(buildPromotion.getId());
-    lock.lock();
-    try {
-      if (promotion.isChangeCollectingNeeded(false)) {
-        myFinalizedEventReceived.put(promotion.getId(), true);
+    if (promotion.isChangeCollectingNeeded(false)) {
+      myPromotionStates.finalizedEventReceived(promotion.getId());
+      // changes could have been collected meanwhile, and changesLoaded event could have missed the mark: whoever consumes it publishes the status
+      if (promotion.isChangeCollectingNeeded(false) || !myPromotionStates.consumeFinalizedEvent(promotion.getId())) {
         return;
       }
-    } finally {
-      lock.unlock();
     }
 
     buildWasAddedToQueue(buildPromotion);
@@ -322,6 +363,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
 
   @Override
   public void buildFinished(@NotNull SRunningBuild build) {
+    myIntermediateEventsDebouncer.cancel(build.getBuildId());
     if (shouldNotPublish(build.getBuildPromotion(), buildReason(build.getTriggeredBy())))
       return;
 
@@ -343,6 +385,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
 
   @Override
   public void buildInterrupted(@NotNull SRunningBuild build) {
+    myIntermediateEventsDebouncer.cancel(build.getBuildId());
     if (shouldNotPublish(build.getBuildPromotion(), buildReason(build.getTriggeredBy())))
       return;
 
@@ -383,7 +426,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     if (shouldNotPublish(build.getBuildPromotion(), buildReason(build.getTriggeredBy())))
       return;
 
-    submitTaskForBuild(Event.FAILURE_DETECTED, build);
+    submitIntermediateTaskForBuild(Event.FAILURE_DETECTED, build);
   }
 
   private boolean isTestRetryEnabled(@NotNull SRunningBuild build) {
@@ -423,7 +466,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     if (shouldNotPublish(build.getBuildPromotion(), buildReason(build.getTriggeredBy())))
       return;
 
-    submitTaskForBuild(actualEvent, build);
+    submitIntermediateTaskForBuild(actualEvent, build);
   }
 
   private void buildAddedToQueue(@NotNull SQueuedBuild build) {
@@ -432,7 +475,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
 
     BuildPromotion buildPromotion = build.getBuildPromotion();
 
-    submitTaskForQueuedBuild(Event.QUEUED, buildPromotion, null);
+    submitTaskForQueuedBuild(Event.QUEUED, buildPromotion, null, 1);
   }
 
   public boolean isQueueDisabled() {
@@ -466,9 +509,14 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     if (!canNodeProcessRemovedFromQueue(promotion)) return;
     if (((BuildPromotionEx)promotion).isChangeCollectingNeeded(false)) return;
 
-    runAsync(() -> {
-      proccessRemovedFromQueueBuild(build, user, comment);
-    }, null);
+    if (PublishingTaskDispatcher.isEnabled()) {
+      // removal is terminal for a queued build, the dispatcher publishes it ahead of the queued status and drops the latter
+      dispatch(Event.REMOVED_FROM_QUEUE, promotion, () -> proccessRemovedFromQueueBuild(build, user, comment));
+    } else {
+      runAsync(() -> {
+        proccessRemovedFromQueueBuild(build, user, comment);
+      }, null);
+    }
   }
 
   private boolean canNodeProcessRemovedFromQueue(BuildPromotion buildPromotion) {
@@ -515,6 +563,21 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     return true;
   }
 
+  private static boolean isQueuedChainAggregationApplicable(@NotNull BuildPromotion buildPromotion) {
+    return TeamCityProperties.getBoolean(QUEUED_CHAIN_AGGREGATION_PROPERTY) && buildPromotion.isPartOfBuildChain();
+  }
+
+  /**
+   * @return true if another queued build of the same build chain has already published the queued status to the same status context for the revision
+   */
+  private boolean isQueuedStatusPublishedByChain(@NotNull BuildPromotion buildPromotion, @NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) {
+    if (!isQueuedChainAggregationApplicable(buildPromotion)) return false;
+    Long publishedBy = myQueuedChainStatuses.getPublishedBy(buildPromotion, publisher, revision);
+    if (publishedBy == null) return false;
+    BuildPromotion publishedByPromotion = myBuildPromotionManager.findPromotionById(publishedBy);
+    return publishedByPromotion != null && publishedByPromotion.getQueuedBuild() != null;
+  }
+
   private boolean isBuildFeatureAbsent(@NotNull BuildPromotion buildPromotion) {
     // BuildPromotion does not contain existing but disabled build features: there's no need to double check it
     return buildPromotion.getBuildFeaturesOfType(CommitStatusPublisherFeature.TYPE).isEmpty();
@@ -567,12 +630,33 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     return TeamCityProperties.getLong(RETRY_MAX_TIME_BEFORE_DISABLING, DEFAULT_MAX_TIME_BEFORE_DISABLING_RETRY);
   }
 
+  private long throttledRetryDelay() {
+    return TeamCityProperties.getLong(RETRY_THROTTLED_DELAY_PROPERTY_NAME, DEFAULT_THROTTLED_RETRY_DELAY_MS);
+  }
+
   private void logStatusNotPublished(@NotNull Event event, @NotNull String buildDescription, @NotNull CommitStatusPublisher publisher, @NotNull String message) {
     LOG.info(String.format("Event: %s, build %s, publisher %s: %s", event.getName(), buildDescription, publisher, message));
   }
 
   private void submitTaskForBuild(@NotNull Event event, @NotNull SBuild build) {
-    submitTaskForBuild(event, build, null);
+    submitTaskForBuild(event, build, null, 1);
+  }
+
+  /**
+   * Intermediate events of a running build are debounced, so that only the latest of them is published
+   */
+  private void submitIntermediateTaskForBuild(@NotNull Event event, @NotNull SBuild build) {
+    if (!build.isFinished() && myIntermediateEventsDebouncer.offer(build.getBuildId(), event)) return;
+    submitTaskForBuild(event, build);
+  }
+
+  private void publishDebouncedEvent(long buildId, @NotNull Event event) {
+    SRunningBuild build = myBuildsManager.findRunningBuildById(buildId);
+    if (build == null) {
+      LOG.debug(() -> "Event: " + event.getName() + ", build id " + buildId + ": build is not running anymore, its final status is published instead");
+      return;
+    }
+    submitTaskForBuild(event, build);
   }
 
   private String getTaskIdentity(@NotNull Event event, long id, @Nullable Long delay) {
@@ -583,24 +667,44 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     return identity;
   }
 
-  private void submitTaskForBuild(@NotNull Event event, @NotNull SBuild build, @Nullable Long delay) {
+  /**
+   * @param attempt number of the publishing attempt the task is submitted for, starting with 1
+   */
+  private void submitTaskForBuild(@NotNull Event event, @NotNull SBuild build, @Nullable Long delay, int attempt) {
     if  (!myServerResponsibility.isResponsibleForBuild(build)) {
       LOG.debug(() -> "Current node is not responsible for build " + LogUtil.describe(build) + ", skip processing event " + event);
       return;
     }
 
     long buildId = build.getBuildId();
-    myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(event.getName(), getTaskIdentity(event, buildId, delay), buildId, delay, (String)null));
+    myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(event.getName(), getTaskIdentity(event, buildId, delay), buildId, delay, attempt > 1 ? ATTEMPT_TASK_ARG_PREFIX + attempt : null));
   }
 
-  private void submitTaskForQueuedBuild(@NotNull Event event, @NotNull BuildPromotion buildPromotion, @Nullable Long delay) {
+  private void submitTaskForQueuedBuild(@NotNull Event event, @NotNull BuildPromotion buildPromotion, @Nullable Long delay, int attempt) {
     long promotionId = buildPromotion.getId();
-    myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(Event.QUEUED.getName(), getTaskIdentity(event, promotionId, delay), promotionId, delay, DefaultStatusMessages.BUILD_QUEUED));
+    myMultiNodeTasks.submit(new MultiNodeTasks.TaskData(Event.QUEUED.getName(), getTaskIdentity(event, promotionId, delay), promotionId, delay,
+                                                        attempt > 1 ? ATTEMPT_TASK_ARG_PREFIX + attempt : DefaultStatusMessages.BUILD_QUEUED));
+  }
+
+  /**
+   * @return number of the publishing attempt the task was submitted for
+   */
+  private static int getAttempt(@NotNull PerformingTask task) {
+    final String arg = task.getStringArg();
+    if (arg == null || !arg.startsWith(ATTEMPT_TASK_ARG_PREFIX)) return 1;
+    try {
+      return Math.max(1, Integer.parseInt(arg.substring(ATTEMPT_TASK_ARG_PREFIX.length())));
+    } catch (NumberFormatException e) {
+      return 1;
+    }
   }
 
   private boolean isCurrentRevisionSuitable(Event event, BuildPromotion buildPromotion, BuildRevision revision, CommitStatusPublisher publisher) throws PublisherException {
     if (TeamCityProperties.getBooleanOrTrue(CHECK_STATUS_BEFORE_PUBLISHING)) {
-      RevisionStatus revisionStatus = publisher.getRevisionStatus(buildPromotion, revision);
+      RevisionStatus revisionStatus = myPublishedStatusLedger.getRevisionStatus(publisher, revision, buildPromotion);
+      if (revisionStatus == null) {
+        revisionStatus = publisher.getRevisionStatus(buildPromotion, revision);
+      }
       return revisionStatus == null || revisionStatus.isEventAllowed(event, buildPromotion.getId());
     }
     return true;
@@ -622,7 +726,9 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         Lock lock = myPublishingLocks.get(getLockKey(buildType, revision));
         lock.lock();
         try {
-          publisher.buildRemovedFromQueue(buildPromotion, revision, additionalTaskInfo);
+          if (publisher.buildRemovedFromQueue(buildPromotion, revision, additionalTaskInfo)) {
+            myPublishedStatusLedger.published(Event.REMOVED_FROM_QUEUE, buildPromotion, publisher, revision);
+          }
         } catch (PublisherException e) {
           LOG.warn("Cannot publish removed build status to VCS for " + publisher.getBuildType() + ", commit: " + revision.getRevision(), e);
         } finally {
@@ -636,20 +742,20 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         return getQueuedBuildRevisionForVote(buildType, publisher, buildPromotion);
       }
     };
-    proccessPublishing(Event.REMOVED_FROM_QUEUE, buildPromotion, publishingProcessor);
+    proccessPublishing(Event.REMOVED_FROM_QUEUE, buildPromotion, publishingProcessor, 1);
   }
 
   private String getLockKey(SBuildType buildType, BuildRevision revision) {
     return buildType.getBuildTypeId() + ":" + revision.getRevision();
   }
 
-  private void proccessPublishing(Event event, BuildPromotion buildPromotion, PublishingProcessor publishingProcessor) {
+  private void proccessPublishing(Event event, BuildPromotion buildPromotion, PublishingProcessor publishingProcessor, int attempt) {
     SBuildType buildType = buildPromotion.getBuildType();
     if (buildType == null) {
       LOG.warn("Build status has not been published: build type not found, id: " + buildPromotion.getBuildTypeExternalId());
       return;
     }
-    Map<String, CommitStatusPublisher> publishers = getPublishers(buildPromotion);
+    Map<String, CommitStatusPublisher> publishers = getPublishers(buildPromotion, event);
     LOG.debug(() -> "Event: " + event.getName() + ", build promotion " + LogUtil.describe(buildPromotion) + ", publishers: " + publishers.values());
     for (CommitStatusPublisher publisher : publishers.values()) {
       if (!publisher.isEventSupported(event))
@@ -664,28 +770,149 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         continue;
       }
       myProblems.clearProblem(publisher);
-      List<RetryInfo> retryResults = revisions.stream().map(revision -> publishingProcessor.publish(event, revision, publisher)).collect(Collectors.toList());
+      List<BuildRevision> revisionsToPublish = new ArrayList<>(revisions);
+      List<RetryInfo> retryResults = revisionsToPublish.stream().map(revision -> publishingProcessor.publish(event, revision, publisher)).collect(Collectors.toList());
       RetryInfo retryInfo = new RetryInfo();
-      for (RetryInfo info : retryResults) {
-        if (info.shouldRetry) {
-          retryInfo = info;
-          break;
+      BuildRevision failedRevision = null;
+      for (int i = 0; i < retryResults.size(); i++) {
+        // a failure takes precedence over throttling, so that an unavailable target is noticed
+        if (retryResults.get(i).shouldRetry && (failedRevision == null || retryInfo.throttled)) {
+          retryInfo = retryResults.get(i);
+          failedRevision = revisionsToPublish.get(i);
+          if (!retryInfo.throttled) break;
         }
       }
 
+      if (retryInfo.shouldRetry && !retryInfo.throttled && failedRevision != null && PublishingRecoveryTracker.isEnabled() &&
+          !myRecoveryTracker.registerFailure(PublishingRecoveryTracker.getHostKey(publisher, failedRevision), buildPromotion.getId())) {
+        LOG.debug(() -> "Event: " + event.getName() + ", build promotion " + LogUtil.describe(buildPromotion) + ": publisher " + publisher +
+                        " target is unavailable, current build state will be published once it is reachable again");
+        continue;
+      }
+
       if (retryInfo.shouldRetry) {
+        // a throttled request has not been made, so it is not counted as an attempt
+        final int nextAttempt = retryInfo.throttled ? attempt : attempt + 1;
         if (event == Event.QUEUED) {
-          submitTaskForQueuedBuild(event, buildPromotion, retryInfo.newDelay);
+          submitTaskForQueuedBuild(event, buildPromotion, retryInfo.newDelay, nextAttempt);
         } else {
           final SBuild build = buildPromotion.getAssociatedBuild();
           if (build != null) {
-            submitTaskForBuild(event, build, retryInfo.newDelay);
+            submitTaskForBuild(event, build, retryInfo.newDelay, nextAttempt);
           }
         }
       }
     }
   }
 
+  @NotNull
+  PublishingDeadLetters getDeadLetters() {
+    return myDeadLetters;
+  }
+
+  /**
+   * Publishes current state of the build promotions of the given dead letters again.
+   * An entry is removed from the dead letters store only once the state of its promotion has been submitted for publishing
+   * @return entries which have not been re-driven as their promotions have neither a queued nor a started build anymore,
+   * they are kept in the store
+   */
+  @NotNull
+  List<PublishingDeadLetters.Entry> redrive(@NotNull Collection<PublishingDeadLetters.Entry> entries) {
+    if (entries.isEmpty()) return Collections.emptyList();
+    final Set<Long> submitted = publishCurrentState(entries.stream()
+                                                           .map(PublishingDeadLetters.Entry::getPromotionId)
+                                                           .collect(Collectors.toCollection(LinkedHashSet::new)));
+    final List<PublishingDeadLetters.Entry> redriven = new ArrayList<>();
+    final List<PublishingDeadLetters.Entry> skipped = new ArrayList<>();
+    for (PublishingDeadLetters.Entry entry : entries) {
+      (submitted.contains(entry.getPromotionId()) ? redriven : skipped).add(entry);
+    }
+    myDeadLetters.remove(redriven);
+    return skipped;
+  }
+
+  /**
+   * @param statusUpdated true if the publisher has reported that the status has been updated, false if nothing has been posted
+   */
+  private void publishedSuccessfully(@NotNull Event event, @NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision, @NotNull BuildPromotion promotion,
+                                     boolean statusUpdated) {
+    if (statusUpdated) {
+      myPublishedStatusLedger.published(event, promotion, publisher, revision);
+    }
+    myDeadLetters.published(promotion.getId(), publisher.getId(), revision.getRoot().getParent().getExternalId(), revision.getRevision());
+    if (!PublishingRecoveryTracker.isEnabled()) return;
+
+    Collection<Long> promotionIds = myRecoveryTracker.registerSuccess(PublishingRecoveryTracker.getHostKey(publisher, revision));
+    if (promotionIds.isEmpty()) return;
+
+    LOG.info(String.format("Publisher %s target is reachable again, publishing current state of %d affected build(s)", publisher, promotionIds.size()));
+    runAsync(() -> publishCurrentState(promotionIds), null);
+  }
+
+  private void publishingGaveUp(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision, @NotNull BuildPromotion promotion) {
+    if (!PublishingRecoveryTracker.isEnabled()) return;
+
+    Collection<Long> promotionIds = myRecoveryTracker.registerGiveUp(PublishingRecoveryTracker.getHostKey(publisher, revision), promotion.getId());
+    if (promotionIds.isEmpty()) return;
+
+    LOG.info(String.format("Publisher %s target is still unavailable, publishing of build %d will not be retried. Publishing current state of %d affected build(s)",
+                           publisher, promotion.getId(), promotionIds.size()));
+    runAsync(() -> publishCurrentState(promotionIds), null);
+  }
+
+  /**
+   * Publishes only the current state of each build promotion, the latest promotion wins for the same build configuration and revisions.
+   * Tasks are submitted in batches with increasing delays not to flood the recovered host
+   * @return ids of the given promotions whose state has been submitted, directly or by a later promotion of the same revisions
+   */
+  @NotNull
+  private Set<Long> publishCurrentState(@NotNull Collection<Long> promotionIds) {
+    final Map<String, BuildPromotion> latestPromotions = new LinkedHashMap<>();
+    final Map<String, List<Long>> mergedPromotionIds = new HashMap<>();
+    for (Long promotionId : promotionIds) {
+      BuildPromotion promotion = myBuildPromotionManager.findPromotionById(promotionId);
+      if (promotion == null) continue;
+      String key = promotion.getBuildTypeId() + ":" + promotion.getRevisions().stream()
+                                                               .map(revision -> revision.getRoot().getId() + "@" + revision.getRevision())
+                                                               .sorted()
+                                                               .collect(Collectors.joining(","));
+      latestPromotions.merge(key, promotion, (p1, p2) -> p1.getId() >= p2.getId() ? p1 : p2);
+      mergedPromotionIds.computeIfAbsent(key, k -> new ArrayList<>()).add(promotionId);
+    }
+
+    final int batchSize = PublishingRecoveryTracker.getBatchSize();
+    final long batchInterval = PublishingRecoveryTracker.getBatchInterval();
+    final Set<Long> submittedPromotionIds = new HashSet<>();
+    int submitted = 0;
+    for (Map.Entry<String, BuildPromotion> latest : latestPromotions.entrySet()) {
+      long batchNumber = submitted / batchSize;
+      Long delay = batchNumber == 0 ? null : batchNumber * batchInterval;
+      if (submitCurrentState(latest.getValue(), delay)) {
+        submitted++;
+        submittedPromotionIds.addAll(mergedPromotionIds.get(latest.getKey()));
+      }
+    }
+    return submittedPromotionIds;
+  }
+
+  private boolean submitCurrentState(@NotNull BuildPromotion promotion, @Nullable Long delay) {
+    if (promotion.getQueuedBuild() != null) {
+      submitTaskForQueuedBuild(Event.QUEUED, promotion, delay, 1);
+      return true;
+    }
+    SBuild build = promotion.getAssociatedBuild();
+    if (build == null) return false;
+
+    final Event event;
+    if (!build.isFinished()) {
+      event = build.getBuildStatus().isFailed() ? Event.FAILURE_DETECTED : Event.STARTED;
+    } else {
+      event = build.getCanceledInfo() != null ? Event.INTERRUPTED : Event.FINISHED;
+    }
+    submitTaskForBuild(event, build, delay, 1);
+    return true;
+  }
+
   private AdditionalTaskInfo buildAdditionalRemovedFromQueueInfo(BuildPromotion buildPromotion, String comment, User user) {
     User actualCommentAuthor;
     if (comment != null) {
@@ -720,11 +947,17 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
   }
 
   private interface PublishTask {
-    void run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException;
+    /**
+     * @return true if the status has been updated
+     */
+    boolean run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) throws PublisherException;
   }
 
   private interface PublishQueuedTask {
-    void run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision, @NotNull AdditionalTaskInfo additionalTaskInfo) throws PublisherException;
+    /**
+     * @return true if the status has been updated
+     */
+    boolean run(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision, @NotNull AdditionalTaskInfo additionalTaskInfo) throws PublisherException;
   }
 
   private boolean isBuildInProgress(SBuild build) {
@@ -751,26 +984,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
   @NotNull
   private List<BuildRevision> getBuildRevisionForVote(@NotNull CommitStatusPublisher publisher,
                                                       @NotNull Collection<BuildRevision> revisionsToCheck) {
-    if (revisionsToCheck.isEmpty()) return Collections.emptyList();
-
-    String vcsRootId = publisher.getVcsRootId();
-    if (vcsRootId == null) {
-      List<BuildRevision> revisions = new ArrayList<BuildRevision>();
-      for (BuildRevision revision : revisionsToCheck) {
-        if (publisher.isPublishingForRevision(revision)) {
-          revisions.add(revision);
-        }
-      }
-      return revisions;
-    }
-
-    for (BuildRevision revision : revisionsToCheck) {
-      SVcsRootEx root = (SVcsRootEx)revision.getRoot().getParent();
-      if (vcsRootId.equals(root.getExternalId()) || root.isAliasExternalId(vcsRootId) || vcsRootId.equals(String.valueOf(root.getId())))
-        return Arrays.asList(revision);
-    }
-
-    return Collections.emptyList();
+    return myRevisionRoutingIndex.getRevisions(publisher, revisionsToCheck);
   }
 
   @NotNull
@@ -780,7 +994,10 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
   }
 
   @NotNull
-  private Map<String, CommitStatusPublisher> getPublishers(@NotNull BuildPromotion buildPromotion) {
+  private Map<String, CommitStatusPublisher> getPublishers(@NotNull BuildPromotion buildPromotion, @NotNull Event event) {
+    if (TeamCityProperties.getBooleanOrTrue(EVENT_FILTERED_PUBLISHERS_PROPERTY)) {
+      return myPublisherManager.createPublishers(buildPromotion, event);
+    }
     final Map<String, CommitStatusPublisher> publishers = myPublisherManager.createConfiguredPublishers(buildPromotion);
     SBuildType buildType = buildPromotion.getBuildType();
     if (buildType != null) {
@@ -813,6 +1030,16 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     }
   }
 
+  private void dispatch(@NotNull Event event, @NotNull BuildPromotion promotion, @NotNull Runnable action) {
+    if (PublishingTaskDispatcher.isEnabled()) {
+      SBuildType buildType = promotion.getBuildType();
+      String projectId = buildType != null ? buildType.getProject().getExternalId() : null;
+      myTaskDispatcher.submit(event, promotion.getId(), projectId, action, () -> eventProcessed(event));
+    } else {
+      runAsync(action, () -> eventProcessed(event));
+    }
+  }
+
   private class BuildPublisherTaskConsumer extends PublisherTaskConsumer<PublishTask> {
 
     private final Function<SBuild, PublishTask> myTaskSupplier;
@@ -852,21 +1079,41 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         return;
       }
 
-      synchronized (myLastEvents) {
-        BuildPromotion buildPromotion = build.getBuildPromotion();
-        if (myLastEvents.get(buildPromotion.getId()) != null && eventType.isFirstTask()) {
-          eventProcessed(eventType);
-          return;
-        }
-        if (eventType.isConsequentTask())
-          myLastEvents.put(buildPromotion.getId(), eventType);
+      if (!myPromotionStates.eventAccepted(build.getBuildPromotion().getId(), eventType)) {
+        eventProcessed(eventType);
+        return;
       }
 
       Long lastDelay = task.getLongArg2();
       if (lastDelay != null && eventType == Event.STARTED && build.isFinished()) {
         return;
       }
-      runAsync(() -> runForEveryPublisher(eventType, build, lastDelay), () -> { eventProcessed(eventType); });
+      final long gracePeriod = TeamCityProperties.getLong(STARTED_GRACE_PERIOD_PROPERTY, 0);
+      if (eventType == Event.STARTED && lastDelay == null && gracePeriod > 0 && !build.isFinished()) {
+        // quickly finished builds do not need the started status: it will be overridden by the final one right away
+        dispatchAfterGracePeriod(build, gracePeriod, () -> runForEveryPublisher(eventType, build, null, 1));
+        return;
+      }
+      final int attempt = getAttempt(task);
+      dispatch(eventType, build.getBuildPromotion(), () -> runForEveryPublisher(eventType, build, lastDelay, attempt));
+    }
+
+    private void dispatchAfterGracePeriod(@NotNull SBuild build, long gracePeriod, @NotNull Runnable action) {
+      final BuildPromotion buildPromotion = build.getBuildPromotion();
+      final Runnable dispatchIfRunning = () -> {
+        if (myPromotionStates.getLastEvent(buildPromotion.getId()) != null || !isBuildInProgress(build)) {
+          LOG.debug(() -> "Event: " + Event.STARTED.getName() + ", build " + LogUtil.describe(build) + ": build has finished within the grace period, the status is not published");
+          eventProcessed(Event.STARTED);
+          return;
+        }
+        dispatch(Event.STARTED, buildPromotion, action);
+      };
+      try {
+        myExecutorServices.getNormalExecutorService().schedule(dispatchIfRunning, gracePeriod, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException ex) {
+        LOG.warnAndDebugDetails("CommitStatusPublisherListener has failed to postpone publishing of the started status", ex);
+        dispatch(Event.STARTED, buildPromotion, action);
+      }
     }
 
     @Nullable
@@ -878,11 +1125,11 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     }
 
     @Override
-    void doRunTask(PublishTask task, CommitStatusPublisher publisher, BuildRevision revision, AdditionalTaskInfo additionalTaskInfo) throws PublisherException {
-      task.run(publisher, revision);
+    boolean doRunTask(PublishTask task, CommitStatusPublisher publisher, BuildRevision revision, AdditionalTaskInfo additionalTaskInfo) throws PublisherException {
+      return task.run(publisher, revision);
     }
 
-    private void runForEveryPublisher(@NotNull Event event, @NotNull SBuild build, @Nullable Long lastDelay) {
+    private void runForEveryPublisher(@NotNull Event event, @NotNull SBuild build, @Nullable Long lastDelay, int attempt) {
       PublishTask task = myTaskSupplier.apply(build);
       SBuildType buildType = build.getBuildType();
       if (buildType == null) return;
@@ -905,11 +1152,12 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
               } catch (PublisherException e) {
                 retryInfo = getRetryInfo(e, buildPromotion, event, lastDelay);
                 LOG.warnAndDebugDetails("Cannot determine if event \"" + event + "\" can be published for current revision state in VCS. " + retryInfo.message, e);
+                if (!retryInfo.shouldRetry) publishingGaveUp(publisher, revision, buildPromotion);
                 return retryInfo;
               }
             }
             if (isEventSuitableForRevision) {
-              retryInfo = runTask(event, buildPromotion, LogUtil.describe(build), task, publisher, revision, null, lastDelay);
+              retryInfo = runTask(event, buildPromotion, LogUtil.describe(build), task, publisher, revision, null, lastDelay, attempt);
             } else {
               LOG.debug(() -> "Event \"" + event + "\" is not suitable to be published to root \"" + publisher.getVcsRootId() + "\" for revision " + revision.getRevision());
             }
@@ -926,7 +1174,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         }
       };
 
-      proccessPublishing(event, buildPromotion, publishingProcessor);
+      proccessPublishing(event, buildPromotion, publishingProcessor, attempt);
     }
 
   }
@@ -956,7 +1204,7 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         return;
       }
 
-      Event event = myLastEvents.get(promotion.getId());
+      Event event = myPromotionStates.getLastEvent(promotion.getId());
       if (event != null && event == Event.STARTED) {
         eventProcessed(event);
         return;
@@ -971,7 +1219,8 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         // we do not retry publishing queued status if the build is no longer in queue
         return;
       }
-      runAsync(() -> runForEveryPublisher(eventType, promotion, additionalTaskInfo, lastDelay), () -> { eventProcessed(eventType); });
+      final int attempt = getAttempt(task);
+      dispatch(eventType, promotion, () -> runForEveryPublisher(eventType, promotion, additionalTaskInfo, lastDelay, attempt));
     }
 
     @Nullable
@@ -991,15 +1240,16 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
 
     @Nullable
     protected String getComment(PerformingTask task) {
-      return task.getStringArg();
+      final String arg = task.getStringArg();
+      return arg != null && arg.startsWith(ATTEMPT_TASK_ARG_PREFIX) ? DefaultStatusMessages.BUILD_QUEUED : arg;
     }
 
     @Override
-    void doRunTask(PublishQueuedTask task, CommitStatusPublisher publisher, BuildRevision revision, AdditionalTaskInfo additionalTaskInfo) throws PublisherException {
-      task.run(publisher, revision, additionalTaskInfo);
+    boolean doRunTask(PublishQueuedTask task, CommitStatusPublisher publisher, BuildRevision revision, AdditionalTaskInfo additionalTaskInfo) throws PublisherException {
+      return task.run(publisher, revision, additionalTaskInfo);
     }
 
-    private void runForEveryPublisher(@NotNull Event event, @NotNull BuildPromotion buildPromotion, AdditionalTaskInfo additionalTaskInfo, @Nullable Long lastDelay) {
+    private void runForEveryPublisher(@NotNull Event event, @NotNull BuildPromotion buildPromotion, AdditionalTaskInfo additionalTaskInfo, @Nullable Long lastDelay, int attempt) {
       PublishQueuedTask publishTask = myTaskSupplier.apply(buildPromotion);
 
       PublishingProcessor publishingProcessor = new PublishingProcessor() {
@@ -1025,15 +1275,22 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
         private RetryInfo doPublish(BuildRevision revision, CommitStatusPublisher publisher) {
           boolean isEventSuitableForRevision;
           RetryInfo retryInfo = new RetryInfo();
+          if (isQueuedStatusPublishedByChain(buildPromotion, publisher, revision)) {
+            LOG.debug(() -> "Event \"" + event + "\" for " + LogUtil.describe(buildPromotion) + " is not published to root \"" + publisher.getVcsRootId() + "\" for revision " +
+                            revision.getRevision() + ": queued status with the same context has already been published by another build of the chain");
+            myMetrics.increment("queued.chainDuplicatesSkipped");
+            return retryInfo;
+          }
           try {
             isEventSuitableForRevision = isCurrentRevisionSuitable(event, buildPromotion, revision, publisher);
           } catch (PublisherException e) {
             retryInfo = getRetryInfo(e, buildPromotion, event, lastDelay);
             LOG.warnAndDebugDetails("Cannot determine if event \"" + event + "\" can be published for current revision state in VCS. " + retryInfo.message, e);
+            if (!retryInfo.shouldRetry) publishingGaveUp(publisher, revision, buildPromotion);
             return retryInfo;
           }
           if (isEventSuitableForRevision) {
-            retryInfo = runTask(event, buildPromotion, LogUtil.describe(buildPromotion), publishTask, publisher, revision, additionalTaskInfo, lastDelay);
+            retryInfo = runTask(event, buildPromotion, LogUtil.describe(buildPromotion), publishTask, publisher, revision, additionalTaskInfo, lastDelay, attempt);
           } else {
             LOG.debug(() -> "Event \"" + event + "\" is not suitable to be published to root \"" + publisher.getVcsRootId() + "\" for revision " + revision.getRevision());
           }
@@ -1045,31 +1302,43 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
           return getQueuedBuildRevisionForVote(buildType, publisher, buildPromotion);
         }
       };
-      proccessPublishing(event, buildPromotion, publishingProcessor);
+      proccessPublishing(event, buildPromotion, publishingProcessor, attempt);
     }
 
   }
 
   private static class RetryInfo {
     final boolean shouldRetry;
+    // publishing has been postponed by a limit of the server, it has not failed
+    final boolean throttled;
     @NotNull
     final String message;
     final long newDelay;
     RetryInfo(boolean shouldRetry, @NotNull String message, long newDelay) {
+      this(shouldRetry, false, message, newDelay);
+    }
+
+    RetryInfo(boolean shouldRetry, boolean throttled, @NotNull String message, long newDelay) {
       this.message = message;
       this.newDelay = newDelay;
       this.shouldRetry = shouldRetry;
+      this.throttled = throttled;
     }
 
     RetryInfo() {
       message = "";
       newDelay = 0;
       shouldRetry = false;
+      throttled = false;
     }
   }
 
   @NotNull
   private RetryInfo getRetryInfo(@NotNull Throwable t, @NotNull BuildPromotion buildPromotion, @NotNull Event event, @Nullable Long lastDelay) {
+    if (event.isRetryable() && PublishingThrottledException.isThrottled(t)) {
+      final long delay = throttledRetryDelay();
+      return new RetryInfo(true, true, String.format("Will retry in %d seconds", delay / 1000), delay);
+    }
     if (isRetryEnabled() && event.isRetryable() && t instanceof PublisherException && ((PublisherException)t).shouldRetry()) {
       Long firstRetry = myBuildTypeToFirstPublishFailure.get(buildPromotion.getBuildTypeId());
       long timeNow = Instant.now().toEpochMilli();
@@ -1090,9 +1359,30 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
     return new RetryInfo();
   }
 
+  private void addDeadLetter(@NotNull Event event,
+                             @NotNull BuildPromotion promotion,
+                             @NotNull CommitStatusPublisher publisher,
+                             @NotNull BuildRevision revision,
+                             @NotNull Throwable t,
+                             int attempts) {
+    final PublisherException publisherException = t instanceof PublisherException ? (PublisherException)t : null;
+    myDeadLetters.record(new PublishingDeadLetters.Entry(promotion.getId(), promotion.getAssociatedBuildId(),
+                                                         publisher.getBuildType().getBuildTypeId(), publisher.getBuildType().getProjectId(),
+                                                         publisher.getId(), publisher.getSettings().getName(),
+                                                         PublishingRecoveryTracker.getHostKey(publisher, revision),
+                                                         revision.getRoot().getParent().getExternalId(), revision.getRevision(), event,
+                                                         publisherException != null ? publisherException.getTargetUrl() : null,
+                                                         publisherException != null ? publisherException.getPayload() : null,
+                                                         publisherException != null ? t.getMessage() : t.toString(),
+                                                         attempts, Instant.now().toEpochMilli()));
+  }
+
   private abstract class PublisherTaskConsumer<T> extends MultiNodeTasks.TaskConsumer {
 
-    abstract void doRunTask(T task, CommitStatusPublisher publisher, BuildRevision revision, AdditionalTaskInfo additionalTaskInfo) throws PublisherException;
+    /**
+     * @return true if the status has been updated
+     */
+    abstract boolean doRunTask(T task, CommitStatusPublisher publisher, BuildRevision revision, AdditionalTaskInfo additionalTaskInfo) throws PublisherException;
 
     @Nullable
     protected Event getEventType(PerformingTask task) {
@@ -1107,19 +1397,30 @@ public class CommitStatusPublisherListener extends BuildServerAdapter implements
                            @NotNull CommitStatusPublisher publisher,
                            @NotNull BuildRevision revision,
                            @Nullable AdditionalTaskInfo additionalTaskInfo,
-                           @Nullable Long lastDelay) {
+                           @Nullable Long lastDelay,
+                           int attempt) {
       RetryInfo retryInfo = new RetryInfo();
       try {
         LOG.info(String.format("Publishing status to %s: build id %d, revision %s, event %s", publisher.getSettings().getName(), promotion.getId(), revision.getRevision(), event.getName()));
-        doRunTask(publishTask, publisher, revision, additionalTaskInfo);
+        boolean statusUpdated = doRunTask(publishTask, publisher, revision, additionalTaskInfo);
         myBuildTypeToFirstPublishFailure.remove(promotion.getBuildTypeId());
+        publishedSuccessfully(event, publisher, revision, promotion, statusUpdated);
       } catch (Throwable t) {
         retryInfo = getRetryInfo(t, promotion, event, lastDelay);
+        if (retryInfo.throttled) {
+          LOG.debug(String.format("Publishing status to %s has been postponed: build id %d, revision %s, event %s. %s. %s", publisher.getSettings().getName(),
+                                  promotion.getId(), revision.getRevision(), event.getName(), t.getMessage(), retryInfo.message));
+          return retryInfo;
+        }
         String problemMessage = String.format("Commit Status Publisher has failed to publish %s status", event.getName());
         if (!retryInfo.message.isEmpty()) {
           problemMessage = problemMessage + ". " + retryInfo.message;
         }
         myProblems.reportProblem(problemMessage, publisher, buildDescription, null, t, LOG);
+        if (!retryInfo.shouldRetry) {
+          addDeadLetter(event, promotion, publisher, revision, t, attempt);
+          publishingGaveUp(publisher, revision, promotion);
+        }
         if (shouldFailBuild(publisher.getBuildType())) {
           String problemId = "commitStatusPublisher." + publisher.getId() + "." + revision.getRoot().getId();
           String problemDescription = t instanceof PublisherException ? t.getMessage() : t.toString();
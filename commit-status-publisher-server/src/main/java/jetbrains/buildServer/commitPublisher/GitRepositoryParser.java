@@ -21,6 +21,7 @@ package jetbrains.buildServer.commitPublisher;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -92,6 +93,31 @@ public class GitRepositoryParser {
       return new Repository(url, userGroup, repo);
   }
 
+  /**
+   * @return lowercase host name of the repository url, empty string if the url is not specified
+   */
+  @NotNull
+  public static String extractHost(@Nullable String url) {
+    if (url == null) return "";
+    String host = url;
+    int schemeEnd = host.indexOf("://");
+    if (schemeEnd >= 0) {
+      host = host.substring(schemeEnd + 3);
+    }
+    int userInfoEnd = host.indexOf('@');
+    int pathStart = host.indexOf('/');
+    if (userInfoEnd >= 0 && (pathStart < 0 || userInfoEnd < pathStart)) {
+      host = host.substring(userInfoEnd + 1);
+    }
+    for (int i = 0; i < host.length(); i++) {
+      char c = host.charAt(i);
+      if (c == '/' || c == ':') {
+        return host.substring(0, i).toLowerCase(Locale.ROOT);
+      }
+    }
+    return host.toLowerCase(Locale.ROOT);
+  }
+
   private static String stripPrefixTrimmingSlashes(@NotNull final String str, @NotNull final String prefix) {
     String s = str.startsWith("/") ? str : "/" + str;
     String p = prefix.startsWith("/") ? prefix : "/" + prefix;
@@ -43,13 +43,19 @@ public abstract class HttpBasedCommitStatusPublisher<Status> extends BaseCommitS
 
   private final HttpResponseProcessor<HttpPublisherException> myHttpResponseProcessor;
   protected final WebLinks myLinks;
+  private final AdaptiveConcurrencyLimiter myConcurrencyLimiter;
+  private final AdaptiveTimeouts myAdaptiveTimeouts;
+  private final PublishedPayloads myPublishedPayloads;
 
-  public HttpBasedCommitStatusPublisher(@NotNull CommitStatusPublisherSettings settings,
+  public HttpBasedCommitStatusPublisher(@NotNull BasePublisherSettings settings,
                                         @NotNull SBuildType buildType, @NotNull String buildFeatureId,
                                         @NotNull Map<String, String> params,
                                         @NotNull CommitStatusPublisherProblems problems, WebLinks links) {
     super(settings, buildType, buildFeatureId, params, problems);
     myLinks = links;
+    myConcurrencyLimiter = settings.concurrencyLimiter();
+    myAdaptiveTimeouts = settings.adaptiveTimeouts();
+    myPublishedPayloads = settings.publishedPayloads();
     myHttpResponseProcessor = new DefaultHttpResponseProcessor();
   }
 
@@ -63,15 +69,44 @@ public abstract class HttpBasedCommitStatusPublisher<Status> extends BaseCommitS
                           @Nullable final String data,
                           @Nullable final Map<String, String> headers,
                           @NotNull final String buildDescription) throws PublisherException {
+    postJson(url, credentials, data, headers, buildDescription, myBuildType.getInternalId());
+  }
+
+  /**
+   * @param context status context the data is published for, the request is skipped when the same data
+   *                has been recently sent to the same url for the same context
+   */
+  protected void postJson(@NotNull final String url,
+                          @Nullable final HttpCredentials credentials,
+                          @Nullable final String data,
+                          @Nullable final Map<String, String> headers,
+                          @NotNull final String buildDescription,
+                          @Nullable final String context) throws PublisherException {
+    if (myPublishedPayloads.isAlreadySent(url, context, data)) return;
+    final AdaptiveConcurrencyLimiter.Permit permit = myConcurrencyLimiter.acquire(url);
+    AdaptiveConcurrencyLimiter.Outcome outcome = AdaptiveConcurrencyLimiter.Outcome.IGNORED;
+    final int timeout = getConnectionTimeout(url);
+    final long startTime = System.currentTimeMillis();
     try {
       LoggerUtil.logRequest(getId(), HttpMethod.POST, url, data);
       IOGuard.allowNetworkCall(
-        () -> HttpHelper.post(url, credentials, data, ContentType.APPLICATION_JSON, headers, getConnectionTimeout(), getSettings().trustStore(), new RetryResponseProcessor(this))
+        () -> HttpHelper.post(url, credentials, data, ContentType.APPLICATION_JSON, headers, timeout, getSettings().trustStore(), new RetryResponseProcessor(this))
       );
+      myAdaptiveTimeouts.recordLatency(url, System.currentTimeMillis() - startTime);
+      outcome = AdaptiveConcurrencyLimiter.Outcome.SUCCESS;
+      myPublishedPayloads.sent(url, context, data);
     } catch (Exception ex) {
+      if (AdaptiveTimeouts.isTimeout(ex)) {
+        myAdaptiveTimeouts.recordLatency(url, timeout);
+      }
+      myPublishedPayloads.failed(url, context);
       PublisherException e = new PublisherException("Commit Status Publisher POST HTTP request has failed. " + ex, ex);
       RetryResponseProcessor.processNetworkException(ex, e);
+      e.setRequest(url, data);
+      outcome = AdaptiveConcurrencyLimiter.getOutcome(ex);
       throw e;
+    } finally {
+      permit.release(outcome);
     }
   }
 
@@ -80,17 +115,57 @@ public abstract class HttpBasedCommitStatusPublisher<Status> extends BaseCommitS
                      @Nullable final HttpCredentials credentials,
                      @Nullable final Map<String, String> headers,
                      @NotNull final ResponseEntityProcessor<T> responseProcessor) throws PublisherException {
+    final AdaptiveConcurrencyLimiter.Permit permit = myConcurrencyLimiter.acquire(url);
+    AdaptiveConcurrencyLimiter.Outcome outcome = AdaptiveConcurrencyLimiter.Outcome.IGNORED;
     try {
       LoggerUtil.logRequest(getId(), HttpMethod.GET, url, null);
-      IOGuard.allowNetworkCall(() -> HttpHelper.get(url, credentials, headers, getConnectionTimeout(), getSettings().trustStore(), new RetryResponseProcessor(responseProcessor)));
+      final int timeout = getConnectionTimeout(url);
+      try {
+        doGet(url, credentials, headers, responseProcessor, timeout);
+      } catch (Exception ex) {
+        // GET is idempotent: when the adapted timeout turns out to be too short, try once more with the configured one
+        if (timeout >= getConnectionTimeout() || !AdaptiveTimeouts.isTimeout(ex) || !AdaptiveTimeouts.isRetryOnTimeoutEnabled()) throw ex;
+        LOG.debug(() -> "GET request to " + url + " has timed out in " + timeout + " ms, retrying with timeout " + getConnectionTimeout() + " ms");
+        doGet(url, credentials, headers, responseProcessor, getConnectionTimeout());
+      }
+      outcome = AdaptiveConcurrencyLimiter.Outcome.SUCCESS;
       return responseProcessor.getProcessingResult();
     } catch (Exception ex) {
       PublisherException e = new PublisherException("Commit Status Publisher HTTP request has failed", ex);
       RetryResponseProcessor.processNetworkException(ex, e);
+      outcome = AdaptiveConcurrencyLimiter.getOutcome(ex);
       throw e;
+    } finally {
+      permit.release(outcome);
     }
   }
 
+  private void doGet(@NotNull String url,
+                     @Nullable HttpCredentials credentials,
+                     @Nullable Map<String, String> headers,
+                     @NotNull ResponseEntityProcessor<?> responseProcessor,
+                     int timeout) throws Exception {
+    final long startTime = System.currentTimeMillis();
+    try {
+      IOGuard.allowNetworkCall(() -> HttpHelper.get(url, credentials, headers, timeout, getSettings().trustStore(), new RetryResponseProcessor(responseProcessor)));
+      myAdaptiveTimeouts.recordLatency(url, System.currentTimeMillis() - startTime);
+    } catch (Exception ex) {
+      if (AdaptiveTimeouts.isTimeout(ex)) {
+        myAdaptiveTimeouts.recordLatency(url, timeout);
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * @return timeout for the request to the url: the timeout configured for the build configuration if any,
+   * otherwise the one adapted to the latencies of the host, see {@link AdaptiveTimeouts}
+   */
+  private int getConnectionTimeout(@NotNull String url) {
+    if (isConnectionTimeoutConfigured()) return getConnectionTimeout();
+    return myAdaptiveTimeouts.getTimeout(url, getConnectionTimeout());
+  }
+
   public void processResponse(HttpHelper.HttpResponse response) throws HttpPublisherException, IOException {
     myHttpResponseProcessor.processResponse(response);
   }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Collapses intermediate events of a running build (failure detected, marked as successful) which happen within a window:
+ * only the latest of them is published when the window is over.
+ */
+class IntermediateEventsDebouncer {
+  static final String WINDOW_PROPERTY = "teamcity.commitStatusPublisher.intermediateEvents.debounceWindowMs";
+
+  private final ConcurrentMap<Long, Event> myPendingEvents = new ConcurrentHashMap<>();
+  private final Supplier<ScheduledExecutorService> myExecutor;
+  private final BiConsumer<Long, Event> myPublisher;
+
+  /**
+   * @param executor executor to schedule publishing with
+   * @param publisher publishes the latest event of the build with the given id when the window is over
+   */
+  IntermediateEventsDebouncer(@NotNull Supplier<ScheduledExecutorService> executor, @NotNull BiConsumer<Long, Event> publisher) {
+    myExecutor = executor;
+    myPublisher = publisher;
+  }
+
+  static boolean isDebounced(@NotNull Event event) {
+    return event == Event.FAILURE_DETECTED || event == Event.MARKED_AS_SUCCESSFUL;
+  }
+
+  /**
+   * @return true if the event is postponed till the end of the window, false if it should be published right away
+   */
+  boolean offer(long buildId, @NotNull Event event) {
+    if (!isDebounced(event)) return false;
+    final long window = TeamCityProperties.getLong(WINDOW_PROPERTY, 0);
+    if (window <= 0) return false;
+
+    final AtomicBoolean windowStarted = new AtomicBoolean(false);
+    myPendingEvents.compute(buildId, (id, previous) -> {
+      if (previous == null) {
+        windowStarted.set(true);
+      } else {
+        LOG.debug(() -> "Event: " + event.getName() + ", build id " + buildId + ": supersedes pending event " + previous.getName());
+      }
+      return event;
+    });
+    if (windowStarted.get()) {
+      try {
+        myExecutor.get().schedule(() -> flush(buildId), window, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException ex) {
+        LOG.warnAndDebugDetails("Failed to postpone publishing of event " + event.getName() + " for build id " + buildId + ", publishing it right away", ex);
+        myPendingEvents.remove(buildId);
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Drops the pending event of the build, e.g. when the build has finished and its final status will be published anyway
+   */
+  void cancel(long buildId) {
+    Event dropped = myPendingEvents.remove(buildId);
+    if (dropped != null) {
+      LOG.debug(() -> "Event: " + dropped.getName() + ", build id " + buildId + ": pending event is dropped");
+    }
+  }
+
+  int getPendingEventsCount() {
+    return myPendingEvents.size();
+  }
+
+  private void flush(long buildId) {
+    Event event = myPendingEvents.remove(buildId);
+    if (event == null) return;
+    try {
+      myPublisher.accept(buildId, event);
+    } catch (Throwable t) {
+      LOG.warnAndDebugDetails("Failed to publish event " + event.getName() + " for build id " + buildId, t);
+    }
+  }
+}
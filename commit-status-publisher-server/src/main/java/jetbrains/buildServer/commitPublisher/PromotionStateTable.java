@@ -0,0 +1,156 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Publishing state of build promotions: the last consequent event processed for a promotion and
+ * whether the settings finalized event was received before the changes of the promotion were collected.
+ * <p>
+ * The table is lock-free and bounded: slots hold immutable states, transitions replace the state with compare-and-set.
+ * A promotion is looked up by linear probing within a small window of slots starting at the slot its id is mapped to.
+ * When the window is full, the state of the oldest promotion in it is dropped, the state of another promotion is never
+ * replaced by the state of an older one. Slots are never emptied, so probing can stop at the first empty slot.
+ * </p>
+ */
+class PromotionStateTable {
+  private static final int MAX_PROBES = 8;
+
+  private final AtomicReferenceArray<State> mySlots;
+  private final int myMask;
+  private final int myProbes;
+  private final long myFinalizedEventTtlMs;
+
+  /**
+   * @param capacity number of slots, rounded up to a power of two
+   * @param finalizedEventTtlMs time the received settings finalized event is remembered for
+   */
+  PromotionStateTable(int capacity, long finalizedEventTtlMs) {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    mySlots = new AtomicReferenceArray<>(size);
+    myMask = size - 1;
+    myProbes = Math.min(MAX_PROBES, size);
+    myFinalizedEventTtlMs = finalizedEventTtlMs;
+  }
+
+  /**
+   * Registers the event which is about to be published for the promotion
+   * @return false if the event should not be published, because it is a first event and a consequent event has already been processed
+   */
+  boolean eventAccepted(long promotionId, @NotNull Event event) {
+    while (true) {
+      final int slot = findSlotFor(promotionId);
+      final State existing = slot < 0 ? null : mySlots.get(slot);
+      final State current = existing != null && existing.myPromotionId == promotionId ? existing : null;
+      if (event.isFirstTask()) return current == null || current.myLastEvent == null;
+      if (!event.isConsequentTask()) return true;
+      if (slot < 0) return true; // all the probed slots hold newer promotions, the state of this one is not remembered
+      final State updated = new State(promotionId, event, current != null ? current.myFinalizedEventReceivedAt : 0);
+      if (mySlots.compareAndSet(slot, existing, updated)) return true;
+    }
+  }
+
+  /**
+   * @return last consequent event processed for the promotion, if known
+   */
+  @Nullable
+  Event getLastEvent(long promotionId) {
+    final int slot = findSlot(promotionId);
+    if (slot < 0) return null;
+    final State state = mySlots.get(slot);
+    return state != null && state.myPromotionId == promotionId ? state.myLastEvent : null;
+  }
+
+  void finalizedEventReceived(long promotionId) {
+    while (true) {
+      final int slot = findSlotFor(promotionId);
+      if (slot < 0) return;
+      final State existing = mySlots.get(slot);
+      final Event lastEvent = existing != null && existing.myPromotionId == promotionId ? existing.myLastEvent : null;
+      if (mySlots.compareAndSet(slot, existing, new State(promotionId, lastEvent, System.currentTimeMillis()))) return;
+    }
+  }
+
+  /**
+   * Forgets the received settings finalized event of the promotion
+   * @return true if the event was received and has not been consumed yet
+   */
+  boolean consumeFinalizedEvent(long promotionId) {
+    while (true) {
+      final int slot = findSlot(promotionId);
+      if (slot < 0) return false;
+      final State existing = mySlots.get(slot);
+      if (existing == null || existing.myPromotionId != promotionId || existing.myFinalizedEventReceivedAt == 0) return false;
+      final boolean alive = System.currentTimeMillis() - existing.myFinalizedEventReceivedAt <= myFinalizedEventTtlMs;
+      if (mySlots.compareAndSet(slot, existing, new State(promotionId, existing.myLastEvent, 0))) return alive;
+    }
+  }
+
+  /**
+   * @return slot holding the state of the promotion, or -1 if the state is not known
+   */
+  private int findSlot(long promotionId) {
+    final int start = getSlot(promotionId);
+    for (int i = 0; i < myProbes; i++) {
+      final int slot = (start + i) & myMask;
+      final State state = mySlots.get(slot);
+      if (state == null) return -1;
+      if (state.myPromotionId == promotionId) return slot;
+    }
+    return -1;
+  }
+
+  /**
+   * @return slot holding the state of the promotion, the first empty slot or the slot of the oldest promotion which is older than the given one,
+   * -1 if all the probed slots hold states of newer promotions
+   */
+  private int findSlotFor(long promotionId) {
+    final int start = getSlot(promotionId);
+    int oldest = -1;
+    long oldestPromotionId = promotionId;
+    for (int i = 0; i < myProbes; i++) {
+      final int slot = (start + i) & myMask;
+      final State state = mySlots.get(slot);
+      if (state == null || state.myPromotionId == promotionId) return slot;
+      if (state.myPromotionId < oldestPromotionId) {
+        oldest = slot;
+        oldestPromotionId = state.myPromotionId;
+      }
+    }
+    return oldest;
+  }
+
+  private int getSlot(long promotionId) {
+    return (int)(promotionId ^ (promotionId >>> 32)) & myMask;
+  }
+
+  private static final class State {
+    private final long myPromotionId;
+    private final Event myLastEvent;
+    private final long myFinalizedEventReceivedAt;
+
+    private State(long promotionId, @Nullable Event lastEvent, long finalizedEventReceivedAt) {
+      myPromotionId = promotionId;
+      myLastEvent = lastEvent;
+      myFinalizedEventReceivedAt = finalizedEventReceivedAt;
+    }
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Remembers hashes of the payloads which were successfully sent per target url and status context,
+ * so that sending of the same payload again within a TTL can be skipped.
+ */
+public class PublishedPayloads {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.skipDuplicatePayloads.enabled";
+  static final String TTL_PROPERTY = "teamcity.commitStatusPublisher.skipDuplicatePayloads.ttlSeconds";
+  static final String SKIPPED_COUNTER = "duplicatePayloads.skipped";
+  private static final int DEFAULT_TTL_SECONDS = 120;
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, Entry> myEntries = CacheBuilder.newBuilder()
+                                                            .maximumSize(MAX_SIZE)
+                                                            .expireAfterWrite(1, TimeUnit.HOURS)
+                                                            .build();
+  private final PublishingMetrics myMetrics;
+
+  public PublishedPayloads(@NotNull PublishingMetrics metrics) {
+    myMetrics = metrics;
+  }
+
+  public static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(ENABLED_PROPERTY);
+  }
+
+  /**
+   * @return true if exactly the same payload has been successfully sent to the url for the context recently,
+   * the skip is counted in {@link PublishingMetrics}
+   */
+  public boolean isAlreadySent(@NotNull String url, @Nullable String context, @Nullable String payload) {
+    if (!isEnabled() || payload == null) return false;
+    Entry entry = myEntries.getIfPresent(getKey(url, context));
+    if (entry == null) return false;
+    long ttl = TimeUnit.SECONDS.toMillis(TeamCityProperties.getInteger(TTL_PROPERTY, DEFAULT_TTL_SECONDS));
+    if (System.currentTimeMillis() - entry.mySentAt >= ttl) return false;
+    byte[] hash = hash(payload);
+    if (hash == null || !Arrays.equals(hash, entry.myHash)) return false;
+    LOG.debug(() -> "Skipping request to " + url + (context != null ? " for context " + context : "") + ": the same payload has already been sent");
+    myMetrics.increment(SKIPPED_COUNTER);
+    return true;
+  }
+
+  public void sent(@NotNull String url, @Nullable String context, @Nullable String payload) {
+    if (!isEnabled() || payload == null) return;
+    byte[] hash = hash(payload);
+    if (hash == null) return;
+    myEntries.put(getKey(url, context), new Entry(hash, System.currentTimeMillis()));
+  }
+
+  /**
+   * Should be called when sending has failed: the state on the VCS hosting side is unknown since then
+   */
+  public void failed(@NotNull String url, @Nullable String context) {
+    myEntries.invalidate(getKey(url, context));
+  }
+
+  @NotNull
+  private static String getKey(@NotNull String url, @Nullable String context) {
+    return context == null ? url : url + "#" + context;
+  }
+
+  @Nullable
+  private static byte[] hash(@NotNull String payload) {
+    try {
+      return MessageDigest.getInstance("SHA-256").digest(payload.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      LOG.warnAndDebugDetails("Cannot calculate hash of the payload", e);
+      return null;
+    }
+  }
+
+  private static class Entry {
+    private final byte[] myHash;
+    private final long mySentAt;
+
+    private Entry(@NotNull byte[] hash, long sentAt) {
+      myHash = hash;
+      mySentAt = sentAt;
+    }
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.BuildRevision;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers the last status this node has published per VCS root, revision and status context (publisher, build feature,
+ * build configuration and the context reported by the publisher), so that the status does not have to be read from the VCS hosting
+ * before publishing the next one. Only events which have actually updated the status are remembered.
+ */
+class PublishedStatusLedger {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.publishedLedger.enabled";
+  static final String MAX_AGE_PROPERTY = "teamcity.commitStatusPublisher.publishedLedger.maxAgeSeconds";
+  private static final int DEFAULT_MAX_AGE_SECONDS = 300;
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, Entry> myEntries = CacheBuilder.newBuilder()
+                                                             .maximumSize(MAX_SIZE)
+                                                             .expireAfterWrite(1, TimeUnit.HOURS)
+                                                             .build();
+
+  static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(ENABLED_PROPERTY);
+  }
+
+  void published(@NotNull Event event, @NotNull BuildPromotion promotion, @NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) {
+    if (!isEnabled()) return;
+    myEntries.put(getKey(publisher, revision, promotion), new Entry(event, promotion.getId(), System.currentTimeMillis()));
+  }
+
+  /**
+   * @return status of the revision as it was published by this node, or null if it is unknown or is too old to be trusted
+   */
+  @Nullable
+  RevisionStatus getRevisionStatus(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision, @NotNull BuildPromotion promotion) {
+    if (!isEnabled()) return null;
+    Entry entry = myEntries.getIfPresent(getKey(publisher, revision, promotion));
+    if (entry == null) return null;
+    long maxAge = TimeUnit.SECONDS.toMillis(TeamCityProperties.getInteger(MAX_AGE_PROPERTY, DEFAULT_MAX_AGE_SECONDS));
+    if (System.currentTimeMillis() - entry.myPublishedAt > maxAge) return null;
+    return new RevisionStatus(entry.myEvent, null, true, entry.myBuildId);
+  }
+
+  @NotNull
+  private static String getKey(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision, @NotNull BuildPromotion promotion) {
+    return revision.getRoot().getId() + ":" + revision.getRevision() + ":" + publisher.getId() + ":" + publisher.getBuildFeatureId() + ":" +
+           publisher.getBuildType().getBuildTypeId() + ":" + publisher.getStatusContext(promotion);
+  }
+
+  private static class Entry {
+    private final Event myEvent;
+    private final long myBuildId;
+    private final long myPublishedAt;
+
+    private Entry(@NotNull Event event, long buildId, long publishedAt) {
+      myEvent = event;
+      myBuildId = buildId;
+      myPublishedAt = publishedAt;
+    }
+  }
+}
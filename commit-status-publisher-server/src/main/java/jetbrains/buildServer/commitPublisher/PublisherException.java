@@ -18,10 +18,13 @@
 
 package jetbrains.buildServer.commitPublisher;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class PublisherException extends Exception {
 
   private boolean myShouldRetry = false;
+  private String myTargetUrl;
+  private String myPayload;
 
   public PublisherException(@NotNull String message) {
     super(message);
@@ -31,6 +34,8 @@ public class PublisherException extends Exception {
     super(message, cause);
     if (cause instanceof PublisherException) {
       myShouldRetry = ((PublisherException)cause).myShouldRetry;
+      myTargetUrl = ((PublisherException)cause).myTargetUrl;
+      myPayload = ((PublisherException)cause).myPayload;
     }
   }
 
@@ -46,4 +51,23 @@ public class PublisherException extends Exception {
     return myShouldRetry;
   }
 
+  /**
+   * Remembers the request which has failed, so that it can be inspected later
+   */
+  public PublisherException setRequest(@NotNull String targetUrl, @Nullable String payload) {
+    myTargetUrl = targetUrl;
+    myPayload = payload;
+    return this;
+  }
+
+  @Nullable
+  public String getTargetUrl() {
+    return myTargetUrl;
+  }
+
+  @Nullable
+  public String getPayload() {
+    return myPayload;
+  }
+
 }
\ No newline at end of file
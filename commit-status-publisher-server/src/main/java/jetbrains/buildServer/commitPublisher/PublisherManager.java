@@ -18,6 +18,8 @@
 
 package jetbrains.buildServer.commitPublisher;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.util.*;
 import java.util.stream.Collectors;
 import jetbrains.buildServer.ExtensionHolder;
@@ -31,7 +33,13 @@ import org.jetbrains.annotations.Nullable;
 
 public class PublisherManager {
 
+  static final String SUPPLEMENTARY_PUBLISHERS_CACHE_ENABLED_PROPERTY = "teamcity.commitStatusPublisher.supplementaryPublishersCache.enabled";
+  private static final int SUPPLEMENTARY_PUBLISHERS_CACHE_MAX_SIZE = 1000;
+
   private final ExtensionsCollection<CommitStatusPublisherSettings> myPublisherSettings;
+  private final Cache<String, SupplementaryResolution> mySupplementaryResolutions = CacheBuilder.newBuilder()
+                                                                                                .maximumSize(SUPPLEMENTARY_PUBLISHERS_CACHE_MAX_SIZE)
+                                                                                                .build();
 
   public PublisherManager(@NotNull ExtensionHolder extensionHolder) {
     myPublisherSettings = extensionHolder.getExtensionsCollection(CommitStatusPublisherSettings.class);
@@ -85,8 +93,109 @@ public class PublisherManager {
     return publishers;
   }
 
+  /**
+   * Creates configured and supplementary publishers of the build promotion which support the event.
+   * Support of the event by a configured publisher is checked with its settings before the publisher is created.
+   */
+  @NotNull
+  public Map<String, CommitStatusPublisher> createPublishers(@NotNull BuildPromotion buildPromotion, @NotNull CommitStatusPublisher.Event event) {
+    final Map<String, CommitStatusPublisher> publishers = new LinkedHashMap<>();
+    final SBuildType buildType = buildPromotion.getBuildType();
+    if (buildType == null) return publishers;
+
+    final List<String> coveredRootIds = new ArrayList<>();
+    SBuild build = ((BuildPromotionEx)buildPromotion).getRealOrDummyBuild();
+    for (SBuildFeatureDescriptor buildFeatureDescriptor : build.getBuildFeaturesOfType(CommitStatusPublisherConstants.CSP_BUILD_FEATURE_TYPE)) {
+      if (!(buildFeatureDescriptor.getBuildFeature() instanceof CommitStatusPublisherFeature)) continue;
+      final Map<String, String> params = buildFeatureDescriptor.getParameters();
+      final String publisherId = params.get(Constants.PUBLISHER_ID_PARAM);
+      final CommitStatusPublisherSettings settings = publisherId != null ? findSettings(publisherId) : null;
+      if (settings == null) continue;
+
+      if (!settings.isEventSupported(event, buildType, params)) {
+        coveredRootIds.add(params.get(Constants.VCS_ROOT_ID_PARAM));
+        continue;
+      }
+      final String featureId = buildFeatureDescriptor.getId();
+      final CommitStatusPublisher publisher = settings.createPublisher(buildType, featureId, params);
+      if (publisher != null) {
+        publishers.put(featureId, publisher);
+        coveredRootIds.add(publisher.getVcsRootId());
+      }
+    }
+
+    getSupplementaryPublishers(buildType, coveredRootIds).forEach((featureId, publisher) -> {
+      if (publisher.isEventSupported(event)) {
+        publishers.put(featureId, publisher);
+      }
+    });
+    return publishers;
+  }
+
   @NotNull
   public Map<String, CommitStatusPublisher> createSupplementaryPublishers(@NotNull SBuildType buildType, @NotNull Map<String, CommitStatusPublisher> existingPublishers) {
+    return new HashMap<>(getSupplementaryPublishers(buildType, existingPublishers.values().stream().map(CommitStatusPublisher::getVcsRootId).collect(Collectors.toList())));
+  }
+
+  /**
+   * Forgets which settings publish for the VCS roots of the build type without a build feature,
+   * should be called when the settings of the build type or the connections available to it change
+   */
+  void invalidateSupplementaryPublishers(@NotNull String buildTypeId) {
+    mySupplementaryResolutions.invalidate(buildTypeId);
+  }
+
+  /**
+   * Which settings publish for each VCS root not covered by the existing publishers is cached per build type, while
+   * VCS roots of the build type and roots of the existing publishers are the same. The publishers are created on every call.
+   * @param coveredRootIds VCS roots of the existing publishers, null stands for a publisher of all roots
+   */
+  @NotNull
+  private Map<String, CommitStatusPublisher> getSupplementaryPublishers(@NotNull SBuildType buildType, @NotNull Collection<String> coveredRootIds) {
+    if (!TeamCityProperties.getBooleanOrTrue(SUPPLEMENTARY_PUBLISHERS_CACHE_ENABLED_PROPERTY)) {
+      return doCreateSupplementaryPublishers(buildType, coveredRootIds, new HashMap<>());
+    }
+
+    final String fingerprint = getSupplementaryPublishersFingerprint(buildType, coveredRootIds);
+    final SupplementaryResolution cached = mySupplementaryResolutions.getIfPresent(buildType.getInternalId());
+    if (cached != null && cached.myFingerprint.equals(fingerprint)) {
+      final Map<String, CommitStatusPublisher> supplementaryPublishers = createResolvedPublishers(buildType, cached.mySettingsIdByRootId);
+      if (supplementaryPublishers != null) {
+        return supplementaryPublishers;
+      }
+    }
+
+    final Map<Long, String> settingsIdByRootId = new HashMap<>();
+    final Map<String, CommitStatusPublisher> supplementaryPublishers = doCreateSupplementaryPublishers(buildType, coveredRootIds, settingsIdByRootId);
+    mySupplementaryResolutions.put(buildType.getInternalId(), new SupplementaryResolution(fingerprint, settingsIdByRootId));
+    return supplementaryPublishers;
+  }
+
+  /**
+   * @return null if the settings resolved for a root cannot create a publisher anymore, so the roots are to be resolved again
+   */
+  @Nullable
+  private Map<String, CommitStatusPublisher> createResolvedPublishers(@NotNull SBuildType buildType, @NotNull Map<Long, String> settingsIdByRootId) {
+    final Map<String, CommitStatusPublisher> supplementaryPublishers = new HashMap<>();
+    for (SVcsRoot vcsRoot : buildType.getVcsRoots()) {
+      final String settingsId = settingsIdByRootId.get(vcsRoot.getId());
+      if (settingsId == null) continue;
+      final CommitStatusPublisherSettings settings = findSettings(settingsId);
+      if (settings == null || !settings.isEnabled()) return null;
+      final CommitStatusPublisher featurelessPublisher = settings.createFeaturelessPublisher(buildType, vcsRoot);
+      if (featurelessPublisher == null) return null;
+      supplementaryPublishers.put(featurelessPublisher.getBuildFeatureId(), featurelessPublisher);
+    }
+    return supplementaryPublishers;
+  }
+
+  /**
+   * @param settingsIdByRootId collects id of the settings which have created the publisher for each root
+   */
+  @NotNull
+  private Map<String, CommitStatusPublisher> doCreateSupplementaryPublishers(@NotNull SBuildType buildType,
+                                                                             @NotNull Collection<String> coveredRootIds,
+                                                                             @NotNull Map<Long, String> settingsIdByRootId) {
     final Set<CommitStatusPublisherSettings> settingsSupportingFeatureless = myPublisherSettings.getExtensions().stream()
                                                                                                 .filter(settings -> settings.isEnabled() &&
                                                                                                                     settings.isFeatureLessPublishingSupported(buildType))
@@ -96,13 +205,14 @@ public class PublisherManager {
     }
 
     final Map<String, CommitStatusPublisher> supplementaryPublishers = new HashMap<>();
-    final Set<SVcsRoot> notCoveredVcsRoots = findNotCoveredVcsRoots(buildType, existingPublishers.values());
+    final Set<SVcsRoot> notCoveredVcsRoots = findNotCoveredVcsRoots(buildType, coveredRootIds);
 
     for (SVcsRoot notCoveredVcsRoot : notCoveredVcsRoots) {
       for (CommitStatusPublisherSettings settings : settingsSupportingFeatureless) {
         final CommitStatusPublisher featurelessPublisher = settings.createFeaturelessPublisher(buildType, notCoveredVcsRoot);
         if (featurelessPublisher != null) {
           supplementaryPublishers.put(featurelessPublisher.getBuildFeatureId(), featurelessPublisher);
+          settingsIdByRootId.put(notCoveredVcsRoot.getId(), settings.getId());
           break;
         }
       }
@@ -152,10 +262,9 @@ public class PublisherManager {
   }
 
   @NotNull
-  private Set<SVcsRoot> findNotCoveredVcsRoots(@NotNull SBuildType buildType, @NotNull Collection<CommitStatusPublisher> existingPublishers) {
+  private Set<SVcsRoot> findNotCoveredVcsRoots(@NotNull SBuildType buildType, @NotNull Collection<String> existingPublishersRootIds) {
     final Set<String> coveredRootIds = new HashSet<>();
-    for (CommitStatusPublisher existingPublisher : existingPublishers) {
-      final String vcsRootId = existingPublisher.getVcsRootId();
+    for (String vcsRootId : existingPublishersRootIds) {
       if (vcsRootId == null) {
         return Collections.emptySet();
       }
@@ -170,6 +279,20 @@ public class PublisherManager {
                     .collect(Collectors.toSet());
   }
 
+  @NotNull
+  private static String getSupplementaryPublishersFingerprint(@NotNull SBuildType buildType, @NotNull Collection<String> coveredRootIds) {
+    final StringBuilder fingerprint = new StringBuilder();
+    for (SVcsRoot vcsRoot : buildType.getVcsRoots()) {
+      fingerprint.append(vcsRoot.getId()).append(':').append(vcsRoot.getExternalId()).append(':').append(vcsRoot.getProperties().hashCode()).append(';');
+    }
+    fingerprint.append('|');
+    coveredRootIds.stream()
+                  .map(String::valueOf)
+                  .sorted()
+                  .forEach(rootId -> fingerprint.append(rootId).append(';'));
+    return fingerprint.toString();
+  }
+
   private static boolean containsAlias(@NotNull Set<String> rootIds, @NotNull SVcsRoot vcsRoot) {
     if (vcsRoot instanceof SVcsRootEx) {
       return rootIds.stream().anyMatch(((SVcsRootEx)vcsRoot)::isAliasExternalId);
@@ -177,4 +300,14 @@ public class PublisherManager {
 
     return false;
   }
+
+  private static class SupplementaryResolution {
+    private final String myFingerprint;
+    private final Map<Long, String> mySettingsIdByRootId;
+
+    private SupplementaryResolution(@NotNull String fingerprint, @NotNull Map<Long, String> settingsIdByRootId) {
+      myFingerprint = fingerprint;
+      mySettingsIdByRootId = settingsIdByRootId;
+    }
+  }
 }
\ No newline at end of file
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Bounded store of the statuses which have not been published and will not be retried anymore.
+ * The oldest entries are evicted first when the store is full.
+ */
+class PublishingDeadLetters {
+  static final String MAX_SIZE_PROPERTY = "teamcity.commitStatusPublisher.deadLetters.maxSize";
+  private static final int DEFAULT_MAX_SIZE = 1000;
+
+  private final LinkedHashMap<String, Entry> myEntries = new LinkedHashMap<>();
+
+  /**
+   * Records the entry, the entry of an earlier failure of the same status is replaced,
+   * as the attempts are already counted by the retries of the status
+   */
+  synchronized void record(@NotNull Entry entry) {
+    myEntries.remove(entry.getKey());
+    myEntries.put(entry.getKey(), entry);
+    int maxSize = Math.max(0, TeamCityProperties.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+    Iterator<Entry> it = myEntries.values().iterator();
+    while (myEntries.size() > maxSize && it.hasNext()) {
+      it.next();
+      it.remove();
+    }
+  }
+
+  /**
+   * Removes the entry after the status has been successfully published
+   */
+  synchronized void published(long promotionId, @NotNull String publisherId, @NotNull String vcsRootId, @NotNull String revision) {
+    if (myEntries.isEmpty()) return;
+    myEntries.remove(Entry.key(promotionId, publisherId, vcsRootId, revision));
+  }
+
+  @NotNull
+  synchronized List<Entry> getEntries(@NotNull Predicate<Entry> filter) {
+    return myEntries.values().stream().filter(filter).collect(Collectors.toList());
+  }
+
+  /**
+   * Removes the given entries, an entry which has been replaced by a later failure of the same status is kept
+   */
+  synchronized void remove(@NotNull Collection<Entry> entries) {
+    for (Entry entry : entries) {
+      myEntries.remove(entry.getKey(), entry);
+    }
+  }
+
+  static class Entry {
+    private final long myPromotionId;
+    private final Long myBuildId;
+    private final String myBuildTypeId;
+    private final String myProjectId;
+    private final String myPublisherId;
+    private final String myPublisherName;
+    private final String myHostKey;
+    private final String myVcsRootId;
+    private final String myRevision;
+    private final Event myEvent;
+    private final String myTargetUrl;
+    private final String myPayload;
+    private final String myError;
+    private final int myAttempts;
+    private final long myFailedAt;
+
+    Entry(long promotionId,
+          @Nullable Long buildId,
+          @NotNull String buildTypeId,
+          @NotNull String projectId,
+          @NotNull String publisherId,
+          @NotNull String publisherName,
+          @NotNull String hostKey,
+          @NotNull String vcsRootId,
+          @NotNull String revision,
+          @NotNull Event event,
+          @Nullable String targetUrl,
+          @Nullable String payload,
+          @Nullable String error,
+          int attempts,
+          long failedAt) {
+      myPromotionId = promotionId;
+      myBuildId = buildId;
+      myBuildTypeId = buildTypeId;
+      myProjectId = projectId;
+      myPublisherId = publisherId;
+      myPublisherName = publisherName;
+      myHostKey = hostKey;
+      myVcsRootId = vcsRootId;
+      myRevision = revision;
+      myEvent = event;
+      myTargetUrl = targetUrl;
+      myPayload = payload;
+      myError = error;
+      myAttempts = attempts;
+      myFailedAt = failedAt;
+    }
+
+    @NotNull
+    static String key(long promotionId, @NotNull String publisherId, @NotNull String vcsRootId, @NotNull String revision) {
+      return promotionId + ":" + publisherId + ":" + vcsRootId + ":" + revision;
+    }
+
+    @NotNull
+    String getKey() {
+      return key(myPromotionId, myPublisherId, myVcsRootId, myRevision);
+    }
+
+    long getPromotionId() {
+      return myPromotionId;
+    }
+
+    /**
+     * @return id of the build associated with the promotion, null if the promotion has not been started
+     */
+    @Nullable
+    Long getBuildId() {
+      return myBuildId;
+    }
+
+    @NotNull
+    String getBuildTypeId() {
+      return myBuildTypeId;
+    }
+
+    @NotNull
+    String getProjectId() {
+      return myProjectId;
+    }
+
+    @NotNull
+    String getPublisherId() {
+      return myPublisherId;
+    }
+
+    @NotNull
+    String getPublisherName() {
+      return myPublisherName;
+    }
+
+    @NotNull
+    String getHostKey() {
+      return myHostKey;
+    }
+
+    @NotNull
+    String getVcsRootId() {
+      return myVcsRootId;
+    }
+
+    @NotNull
+    String getRevision() {
+      return myRevision;
+    }
+
+    @NotNull
+    Event getEvent() {
+      return myEvent;
+    }
+
+    /**
+     * @return url of the failed request, null if the publishing has failed before the request
+     */
+    @Nullable
+    String getTargetUrl() {
+      return myTargetUrl;
+    }
+
+    @Nullable
+    String getPayload() {
+      return myPayload;
+    }
+
+    @Nullable
+    String getError() {
+      return myError;
+    }
+
+    int getAttempts() {
+      return myAttempts;
+    }
+
+    long getFailedAt() {
+      return myFailedAt;
+    }
+  }
+}
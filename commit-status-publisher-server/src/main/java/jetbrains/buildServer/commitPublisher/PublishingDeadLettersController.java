@@ -0,0 +1,134 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jetbrains.buildServer.controllers.BaseController;
+import jetbrains.buildServer.serverSide.ProjectManager;
+import jetbrains.buildServer.serverSide.SProject;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import jetbrains.buildServer.users.SUser;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import jetbrains.buildServer.web.openapi.WebControllerManager;
+import jetbrains.buildServer.web.util.SessionUser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.web.servlet.ModelAndView;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Lists statuses which could not be published as JSON on GET and re-drives them on POST.
+ * Entries can be filtered by the host of the VCS root (the "host" parameter) and by the project
+ * including its subprojects (the "projectId" parameter with the external id of the project).
+ */
+public class PublishingDeadLettersController extends BaseController {
+  private final CommitStatusPublisherListener myListener;
+  private final ProjectManager myProjectManager;
+  private final Gson myGson = new Gson();
+
+  public PublishingDeadLettersController(@NotNull WebControllerManager controllerManager,
+                                         @NotNull PluginDescriptor descriptor,
+                                         @NotNull CommitStatusPublisherListener listener,
+                                         @NotNull ProjectManager projectManager) {
+    myListener = listener;
+    myProjectManager = projectManager;
+    controllerManager.registerController(descriptor.getPluginResourcesPath("deadLetters.html"), this);
+  }
+
+  @Nullable
+  @Override
+  protected ModelAndView doHandle(@NotNull HttpServletRequest request, @NotNull HttpServletResponse response) throws Exception {
+    SUser user = SessionUser.getUser(request);
+    if (user == null) {
+      response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+      return null;
+    }
+
+    final boolean redrive = isPost(request);
+    final Permission permission = redrive ? Permission.EDIT_PROJECT : Permission.VIEW_PROJECT;
+    Predicate<PublishingDeadLetters.Entry> filter = entry -> user.isPermissionGrantedForProject(entry.getProjectId(), permission);
+
+    String host = request.getParameter("host");
+    if (host != null && !host.isEmpty()) {
+      String normalizedHost = GitRepositoryParser.extractHost(host);
+      filter = filter.and(entry -> entry.getHostKey().endsWith(":" + normalizedHost));
+    }
+
+    String projectExternalId = request.getParameter("projectId");
+    if (projectExternalId != null && !projectExternalId.isEmpty()) {
+      SProject project = myProjectManager.findProjectByExternalId(projectExternalId);
+      if (project == null || !user.isPermissionGrantedForProject(project.getProjectId(), Permission.VIEW_PROJECT)) {
+        response.sendError(HttpServletResponse.SC_NOT_FOUND, "Project not found: " + projectExternalId);
+        return null;
+      }
+      Set<String> projectIds = new HashSet<>();
+      projectIds.add(project.getProjectId());
+      project.getProjects().forEach(p -> projectIds.add(p.getProjectId()));
+      filter = filter.and(entry -> projectIds.contains(entry.getProjectId()));
+    }
+
+    List<PublishingDeadLetters.Entry> entries = myListener.getDeadLetters().getEntries(filter);
+    if (!redrive) {
+      writeJson(response, entries.stream().map(PublishingDeadLettersController::toJson).collect(Collectors.toList()));
+      return null;
+    }
+
+    LOG.info(String.format("User %s re-drives %d failed commit status(es)", user.describe(false), entries.size()));
+    List<PublishingDeadLetters.Entry> skipped = myListener.redrive(entries);
+    if (!skipped.isEmpty()) {
+      LOG.info(String.format("%d failed commit status(es) have not been re-driven as their builds are not found", skipped.size()));
+    }
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("redriven", entries.size() - skipped.size());
+    result.put("skipped", skipped.stream().map(PublishingDeadLettersController::toJson).collect(Collectors.toList()));
+    writeJson(response, result);
+    return null;
+  }
+
+  private void writeJson(@NotNull HttpServletResponse response, @NotNull Object result) throws IOException {
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    response.getWriter().write(myGson.toJson(result));
+  }
+
+  @NotNull
+  private static Map<String, Object> toJson(@NotNull PublishingDeadLetters.Entry entry) {
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("promotionId", entry.getPromotionId());
+    result.put("buildId", entry.getBuildId());
+    result.put("buildTypeId", entry.getBuildTypeId());
+    result.put("projectId", entry.getProjectId());
+    result.put("publisher", entry.getPublisherName());
+    result.put("host", entry.getHostKey().substring(entry.getHostKey().indexOf(':') + 1));
+    result.put("vcsRootId", entry.getVcsRootId());
+    result.put("revision", entry.getRevision());
+    result.put("event", entry.getEvent().getName());
+    result.put("targetUrl", entry.getTargetUrl());
+    result.put("payload", entry.getPayload());
+    result.put("error", entry.getError());
+    result.put("attempts", entry.getAttempts());
+    result.put("failedAt", new Date(entry.getFailedAt()).toString());
+    return result;
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Registry of the counters and gauges describing publishing, exposed by {@link PublishingMetricsController}
+ */
+public class PublishingMetrics {
+  private final ConcurrentMap<String, AtomicLong> myCounters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Supplier<Map<String, ? extends Number>>> myGauges = new ConcurrentHashMap<>();
+
+  public void increment(@NotNull String counter) {
+    myCounters.computeIfAbsent(counter, c -> new AtomicLong()).incrementAndGet();
+  }
+
+  /**
+   * Registers a group of gauges, e.g. a value per host
+   * @param name name of the group
+   * @param values supplier of the current values by their keys
+   */
+  public void registerGauges(@NotNull String name, @NotNull Supplier<Map<String, ? extends Number>> values) {
+    myGauges.put(name, values);
+  }
+
+  @NotNull
+  Map<String, Object> snapshot() {
+    Map<String, Object> result = new TreeMap<>();
+    myCounters.forEach((name, value) -> result.put(name, value.get()));
+    myGauges.forEach((name, values) -> result.put(name, new TreeMap<>(values.get())));
+    return result;
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.gson.Gson;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import jetbrains.buildServer.controllers.BaseController;
+import jetbrains.buildServer.serverSide.auth.Permission;
+import jetbrains.buildServer.users.SUser;
+import jetbrains.buildServer.web.openapi.PluginDescriptor;
+import jetbrains.buildServer.web.openapi.WebControllerManager;
+import jetbrains.buildServer.web.util.SessionUser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Responds with the {@link PublishingMetrics} as JSON, available to the users who can view the server settings
+ */
+public class PublishingMetricsController extends BaseController {
+  private final PublishingMetrics myMetrics;
+  private final Gson myGson = new Gson();
+
+  public PublishingMetricsController(@NotNull WebControllerManager controllerManager,
+                                     @NotNull PluginDescriptor descriptor,
+                                     @NotNull PublishingMetrics metrics) {
+    myMetrics = metrics;
+    controllerManager.registerController(descriptor.getPluginResourcesPath("publishingMetrics.html"), this);
+  }
+
+  @Nullable
+  @Override
+  protected ModelAndView doHandle(@NotNull HttpServletRequest request, @NotNull HttpServletResponse response) throws Exception {
+    SUser user = SessionUser.getUser(request);
+    if (user == null || !user.isPermissionGrantedGlobally(Permission.VIEW_SERVER_SETTINGS)) {
+      response.sendError(HttpServletResponse.SC_FORBIDDEN);
+      return null;
+    }
+    response.setContentType("application/json");
+    response.setCharacterEncoding("UTF-8");
+    response.getWriter().write(myGson.toJson(myMetrics.snapshot()));
+    return null;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import jetbrains.buildServer.serverSide.BuildRevision;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Keeps track of the hosts which are not reachable and of the build promotions whose statuses could not be published to them.
+ * While a host is unavailable, only one build promotion keeps retrying (the probe), the rest are only remembered.
+ * When the host becomes reachable again, the listener publishes the current state of every remembered promotion once,
+ * instead of replaying all the intermediate events. The same is done when the probe stops retrying, so that the remembered
+ * promotions are not left waiting for a success which may never come.
+ */
+class PublishingRecoveryTracker {
+  static final String RECOVERY_MODE_ENABLED_PROPERTY = "teamcity.commitStatusPublisher.recovery.enabled";
+  static final String RECOVERY_MAX_TRACKED_BUILDS_PROPERTY = "teamcity.commitStatusPublisher.recovery.maxTrackedBuilds";
+  static final String RECOVERY_BATCH_SIZE_PROPERTY = "teamcity.commitStatusPublisher.recovery.batchSize";
+  static final String RECOVERY_BATCH_INTERVAL_PROPERTY = "teamcity.commitStatusPublisher.recovery.batchIntervalMs";
+  private static final int DEFAULT_MAX_TRACKED_BUILDS = 10_000;
+  private static final int DEFAULT_BATCH_SIZE = 10;
+  private static final long DEFAULT_BATCH_INTERVAL_MS = 1000;
+
+  private final ConcurrentMap<String, Outage> myOutages = new ConcurrentHashMap<>();
+
+  static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(RECOVERY_MODE_ENABLED_PROPERTY);
+  }
+
+  static int getBatchSize() {
+    return Math.max(1, TeamCityProperties.getInteger(RECOVERY_BATCH_SIZE_PROPERTY, DEFAULT_BATCH_SIZE));
+  }
+
+  static long getBatchInterval() {
+    return TeamCityProperties.getLong(RECOVERY_BATCH_INTERVAL_PROPERTY, DEFAULT_BATCH_INTERVAL_MS);
+  }
+
+  /**
+   * Registers failed publishing attempt for the build promotion
+   * @param hostKey key of the host, see {@link #getHostKey(CommitStatusPublisher, BuildRevision)}
+   * @param promotionId id of the build promotion whose status has not been published
+   * @return true if publishing should be retried for the promotion, false if the promotion is remembered and will be processed on recovery
+   */
+  boolean registerFailure(@NotNull String hostKey, long promotionId) {
+    while (true) {
+      Outage outage = myOutages.computeIfAbsent(hostKey, k -> new Outage(promotionId));
+      synchronized (outage) {
+        if (outage.myRecovered) {
+          continue; // the host has just become available, the outage is registered anew
+        }
+        if (outage.myProbePromotionId == promotionId) {
+          return true;
+        }
+        if (outage.myAffectedPromotions.size() >= TeamCityProperties.getInteger(RECOVERY_MAX_TRACKED_BUILDS_PROPERTY, DEFAULT_MAX_TRACKED_BUILDS)) {
+          return true;
+        }
+        outage.myAffectedPromotions.add(promotionId);
+        return false;
+      }
+    }
+  }
+
+  /**
+   * Registers successful publishing to the host
+   * @param hostKey key of the host, see {@link #getHostKey(CommitStatusPublisher, BuildRevision)}
+   * @return ids of the build promotions whose current state should be published, empty if the host was not unavailable
+   */
+  @NotNull
+  Collection<Long> registerSuccess(@NotNull String hostKey) {
+    if (myOutages.isEmpty()) return Collections.emptyList();
+    Outage outage = myOutages.remove(hostKey);
+    if (outage == null) return Collections.emptyList();
+    synchronized (outage) {
+      outage.myRecovered = true;
+      outage.myAffectedPromotions.remove(outage.myProbePromotionId);
+      return new ArrayList<>(outage.myAffectedPromotions);
+    }
+  }
+
+  /**
+   * Registers that publishing for the build promotion will not be retried anymore
+   * @param hostKey key of the host, see {@link #getHostKey(CommitStatusPublisher, BuildRevision)}
+   * @param promotionId id of the build promotion which has failed for good
+   * @return ids of the build promotions whose current state should be published, empty if the promotion was not the probe of an outage
+   */
+  @NotNull
+  Collection<Long> registerGiveUp(@NotNull String hostKey, long promotionId) {
+    if (myOutages.isEmpty()) return Collections.emptyList();
+    Outage outage = myOutages.get(hostKey);
+    if (outage == null || outage.myProbePromotionId != promotionId || !myOutages.remove(hostKey, outage)) return Collections.emptyList();
+    synchronized (outage) {
+      outage.myRecovered = true;
+      outage.myAffectedPromotions.remove(promotionId);
+      return new ArrayList<>(outage.myAffectedPromotions);
+    }
+  }
+
+  @NotNull
+  static String getHostKey(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) {
+    return publisher.getId() + ":" + GitRepositoryParser.extractHost(revision.getRoot().getProperty(Constants.GIT_URL_PARAMETER));
+  }
+
+  private static class Outage {
+    private final long myProbePromotionId;
+    private final Set<Long> myAffectedPromotions = new LinkedHashSet<>();
+    private boolean myRecovered = false;
+
+    private Outage(long probePromotionId) {
+      myProbePromotionId = probePromotionId;
+    }
+  }
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Runs publishing tasks with bounded concurrency, taking tasks from priority lanes:
+ * final statuses (including removal from the queue) first, then failure detection, then started builds and comments, queued statuses last.
+ * Queued tasks reporting progress of a build are dropped once a task with the final status of the same build is submitted.
+ * <p>
+ * Within a lane, tasks of different projects are taken in weighted round-robin order, and the number of running tasks
+ * of a single project is limited while other projects have queued tasks, so that a project with a lot of builds can't delay
+ * statuses of other projects. A project without competitors may use all the threads.
+ */
+class PublishingTaskDispatcher {
+  static final String PRIORITY_LANES_ENABLED_PROPERTY = "teamcity.commitStatusPublisher.priorityLanes.enabled";
+  static final String MAX_CONCURRENCY_PROPERTY = "teamcity.commitStatusPublisher.priorityLanes.maxConcurrency";
+  static final String FAIR_SCHEDULING_ENABLED_PROPERTY = "teamcity.commitStatusPublisher.fairScheduling.enabled";
+  static final String FAIR_SCHEDULING_WEIGHTS_PROPERTY = "teamcity.commitStatusPublisher.fairScheduling.weights";
+  static final String MAX_CONCURRENCY_PER_PROJECT_PROPERTY = "teamcity.commitStatusPublisher.fairScheduling.maxConcurrencyPerProject";
+  private static final int DEFAULT_MAX_CONCURRENCY = 8;
+  private static final int DEFAULT_WEIGHT = 1;
+  private static final int LANES_COUNT = 4;
+
+  private final Executor myExecutor;
+  private final List<Lane> myLanes = new ArrayList<>(LANES_COUNT);
+  private final Map<Long, List<Task>> myQueuedTasks = new HashMap<>();
+  private final Map<String, Integer> myRunningTasksPerKey = new HashMap<>();
+  private int myRunningTasks = 0;
+  private volatile Weights myWeights = new Weights("");
+
+  PublishingTaskDispatcher(@NotNull Executor executor) {
+    myExecutor = executor;
+    for (int i = 0; i < LANES_COUNT; i++) {
+      myLanes.add(new Lane());
+    }
+  }
+
+  static boolean isEnabled() {
+    return isPriorityLanesEnabled() || isFairSchedulingEnabled();
+  }
+
+  static boolean isPriorityLanesEnabled() {
+    return TeamCityProperties.getBoolean(PRIORITY_LANES_ENABLED_PROPERTY);
+  }
+
+  static boolean isFairSchedulingEnabled() {
+    return TeamCityProperties.getBoolean(FAIR_SCHEDULING_ENABLED_PROPERTY);
+  }
+
+  static int getLane(@NotNull Event event) {
+    if (!isPriorityLanesEnabled()) return 0;
+    switch (event) {
+      case FINISHED:
+      case INTERRUPTED:
+      case MARKED_AS_SUCCESSFUL:
+      case REMOVED_FROM_QUEUE:
+        return 0;
+      case FAILURE_DETECTED:
+        return 1;
+      case STARTED:
+      case COMMENTED:
+        return 2;
+      default:
+        return 3;
+    }
+  }
+
+  /**
+   * @return true if the event only reports progress of a build and makes no sense once its final status is known
+   */
+  private static boolean isProgressEvent(@NotNull Event event) {
+    return event == Event.QUEUED || event == Event.STARTED || event == Event.FAILURE_DETECTED;
+  }
+
+  private static boolean isFinalEvent(@NotNull Event event) {
+    return event == Event.FINISHED || event == Event.INTERRUPTED || event == Event.REMOVED_FROM_QUEUE;
+  }
+
+  /**
+   * Submits the task
+   * @param fairnessKey key the task is scheduled fairly by (project external id), null if fair scheduling should not be applied to the task
+   * @param action publishing action
+   * @param onCompletion action to run after the publishing action is completed or after the task has been dropped
+   */
+  void submit(@NotNull Event event, long promotionId, @Nullable String fairnessKey, @NotNull Runnable action, @NotNull Runnable onCompletion) {
+    final String key = fairnessKey != null && isFairSchedulingEnabled() ? fairnessKey : "";
+    final Task task = new Task(event, promotionId, key, action, onCompletion);
+    final List<Task> dropped = new ArrayList<>();
+    synchronized (this) {
+      List<Task> queuedForPromotion = myQueuedTasks.computeIfAbsent(promotionId, id -> new ArrayList<>());
+      if (isPriorityLanesEnabled() && isProgressEvent(event) && queuedForPromotion.stream().anyMatch(queued -> isFinalEvent(queued.myEvent))) {
+        dropped.add(task);
+      } else {
+        int lane = getLane(event);
+        if (event != Event.COMMENTED) {
+          Iterator<Task> it = queuedForPromotion.iterator();
+          while (it.hasNext()) {
+            Task queued = it.next();
+            if (isProgressEvent(queued.myEvent) && getLane(queued.myEvent) > lane) {
+              queued.myDropped = true;
+              dropped.add(queued);
+              it.remove();
+            }
+          }
+        }
+        queuedForPromotion.add(task);
+        myLanes.get(lane).add(task);
+      }
+      if (queuedForPromotion.isEmpty()) {
+        myQueuedTasks.remove(promotionId);
+      }
+    }
+
+    for (Task droppedTask : dropped) {
+      LOG.debug(() -> "Event: " + droppedTask.myEvent.getName() + ", build promotion " + droppedTask.myPromotionId + ": task is dropped as it is superseded by event " + event.getName());
+      droppedTask.myOnCompletion.run();
+    }
+    runNextTasks();
+  }
+
+  private void runNextTasks() {
+    while (true) {
+      final Task task;
+      synchronized (this) {
+        if (myRunningTasks >= getMaxConcurrency()) return;
+        task = pollNextTask();
+        if (task == null) return;
+        myRunningTasks++;
+        myRunningTasksPerKey.merge(task.myKey, 1, Integer::sum);
+      }
+      try {
+        myExecutor.execute(() -> run(task));
+      } catch (RejectedExecutionException ex) {
+        LOG.warnAndDebugDetails("Publishing task dispatcher has failed to run a task asynchronously. Executing in the same thread instead", ex);
+        run(task);
+      }
+    }
+  }
+
+  private void run(@NotNull Task task) {
+    try {
+      task.myAction.run();
+    } catch (Throwable t) {
+      LOG.warnAndDebugDetails("Failed to process event " + task.myEvent.getName() + " for build promotion " + task.myPromotionId, t);
+    } finally {
+      synchronized (this) {
+        myRunningTasks--;
+        myRunningTasksPerKey.computeIfPresent(task.myKey, (k, running) -> running > 1 ? running - 1 : null);
+      }
+      try {
+        task.myOnCompletion.run();
+      } finally {
+        runNextTasks();
+      }
+    }
+  }
+
+  @Nullable
+  private Task pollNextTask() {
+    final int maxPerKey = getMaxConcurrencyPerKey();
+    final Weights weights = getWeights();
+    for (Lane lane : myLanes) {
+      Task task = lane.poll(key -> key.isEmpty() || myRunningTasksPerKey.getOrDefault(key, 0) < maxPerKey || !hasQueuedTasksOfOtherKeys(key), weights);
+      if (task == null) continue;
+      List<Task> queuedForPromotion = myQueuedTasks.get(task.myPromotionId);
+      if (queuedForPromotion != null) {
+        queuedForPromotion.remove(task);
+        if (queuedForPromotion.isEmpty()) {
+          myQueuedTasks.remove(task.myPromotionId);
+        }
+      }
+      return task;
+    }
+    return null;
+  }
+
+  private boolean hasQueuedTasksOfOtherKeys(@NotNull String key) {
+    for (Lane lane : myLanes) {
+      if (lane.hasQueuedTasksOfOtherKeys(key)) return true;
+    }
+    return false;
+  }
+
+  synchronized int getQueuedTasksCount() {
+    return myQueuedTasks.values().stream().mapToInt(List::size).sum();
+  }
+
+  private static int getMaxConcurrency() {
+    return Math.max(1, TeamCityProperties.getInteger(MAX_CONCURRENCY_PROPERTY, DEFAULT_MAX_CONCURRENCY));
+  }
+
+  private static int getMaxConcurrencyPerKey() {
+    int maxConcurrency = getMaxConcurrency();
+    return Math.max(1, TeamCityProperties.getInteger(MAX_CONCURRENCY_PER_PROJECT_PROPERTY, Math.max(1, maxConcurrency / 2)));
+  }
+
+  @NotNull
+  private Weights getWeights() {
+    String property = TeamCityProperties.getProperty(FAIR_SCHEDULING_WEIGHTS_PROPERTY);
+    Weights weights = myWeights;
+    if (!weights.mySource.equals(property)) {
+      weights = new Weights(property);
+      myWeights = weights;
+    }
+    return weights;
+  }
+
+  /**
+   * Tasks of one priority, queued per fairness key. Keys are served in round-robin order,
+   * a key can give up to its weight tasks in a row before the next key is served.
+   */
+  private static class Lane {
+    private final Map<String, Deque<Task>> myQueues = new HashMap<>();
+    private final Deque<String> myKeysOrder = new ArrayDeque<>();
+    private final Map<String, Integer> myCredits = new HashMap<>();
+
+    void add(@NotNull Task task) {
+      myQueues.computeIfAbsent(task.myKey, k -> {
+        myKeysOrder.addLast(k);
+        return new ArrayDeque<>();
+      }).addLast(task);
+    }
+
+    @Nullable
+    Task poll(@NotNull Predicate<String> canRun, @NotNull Weights weights) {
+      int keysToCheck = myKeysOrder.size();
+      while (keysToCheck-- > 0) {
+        String key = myKeysOrder.peekFirst();
+        Deque<Task> queue = myQueues.get(key);
+        while (!queue.isEmpty() && queue.peekFirst().myDropped) {
+          queue.pollFirst();
+        }
+        if (queue.isEmpty()) {
+          removeKey(key);
+          continue;
+        }
+        if (!canRun.test(key)) {
+          rotate(key);
+          continue;
+        }
+        Task task = queue.pollFirst();
+        int credits = myCredits.getOrDefault(key, weights.get(key)) - 1;
+        if (queue.isEmpty()) {
+          removeKey(key);
+        } else if (credits <= 0) {
+          rotate(key);
+        } else {
+          myCredits.put(key, credits);
+        }
+        return task;
+      }
+      return null;
+    }
+
+    boolean hasQueuedTasksOfOtherKeys(@NotNull String key) {
+      for (Map.Entry<String, Deque<Task>> entry : myQueues.entrySet()) {
+        if (!entry.getKey().equals(key) && entry.getValue().stream().anyMatch(task -> !task.myDropped)) return true;
+      }
+      return false;
+    }
+
+    private void rotate(@NotNull String key) {
+      myKeysOrder.addLast(myKeysOrder.pollFirst());
+      myCredits.remove(key);
+    }
+
+    private void removeKey(@NotNull String key) {
+      myKeysOrder.pollFirst();
+      myQueues.remove(key);
+      myCredits.remove(key);
+    }
+  }
+
+  /**
+   * Weights of the fairness keys, parsed from the property value in format {@code projectExtId1:weight1,projectExtId2:weight2}
+   */
+  private static class Weights {
+    private final String mySource;
+    private final Map<String, Integer> myWeights = new HashMap<>();
+
+    private Weights(@Nullable String source) {
+      mySource = source == null ? "" : source;
+      for (String item : mySource.split(",")) {
+        int idx = item.lastIndexOf(':');
+        if (idx <= 0) continue;
+        try {
+          myWeights.put(item.substring(0, idx).trim(), Math.max(1, Integer.parseInt(item.substring(idx + 1).trim())));
+        } catch (NumberFormatException e) {
+          LOG.warn("Invalid publishing weight \"" + item + "\" in property " + FAIR_SCHEDULING_WEIGHTS_PROPERTY);
+        }
+      }
+    }
+
+    int get(@NotNull String key) {
+      return myWeights.getOrDefault(key, DEFAULT_WEIGHT);
+    }
+  }
+
+  private static class Task {
+    private final Event myEvent;
+    private final long myPromotionId;
+    private final String myKey;
+    private final Runnable myAction;
+    private final Runnable myOnCompletion;
+    private boolean myDropped = false;
+
+    private Task(@NotNull Event event, long promotionId, @NotNull String key, @NotNull Runnable action, @NotNull Runnable onCompletion) {
+      myEvent = event;
+      myPromotionId = promotionId;
+      myKey = key;
+      myAction = action;
+      myOnCompletion = onCompletion;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Indicates that a request has not been made because a limit kept on the server side has been reached,
+ * e.g. there are too many concurrent requests to the host. Nothing has failed: {@link CommitStatusPublisherListener}
+ * publishes the status again later without reporting a problem.
+ */
+public class PublishingThrottledException extends PublisherException {
+
+  public PublishingThrottledException(@NotNull String message) {
+    super(message);
+    setShouldRetry();
+  }
+
+  /**
+   * @return true if the publishing has failed only because it has been throttled
+   */
+  public static boolean isThrottled(@Nullable Throwable t) {
+    for (; t != null; t = t.getCause()) {
+      if (t instanceof PublishingThrottledException) return true;
+    }
+    return false;
+  }
+}
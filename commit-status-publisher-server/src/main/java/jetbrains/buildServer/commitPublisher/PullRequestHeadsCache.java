@@ -0,0 +1,111 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.Striped;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Caches information about pull (merge) requests, like their head commits, per repository and pull request for a short time,
+ * so that builds of a pull request publishing statuses for several events do not request the same pull request over and over.
+ * <p>
+ * An entry is valid only for the revision of the pull request branch it was loaded for:
+ * a new revision of the branch means that the pull request has been updated.
+ * </p>
+ */
+public class PullRequestHeadsCache<T> {
+  static final String TTL_PROPERTY = "teamcity.commitStatusPublisher.pullRequestHeadsCache.ttlMs";
+  static final long DEFAULT_TTL_MS = 30_000L;
+  private static final int MAX_SIZE = 1000;
+
+  private final Cache<String, Entry<T>> myEntries = CacheBuilder.newBuilder()
+                                                                .maximumSize(MAX_SIZE)
+                                                                .expireAfterWrite(1, TimeUnit.HOURS)
+                                                                .build();
+  private final Striped<Lock> myLocks = Striped.lazyWeakLock(64);
+
+  public interface Loader<T, E extends Exception> {
+    @Nullable
+    T load() throws E;
+  }
+
+  /**
+   * @param repositoryUrl url of the repository
+   * @param pullRequest pull request number or branch
+   * @param revision revision of the pull request branch the information is requested for
+   * @param loader loads the information if there is no valid cached one, concurrent loads of the same pull request are not performed
+   * @return information about the pull request or null if it could not be loaded
+   */
+  @Nullable
+  public <E extends Exception> T get(@NotNull String repositoryUrl,
+                                     @NotNull String pullRequest,
+                                     @NotNull String revision,
+                                     @NotNull Loader<T, E> loader) throws E {
+    final long ttl = TeamCityProperties.getLong(TTL_PROPERTY, DEFAULT_TTL_MS);
+    if (ttl <= 0) return loader.load();
+
+    final String key = repositoryUrl + "#" + pullRequest;
+    T value = getValid(key, revision);
+    if (value != null) return value;
+
+    final Lock lock = myLocks.get(key);
+    lock.lock();
+    try {
+      value = getValid(key, revision);
+      if (value != null) return value;
+
+      value = loader.load();
+      if (value != null) {
+        myEntries.put(key, new Entry<>(revision, value, System.currentTimeMillis() + ttl));
+      } else {
+        myEntries.invalidate(key);
+      }
+      return value;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void invalidate(@NotNull String repositoryUrl, @NotNull String pullRequest) {
+    myEntries.invalidate(repositoryUrl + "#" + pullRequest);
+  }
+
+  @Nullable
+  private T getValid(@NotNull String key, @NotNull String revision) {
+    final Entry<T> entry = myEntries.getIfPresent(key);
+    if (entry == null || !entry.myRevision.equals(revision) || System.currentTimeMillis() > entry.myExpirationTime) return null;
+    return entry.myValue;
+  }
+
+  private static class Entry<T> {
+    private final String myRevision;
+    private final T myValue;
+    private final long myExpirationTime;
+
+    private Entry(@NotNull String revision, @NotNull T value, long expirationTime) {
+      myRevision = revision;
+      myValue = value;
+      myExpirationTime = expirationTime;
+    }
+  }
+}
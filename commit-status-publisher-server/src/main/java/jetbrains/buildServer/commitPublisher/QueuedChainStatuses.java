@@ -0,0 +1,65 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.BuildRevision;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers which build of a build chain has published the queued status per publisher type, VCS root, revision and status context.
+ * Builds of a chain share the revision, so when several of them report to the same status context
+ * only the first one needs to publish the queued status, the others would just overwrite it.
+ * Builds reporting to their own contexts are never deduplicated.
+ */
+class QueuedChainStatuses {
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, Long> myPublishers = CacheBuilder.newBuilder()
+                                                               .maximumSize(MAX_SIZE)
+                                                               .expireAfterWrite(1, TimeUnit.HOURS)
+                                                               .build();
+
+  void published(@NotNull BuildPromotion promotion, @NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) {
+    String key = getKey(publisher, revision, promotion);
+    if (key != null) {
+      myPublishers.put(key, promotion.getId());
+    }
+  }
+
+  /**
+   * @return id of another build promotion which has already published the queued status to the same status context, or null
+   */
+  @Nullable
+  Long getPublishedBy(@NotNull BuildPromotion promotion, @NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision) {
+    String key = getKey(publisher, revision, promotion);
+    if (key == null) return null;
+    Long promotionId = myPublishers.getIfPresent(key);
+    return promotionId == null || promotionId == promotion.getId() ? null : promotionId;
+  }
+
+  @Nullable
+  private static String getKey(@NotNull CommitStatusPublisher publisher, @NotNull BuildRevision revision, @NotNull BuildPromotion promotion) {
+    String context = publisher.getStatusContext(promotion);
+    if (context == null) return null;
+    return publisher.getId() + ":" + revision.getRoot().getId() + ":" + revision.getRevision() + ":" + context;
+  }
+}
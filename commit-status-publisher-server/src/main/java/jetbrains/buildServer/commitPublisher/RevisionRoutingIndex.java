@@ -0,0 +1,130 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.BuildRevision;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.vcs.SVcsRootEx;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Remembers which revisions of a build each publisher of the build configuration publishes to,
+ * so that VCS roots (including their aliases) are matched with the publishers once per build configuration.
+ * <p>
+ * Routes are kept as positions in the list of build revisions and are valid as long as the build has revisions from the same
+ * VCS root instances: a change of a VCS root produces another instance. Publishers are identified by their type, build feature and VCS root,
+ * routes of a build configuration are invalidated when its settings are changed.
+ * </p>
+ */
+class RevisionRoutingIndex {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.revisionRoutingIndex.enabled";
+  private static final int MAX_BUILD_TYPES = 1000;
+
+  private final Cache<String, Routes> myRoutes = CacheBuilder.newBuilder()
+                                                             .maximumSize(MAX_BUILD_TYPES)
+                                                             .expireAfterAccess(1, TimeUnit.HOURS)
+                                                             .build();
+
+  @NotNull
+  List<BuildRevision> getRevisions(@NotNull CommitStatusPublisher publisher, @NotNull Collection<BuildRevision> revisionsToCheck) {
+    if (revisionsToCheck.isEmpty()) return Collections.emptyList();
+    final List<BuildRevision> revisions = revisionsToCheck instanceof List ? (List<BuildRevision>)revisionsToCheck : new ArrayList<>(revisionsToCheck);
+    if (!TeamCityProperties.getBooleanOrTrue(ENABLED_PROPERTY)) {
+      return match(publisher, revisions);
+    }
+
+    final long[] rootInstanceIds = new long[revisions.size()];
+    for (int i = 0; i < rootInstanceIds.length; i++) {
+      rootInstanceIds[i] = revisions.get(i).getRoot().getId();
+    }
+    final String buildTypeId = publisher.getBuildType().getInternalId();
+    Routes routes;
+    try {
+      routes = myRoutes.get(buildTypeId, () -> new Routes(rootInstanceIds));
+    } catch (ExecutionException e) {
+      return match(publisher, revisions);
+    }
+    if (!Arrays.equals(routes.myRootInstanceIds, rootInstanceIds)) {
+      // a build with other VCS roots than the ones the routes were built for: the latest build wins
+      routes = new Routes(rootInstanceIds);
+      myRoutes.put(buildTypeId, routes);
+    }
+
+    final int[] positions = routes.myPositions.computeIfAbsent(getPublisherKey(publisher), k -> getPositions(revisions, match(publisher, revisions)));
+    final List<BuildRevision> result = new ArrayList<>(positions.length);
+    for (int position : positions) {
+      result.add(revisions.get(position));
+    }
+    return result;
+  }
+
+  void invalidate(@NotNull String buildTypeId) {
+    myRoutes.invalidate(buildTypeId);
+  }
+
+  @NotNull
+  static List<BuildRevision> match(@NotNull CommitStatusPublisher publisher, @NotNull Collection<BuildRevision> revisionsToCheck) {
+    String vcsRootId = publisher.getVcsRootId();
+    if (vcsRootId == null) {
+      List<BuildRevision> revisions = new ArrayList<BuildRevision>();
+      for (BuildRevision revision : revisionsToCheck) {
+        if (publisher.isPublishingForRevision(revision)) {
+          revisions.add(revision);
+        }
+      }
+      return revisions;
+    }
+
+    for (BuildRevision revision : revisionsToCheck) {
+      SVcsRootEx root = (SVcsRootEx)revision.getRoot().getParent();
+      if (vcsRootId.equals(root.getExternalId()) || root.isAliasExternalId(vcsRootId) || vcsRootId.equals(String.valueOf(root.getId())))
+        return Arrays.asList(revision);
+    }
+
+    return Collections.emptyList();
+  }
+
+  @NotNull
+  private static int[] getPositions(@NotNull List<BuildRevision> revisions, @NotNull List<BuildRevision> matched) {
+    final int[] positions = new int[matched.size()];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = revisions.indexOf(matched.get(i));
+    }
+    return positions;
+  }
+
+  @NotNull
+  private static String getPublisherKey(@NotNull CommitStatusPublisher publisher) {
+    return publisher.getId() + ":" + publisher.getBuildFeatureId() + ":" + publisher.getVcsRootId();
+  }
+
+  private static class Routes {
+    private final long[] myRootInstanceIds;
+    private final ConcurrentMap<String, int[]> myPositions = new ConcurrentHashMap<>();
+
+    private Routes(@NotNull long[] rootInstanceIds) {
+      myRootInstanceIds = rootInstanceIds;
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.vcs.SVcsModification;
+import jetbrains.buildServer.vcs.VcsModificationHistory;
+import jetbrains.buildServer.vcs.VcsModificationOrder;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers answers of the VCS modification history about commits, which never change as commits are immutable:
+ * the ancestry of two commits and the parents of a commit. Publishers ask the same questions for every event of a build,
+ * while every answer of the history costs a database query.
+ * <p>
+ * Only answers which cannot change when more modifications are collected are remembered.
+ * </p>
+ */
+public class VcsModificationsMemo {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.vcsModificationsMemo.enabled";
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, VcsModificationOrder> myOrders = CacheBuilder.newBuilder()
+                                                                           .maximumSize(MAX_SIZE)
+                                                                           .expireAfterAccess(1, TimeUnit.HOURS)
+                                                                           .build();
+  private final Cache<String, Collection<String>> myParents = CacheBuilder.newBuilder()
+                                                                          .maximumSize(MAX_SIZE)
+                                                                          .expireAfterAccess(1, TimeUnit.HOURS)
+                                                                          .build();
+
+  /**
+   * @see VcsModificationHistory#getModificationsOrder
+   */
+  @NotNull
+  public VcsModificationOrder getModificationsOrder(@NotNull VcsModificationHistory history,
+                                                    @NotNull VcsRootInstance root,
+                                                    @NotNull String revision,
+                                                    @NotNull String otherRevision) {
+    if (!isEnabled()) return history.getModificationsOrder(root, revision, otherRevision);
+
+    final String key = root.getId() + ":" + revision + ":" + otherRevision;
+    final VcsModificationOrder known = myOrders.getIfPresent(key);
+    if (known != null) return known;
+
+    final VcsModificationOrder order = history.getModificationsOrder(root, revision, otherRevision);
+    // the commits may be not collected yet, the other answers may change then
+    if (order == VcsModificationOrder.BEFORE) {
+      myOrders.put(key, order);
+    }
+    return order;
+  }
+
+  /**
+   * @return parent revisions of the revision or null if the modification is not found in the history
+   */
+  @Nullable
+  public Collection<String> getParentRevisions(@NotNull VcsModificationHistory history,
+                                               @NotNull VcsRootInstance root,
+                                               @NotNull String revision) {
+    final String key = root.getId() + ":" + revision;
+    if (isEnabled()) {
+      final Collection<String> known = myParents.getIfPresent(key);
+      if (known != null) return known;
+    }
+
+    final SVcsModification modification = history.findModificationByVersion(root, revision);
+    if (modification == null) return null;
+    final Collection<String> parents = ImmutableList.copyOf(modification.getParentRevisions());
+    if (isEnabled()) {
+      myParents.put(key, parents);
+    }
+    return parents;
+  }
+
+  private static boolean isEnabled() {
+    return TeamCityProperties.getBooleanOrTrue(ENABLED_PROPERTY);
+  }
+}
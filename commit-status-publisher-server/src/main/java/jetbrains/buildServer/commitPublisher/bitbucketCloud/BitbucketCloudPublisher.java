@@ -50,7 +50,7 @@ class BitbucketCloudPublisher extends HttpBasedCommitStatusPublisher<BitbucketCl
 
   private static final ResponseEntityProcessor<BitbucketCloudBuildStatuses> statusesProcessor = new BitbucketCloudResponseEntityProcessor<>(BitbucketCloudBuildStatuses.class);
 
-  BitbucketCloudPublisher(@NotNull CommitStatusPublisherSettings settings,
+  BitbucketCloudPublisher(@NotNull BasePublisherSettings settings,
                           @NotNull SBuildType buildType, @NotNull String buildFeatureId,
                           @NotNull WebLinks links,
                           @NotNull Map<String, String> params,
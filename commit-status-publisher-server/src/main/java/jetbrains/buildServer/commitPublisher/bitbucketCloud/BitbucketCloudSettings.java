@@ -83,6 +83,9 @@ public class BitbucketCloudSettings extends AuthTypeAwareSettings implements Com
                                 @NotNull WebLinks links,
                                 @NotNull CommitStatusPublisherProblems problems,
                                 @NotNull SSLTrustStoreProvider trustStoreProvider,
+                                @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                                @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                                @NotNull PublishedPayloads publishedPayloads,
                                 @NotNull OAuthConnectionsManager oAuthConnectionsManager,
                                 @NotNull OAuthTokensStorage oAuthTokensStorage,
                                 @NotNull UserModel userModel,
@@ -90,7 +93,7 @@ public class BitbucketCloudSettings extends AuthTypeAwareSettings implements Com
                                 @NotNull ProjectManager projectManager,
                                 @NotNull BitbucketCloudBuildNameProvider buildNameProvider
   ) {
-    super(descriptor, links, problems, trustStoreProvider, oAuthTokensStorage, userModel, oAuthConnectionsManager, securityContext);
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads, oAuthTokensStorage, userModel, oAuthConnectionsManager, securityContext);
     myStatusesCache = new CommitStatusesCache<>();
     myProjectManager = projectManager;
     myBuildNameProvider = buildNameProvider;
@@ -57,8 +57,11 @@ public class GerritSettings extends BasePublisherSettings implements CommitStatu
                         @NotNull GerritClient gerritClient,
                         @NotNull WebLinks links,
                         @NotNull CommitStatusPublisherProblems problems,
-                        @NotNull SSLTrustStoreProvider trustStoreProvider) {
-    super(descriptor, links, problems, trustStoreProvider);
+                        @NotNull SSLTrustStoreProvider trustStoreProvider,
+                        @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                        @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                        @NotNull PublishedPayloads publishedPayloads) {
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads);
     myExtensionHolder = extensionHolder;
     myGerritClient = gerritClient;
   }
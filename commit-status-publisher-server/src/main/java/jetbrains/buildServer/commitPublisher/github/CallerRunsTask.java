@@ -0,0 +1,95 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github;
+
+import java.io.IOException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Work run either by an executor or by the thread awaiting its result, whichever comes first,
+ * so awaiting never waits for the executor queue. Failures of the work are rethrown by {@link #await()} as they are.
+ */
+final class CallerRunsTask<T> {
+  private final String myAction;
+  private final Work<T> myWork;
+  private final AtomicBoolean myStarted = new AtomicBoolean();
+  private final CompletableFuture<T> myResult = new CompletableFuture<>();
+
+  interface Work<T> {
+    T run() throws IOException, PublisherException;
+  }
+
+  /**
+   * @param action description of the work for the error messages, e.g. "publishing to GitHub"
+   */
+  CallerRunsTask(@NotNull String action, @NotNull Work<T> work) {
+    myAction = action;
+    myWork = work;
+  }
+
+  /**
+   * Offers the work to the executor, it is run on await if the executor rejects it
+   */
+  @NotNull
+  CallerRunsTask<T> submitTo(@NotNull Executor executor) {
+    try {
+      executor.execute(this::runIfNotStarted);
+    } catch (RejectedExecutionException e) {
+      // the work is run on await
+    }
+    return this;
+  }
+
+  private void runIfNotStarted() {
+    if (!myStarted.compareAndSet(false, true)) return;
+    try {
+      myResult.complete(myWork.run());
+    } catch (Throwable e) {
+      myResult.completeExceptionally(e);
+    }
+  }
+
+  /**
+   * Waits for the result of the work, runs it in the current thread if it has not been started yet
+   */
+  T await() throws IOException, PublisherException {
+    runIfNotStarted();
+    try {
+      return myResult.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PublisherException("Interrupted while " + myAction, e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException)cause;
+      if (cause instanceof PublisherException) throw (PublisherException)cause;
+      if (cause instanceof RuntimeException) throw (RuntimeException)cause;
+      throw new PublisherException("Failed while " + myAction, cause);
+    }
+  }
+
+  /**
+   * The result of the work is not needed
+   */
+  void cancel() {
+    myStarted.set(true);
+    myResult.cancel(false);
+  }
+}
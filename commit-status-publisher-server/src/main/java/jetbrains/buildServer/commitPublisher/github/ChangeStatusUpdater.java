@@ -18,19 +18,27 @@
 
 package jetbrains.buildServer.commitPublisher.github;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApiAuthenticationType;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApiFactory;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubChangeState;
-import jetbrains.buildServer.commitPublisher.github.api.impl.data.CombinedCommitStatus;
+import jetbrains.buildServer.commitPublisher.github.api.GitHubStatusesBatchReader;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CheckRun;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
 import jetbrains.buildServer.commitPublisher.github.ui.UpdateChangesConstants;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
 import jetbrains.buildServer.util.StringUtil;
 import jetbrains.buildServer.vcs.VcsModificationHistory;
@@ -49,21 +57,58 @@ import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
 public class ChangeStatusUpdater {
   private static final UpdateChangesConstants C = new UpdateChangesConstants();
   private static final GitRepositoryParser VCS_URL_PARSER = new GitRepositoryParser();
+  static final String API_POOL_PROPERTY = "teamcity.commitStatusPublisher.github.apiPool.enabled";
+  private static final int API_POOL_MAX_SIZE = 1000;
 
   private final VcsModificationHistory myModificationHistory;
+  private final VcsModificationsMemo myModificationsMemo;
 
   @NotNull
   private final GitHubApiFactory myFactory;
 
+  private final GitHubStatusesBatchReader myStatusesBatchReader;
+  private final PullRequestHeadsCache<String> myPullRequestHeads = new PullRequestHeadsCache<>();
+  private final GitHubCheckRuns myCheckRuns = new GitHubCheckRuns();
+  private final CombinedStatusScanner myStatusesScanner;
+  private final GitHubPipeline myPipeline;
+  // API clients by server and credentials, they keep resolved tokens, so that the token storage is not queried for every request.
+  // A client is replaced once GitHub rejects its credentials
+  private final Cache<String, GitHubApi> myApiPool = CacheBuilder.newBuilder()
+                                                                 .maximumSize(API_POOL_MAX_SIZE)
+                                                                 .expireAfterWrite(10, TimeUnit.MINUTES)
+                                                                 .build();
+
   public ChangeStatusUpdater(@NotNull final GitHubApiFactory factory,
-                             @NotNull final VcsModificationHistory vcsModificationHistory) {
+                             @NotNull final VcsModificationHistory vcsModificationHistory,
+                             @NotNull final VcsModificationsMemo modificationsMemo,
+                             @NotNull final ExecutorServices executorServices,
+                             @NotNull final PublishingMetrics metrics) {
     myFactory = factory;
     myModificationHistory = vcsModificationHistory;
+    myModificationsMemo = modificationsMemo;
+    final Executor executor = command -> executorServices.getLowPriorityExecutorService().execute(command);
+    myStatusesScanner = new CombinedStatusScanner(executor);
+    myPipeline = new GitHubPipeline(executor);
+    myStatusesBatchReader = new GitHubStatusesBatchReader(metrics);
   }
 
 
   @NotNull
   private GitHubApi getGitHubApi(@NotNull Map<String, String> params, @NotNull SProject project, @NotNull VcsRoot root) {
+    if (!TeamCityProperties.getBooleanOrTrue(API_POOL_PROPERTY)) {
+      return createGitHubApi(params, project, root);
+    }
+    final String key = getGitHubApiKey(params, project, root);
+    GitHubApi api = myApiPool.getIfPresent(key);
+    if (api == null || api.isAuthenticationFailed()) {
+      api = createGitHubApi(params, project, root);
+      myApiPool.put(key, api);
+    }
+    return api;
+  }
+
+  @NotNull
+  private GitHubApi createGitHubApi(@NotNull Map<String, String> params, @NotNull SProject project, @NotNull VcsRoot root) {
     final String serverUrl = params.get(C.getServerKey());
     if (serverUrl == null || StringUtil.isEmptyOrSpaces(serverUrl)) {
       throw new IllegalArgumentException("Failed to read GitHub URL from the feature settings");
@@ -93,6 +138,42 @@ public class ChangeStatusUpdater {
     }
   }
 
+  /**
+   * @return key identifying the server and the credentials the API is used with, secrets are hashed
+   */
+  @NotNull
+  private String getGitHubApiKey(@NotNull Map<String, String> params, @NotNull SProject project, @NotNull VcsRoot root) {
+    final GitHubApiAuthenticationType authenticationType = GitHubApiAuthenticationType.parse(params.get(C.getAuthenticationTypeKey()));
+    final String identity;
+    switch (authenticationType) {
+      case PASSWORD_AUTH:
+        String password = params.get(C.getPasswordKey());
+        if (password == null) {
+          password = params.get(Constants.GITHUB_PASSWORD_DEPRECATED);
+        }
+        identity = params.get(C.getUserNameKey()) + ":" + hashSecret(password);
+        break;
+      case TOKEN_AUTH:
+        identity = hashSecret(params.get(C.getAccessTokenKey()));
+        break;
+      case STORED_TOKEN:
+        identity = project.getProjectId() + ":" + params.get(C.getTokenIdKey());
+        break;
+      case VCS_ROOT:
+        identity = project.getProjectId() + ":" + root.getProperty("authMethod") + ":" + root.getProperty("tokenId") + ":" +
+                   root.getProperty("username") + ":" + hashSecret(root.getProperty("secure:password"));
+        break;
+      default:
+        identity = "";
+    }
+    return params.get(C.getServerKey()) + "|" + authenticationType + "|" + identity;
+  }
+
+  @NotNull
+  private static String hashSecret(@Nullable String secret) {
+    return secret == null ? "" : Hashing.sha256().hashString(secret, StandardCharsets.UTF_8).toString();
+  }
+
   @NotNull
   private GitHubApi getGitHubApiForVcsRootCredentials(@NotNull SProject project, @NotNull VcsRoot root, @NotNull String serverUrl) {
     String vcsRootAuthType = root.getProperty("authMethod");
@@ -122,7 +203,8 @@ public class ChangeStatusUpdater {
   }
 
   void testConnection(@NotNull SProject project, @NotNull VcsRoot root, @NotNull Map<String, String> params) throws PublisherException {
-    getGitHubApi(params, project, root).testConnection(parseRepository(root));
+    // connection is tested with the actual credentials, not with the ones resolved previously
+    createGitHubApi(params, project, root).testConnection(parseRepository(root));
   }
 
   @NotNull
@@ -225,32 +307,19 @@ public class ChangeStatusUpdater {
 
         Repository repo = parseRepository(root);
         GitHubStatusClient statusClient = new GitHubStatusClient(params, publisher, root);
-
-        final int perPage = 25;
-        int page = 1;
-        Collection<CommitStatus> result = new ArrayList<>();
-        boolean keepLoading;
         final int statusesThreshold = TeamCityProperties.getInteger(Constants.STATUSES_TO_LOAD_THRESHOLD_PROPERTY, Constants.STATUSES_TO_LOAD_THRESHOLD_DEFAULT_VAL);
 
-        do {
-          Collection<CommitStatus> statuses;
-          try {
-            statuses = statusClient.getStatuses(revision, repo, perPage, page);
-          } catch (IOException | PublisherException e) {
-            publisher.getProblems().reportProblem(String.format("Commit Status Publisher error. Can not receive status for revision: %s", revision.getRevision()), publisher,
-                                                  buildContext, publisher.getServerUrl(), e, LOG);
-            if (e instanceof PublisherException) {
-              throw (PublisherException)e;
-            }
-            return Collections.emptyList();
+        try {
+          final Collection<CommitStatus> statuses = statusClient.getStatuses(revision, repo, statusesThreshold);
+          return statuses != null ? statuses : Collections.emptyList();
+        } catch (IOException | PublisherException e) {
+          publisher.getProblems().reportProblem(String.format("Commit Status Publisher error. Can not receive status for revision: %s", revision.getRevision()), publisher,
+                                                buildContext, publisher.getServerUrl(), e, LOG);
+          if (e instanceof PublisherException) {
+            throw (PublisherException)e;
           }
-          if (statuses == null) return result;
-          result.addAll(statuses);
-          keepLoading = !statuses.isEmpty() &&
-                        result.size() < statusesThreshold &&
-                        statuses.stream().noneMatch(status -> buildContext.equals(status.context));
-        } while (keepLoading);
-        return result;
+          return Collections.emptyList();
+        }
       }
 
       private void doChangeUpdate(@NotNull final BuildRevision revision,
@@ -304,6 +373,7 @@ public class ChangeStatusUpdater {
 
     protected final GitHubPublisher myPublisher;
     protected final GitHubApi myApi;
+    protected final String myApiKey;
     protected final String myContext;
 
     GitHubCommonStatusClient(Map<String, String> params, GitHubPublisher publisher, @NotNull VcsRoot root) {
@@ -311,6 +381,31 @@ public class ChangeStatusUpdater {
       String ctx = params.get(Constants.BUILD_CUSTOM_NAME);
       myContext = StringUtil.isEmpty(ctx) ? DEFAULT_CONTEXT : ctx;
       myApi = getGitHubApi(params, publisher.getBuildType().getProject(), root);
+      myApiKey = getGitHubApiKey(params, publisher.getBuildType().getProject(), root);
+    }
+
+    /**
+     * Check runs can be created with GitHub App installation tokens only, states are published as commit statuses with other credentials
+     */
+    protected boolean useCheckRuns() {
+      return GitHubCheckRuns.isEnabled() && myApi.isInstallationToken();
+    }
+
+    /**
+     * Reads all statuses of the commit with a GraphQL query batched together with the reads of other commits of the repository
+     * @return null if batched reads are disabled or failed, so the statuses should be read with REST API
+     */
+    @Nullable
+    protected Collection<CommitStatus> readBatchedStatuses(@NotNull Repository repo, @NotNull String hash) {
+      if (!GitHubStatusesBatchReader.isEnabled()) return null;
+      try {
+        final Collection<CommitStatus> statuses =
+          myStatusesBatchReader.read(myApiKey + "|" + repo.owner() + "/" + repo.repositoryName(), myApi, repo.owner(), repo.repositoryName(), hash);
+        return statuses != null ? statuses : Collections.emptyList();
+      } catch (Exception e) {
+        LOG.debug(String.format("Failed to read statuses with GraphQL for repository \"%s/%s\" hash %s, REST API will be used", repo.owner(), repo.repositoryName(), hash), e);
+        return null;
+      }
     }
 
     @NotNull
@@ -318,7 +413,8 @@ public class ChangeStatusUpdater {
       final String vcsBranch = myVersion.getVcsBranch();
       if (vcsBranch != null && myApi.isPullRequestMergeBranch(vcsBranch)) {
         try {
-          final String hash = myApi.findPullRequestCommit(repo.owner(), repo.repositoryName(), vcsBranch);
+          final String hash = myPullRequestHeads.get(repo.url(), vcsBranch, myVersion.getVersion(),
+                                                     () -> myApi.findPullRequestCommit(repo.owner(), repo.repositoryName(), vcsBranch));
           if (hash == null) {
             throw new IOException("Failed to find head hash for commit from " + vcsBranch);
           }
@@ -353,8 +449,8 @@ public class ChangeStatusUpdater {
                                     @NotNull VcsRootInstance root,
                                     @NotNull String buildIdentificator) {
       if (!(hash.equals(version.getVersion()) ||
-            myModificationHistory.getModificationsOrder(root, hash, version.getVersion())
-                                 .equals(VcsModificationOrder.BEFORE))) {
+            myModificationsMemo.getModificationsOrder(myModificationHistory, root, hash, version.getVersion())
+                               .equals(VcsModificationOrder.BEFORE))) {
         LOG.info("GitHub status for pull request commit has not been updated. The head branch hash: " + hash
                  + " does not correspond to the merge branch hash " + version.getVersion() + " any longer (" + buildIdentificator + ")");
         return true;
@@ -366,53 +462,65 @@ public class ChangeStatusUpdater {
     public CommitStatus getStatus(@NotNull BuildRevision revision,  @NotNull Repository repo) throws IOException, PublisherException {
       final RepositoryVersion version = revision.getRepositoryVersion();
       final String hash = resolveCommitHash(version, repo, null, myContext, null);
+      final boolean checkRuns = useCheckRuns();
+      // statuses are read while the commit is checked against the VCS history
+      final CallerRunsTask<CommitStatus> status = myPipeline.start(() -> {
+        if (checkRuns) {
+          return GitHubCheckRuns.readAsStatuses(myApi, repo, hash, Integer.MAX_VALUE).stream().filter(s -> myContext.equals(s.context)).findAny().orElse(null);
+        }
+        final Collection<CommitStatus> batchedStatuses = readBatchedStatuses(repo, hash);
+        if (batchedStatuses != null) {
+          return batchedStatuses.stream().filter(s -> myContext.equals(s.context)).findAny().orElse(null);
+        }
+        return scanStatuses(repo, hash, Integer.MAX_VALUE).getFound();
+      });
       if (isHashInvalid(hash, version, revision.getRoot(), myContext)) {
+        status.cancel();
         return null;
       }
-      final int perPage = 30;
-      int page = 0;
-      int totalStatuses;
-
-      do {
-        page++;
-        CombinedCommitStatus combinedCommitStatus = myApi.readChangeCombinedStatus(repo.owner(), repo.repositoryName(), hash, perPage, page);
-        if (combinedCommitStatus.statuses == null || combinedCommitStatus.statuses.isEmpty()) {
-          LOG.debug(String.format("No statuses received from GitHub for repository \"%s/%s\" hash %s", repo.owner(), repo.repositoryName(), hash));
-          break;
-        }
-        Optional<CommitStatus> requiredStatus = combinedCommitStatus.statuses.stream().filter(status -> myContext.equals(status.context)).findAny();
-        if (requiredStatus.isPresent()) {
-          return requiredStatus.get();
-        }
-        totalStatuses = combinedCommitStatus.total_count != null ? combinedCommitStatus.total_count : 0;
-      } while (totalStatuses > page * perPage);
-      return null;
+      return status.await();
     }
 
+    /**
+     * @param maxStatuses number of statuses to read at most, reading stops earlier if the status of the context is found
+     * @return all the statuses read or null if the commit hash is not valid any longer
+     */
     @Nullable
-    public Collection<CommitStatus> getStatuses(@NotNull BuildRevision revision, @NotNull Repository repo,
-                                                @NotNull int perPage, @NotNull int page) throws IOException, PublisherException {
+    public Collection<CommitStatus> getStatuses(@NotNull BuildRevision revision, @NotNull Repository repo, int maxStatuses) throws IOException, PublisherException {
       final RepositoryVersion version = revision.getRepositoryVersion();
       final AtomicBoolean shouldRetry = new AtomicBoolean();
       final String hash = resolveCommitHash(version, repo, null, myContext, shouldRetry);
+      final boolean checkRuns = useCheckRuns();
+      // statuses are read while the commit is checked against the VCS history
+      final CallerRunsTask<Collection<CommitStatus>> statuses = myPipeline.start(() -> {
+        if (checkRuns) {
+          return GitHubCheckRuns.readAsStatuses(myApi, repo, hash, maxStatuses);
+        }
+        // GraphQL query returns all the statuses at once
+        final Collection<CommitStatus> batchedStatuses = readBatchedStatuses(repo, hash);
+        if (batchedStatuses != null) {
+          return batchedStatuses;
+        }
+        return scanStatuses(repo, hash, maxStatuses).getSeen();
+      });
       if (isHashInvalid(hash, version, revision.getRoot(), myContext)) {
+        statuses.cancel();
         if (shouldRetry.get()) {
           throw new PublisherException("Failed to resolve commit hash for GitHub").setShouldRetry();
         }
         return null;
       }
+      return statuses.await();
+    }
 
-      CombinedCommitStatus combinedCommitStatus = myApi.readChangeCombinedStatus(repo.owner(), repo.repositoryName(), hash, perPage, page);
-      if (combinedCommitStatus.statuses == null || combinedCommitStatus.statuses.isEmpty()) {
+    @NotNull
+    private CombinedStatusScanner.Result scanStatuses(@NotNull Repository repo, @NotNull String hash, int maxStatuses) throws IOException, PublisherException {
+      final CombinedStatusScanner.Result result = myStatusesScanner.scan(
+        (perPage, page) -> myApi.readChangeCombinedStatus(repo.owner(), repo.repositoryName(), hash, perPage, page), myContext, maxStatuses);
+      if (result.getSeen().isEmpty()) {
         LOG.debug(String.format("No statuses received from GitHub for repository \"%s/%s\" hash %s", repo.owner(), repo.repositoryName(), hash));
-        return null;
       }
-
-      for (CommitStatus status : combinedCommitStatus.statuses) {
-        if (myContext.equals(status.context))
-          return combinedCommitStatus.statuses;
-      }
-      return Collections.emptyList();
+      return result;
     }
   }
 
@@ -442,16 +550,22 @@ public class ChangeStatusUpdater {
 
       String compiledMessage = additionalTaskInfo.getComment();
       boolean prMergeBranch = !hash.equals(version.getVersion());
+      final String context = prMergeBranch ? myContext + " - merge" : myContext;
       try {
-        myApi.setChangeStatus(
-          repo.owner(),
-          repo.repositoryName(),
-          hash,
-          targetStatus,
-          viewUrl,
-          compiledMessage,
-          prMergeBranch ? myContext + " - merge" : myContext
-        );
+        if (useCheckRuns()) {
+          myCheckRuns.publish(myApi, repo, hash, buildPromotion.getId(), context,
+                              GitHubCheckRuns.toCheckRun(targetStatus, true, context, compiledMessage, viewUrl), Collections.emptyList());
+        } else {
+          myApi.setChangeStatus(
+            repo.owner(),
+            repo.repositoryName(),
+            hash,
+            targetStatus,
+            viewUrl,
+            compiledMessage,
+            context
+          );
+        }
         LOG.debug("Updated GitHub status for hash: " + hash + ", buildId: " + buildPromotion.getAssociatedBuildId() + ", status: " + targetStatus);
       } catch (PublisherException | IOException e) {
         throw new PublisherException("Commit Status Publisher error. " + e, e);
@@ -470,9 +584,14 @@ public class ChangeStatusUpdater {
     public void update(BuildRevision revision, SBuild build, String message, GitHubChangeState targetStatus, Repository repo, String viewUrl) throws PublisherException{
       final RepositoryVersion version = revision.getRepositoryVersion();
       String buildIdentififcator = "buildId: " + build.getBuildId();
+      final boolean checkRuns = useCheckRuns();
+      // annotations do not depend on the commit, they are collected while the commit is resolved
+      final CallerRunsTask<List<CheckRun.Annotation>> annotations = myPipeline.start(
+        () -> checkRuns && targetStatus != GitHubChangeState.Pending ? getFailedTestsAnnotations(build) : Collections.emptyList());
       final AtomicBoolean shouldRetry = new AtomicBoolean();
       final String hash = resolveCommitHash(version, repo, targetStatus, buildIdentififcator, shouldRetry);
       if (isHashInvalid(hash, version, revision.getRoot(), buildIdentififcator)) {
+        annotations.cancel();
         if (shouldRetry.get()) {
           throw new PublisherException("Failed to resolve commit hash for GitHub").setShouldRetry();
         }
@@ -481,7 +600,7 @@ public class ChangeStatusUpdater {
 
       final CommitStatusPublisherProblems problems = myPublisher.getProblems();
       try {
-        changeStatus(build, repo, hash, version, message, targetStatus, viewUrl);
+        changeStatus(build, repo, hash, version, message, targetStatus, viewUrl, checkRuns, annotations);
       } catch (IOException | PublisherException e) {
         throw new PublisherException("Commit Status Publisher error. " + e, e);
       }
@@ -502,20 +621,49 @@ public class ChangeStatusUpdater {
                               RepositoryVersion version,
                               String message,
                               GitHubChangeState targetStatus,
-                              String viewUrl) throws IOException, PublisherException {
+                              String viewUrl,
+                              boolean checkRuns,
+                              CallerRunsTask<List<CheckRun.Annotation>> annotations) throws IOException, PublisherException {
       boolean prMergeBranch = !hash.equals(version.getVersion());
-      myApi.setChangeStatus(
-        repo.owner(),
-        repo.repositoryName(),
-        hash,
-        targetStatus,
-        viewUrl,
-        message,
-        prMergeBranch ? myContext + " - merge" : myContext
-      );
+      final String context = prMergeBranch ? myContext + " - merge" : myContext;
+      if (checkRuns) {
+        myCheckRuns.publish(myApi, repo, hash, build.getBuildPromotion().getId(), context,
+                            GitHubCheckRuns.toCheckRun(targetStatus, false, context, message, viewUrl), annotations.await());
+      } else {
+        myApi.setChangeStatus(
+          repo.owner(),
+          repo.repositoryName(),
+          hash,
+          targetStatus,
+          viewUrl,
+          message,
+          context
+        );
+      }
       LOG.debug("Updated GitHub status for hash: " + hash + ", buildId: " + build.getBuildId() + ", status: " + targetStatus);
     }
 
+    @NotNull
+    private List<CheckRun.Annotation> getFailedTestsAnnotations(@NotNull SBuild build) {
+      final int maxAnnotations = GitHubCheckRuns.getMaxAnnotations();
+      if (maxAnnotations <= 0 || build.getBuildStatus().isSuccessful()) return Collections.emptyList();
+
+      final List<CheckRun.Annotation> annotations = new ArrayList<>();
+      for (STestRun testRun : build.getBuildStatistics(BuildStatisticsOptions.ALL_TESTS_NO_DETAILS).getFailedTests()) {
+        if (annotations.size() >= maxAnnotations) break;
+        final String className = testRun.getTest().getName().getClassName();
+        final CheckRun.Annotation annotation = new CheckRun.Annotation();
+        annotation.path = StringUtil.isEmpty(className) ? "tests" : className;
+        annotation.start_line = 1;
+        annotation.end_line = 1;
+        annotation.annotation_level = "failure";
+        annotation.title = testRun.getTest().getName().getAsString();
+        annotation.message = "Test failed in build #" + build.getBuildNumber();
+        annotations.add(annotation);
+      }
+      return annotations;
+    }
+
     @NotNull
     private String getComment(@NotNull SBuild build, boolean completed, String viewUrl) {
       final StringBuilder comment = new StringBuilder();
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executor;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CombinedCommitStatus;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Looks for the status of a context in the combined status of a commit.
+ * <p>
+ * Pages are as large as needed up to the maximum GitHub allows. Once the first page tells the total number of statuses,
+ * the rest of the pages are read concurrently and reading stops as soon as the status of the context is found.
+ * All the statuses seen on the way are returned, so that they can be cached.
+ * </p>
+ * <p>
+ * A page no thread of the executor has taken yet is read by the scanning thread itself, so scanning never waits for the executor queue.
+ * </p>
+ */
+class CombinedStatusScanner {
+  static final String PAGE_SIZE_PROPERTY = "teamcity.commitStatusPublisher.github.statusesPageSize";
+  static final String PARALLELISM_PROPERTY = "teamcity.commitStatusPublisher.github.statusesPagesParallelism";
+  private static final int MAX_PAGE_SIZE = 100;
+  private static final int DEFAULT_PARALLELISM = 4;
+
+  private final Executor myExecutor;
+
+  interface PageReader {
+    @NotNull
+    CombinedCommitStatus read(int perPage, int page) throws IOException, PublisherException;
+  }
+
+  static class Result {
+    private final Collection<CommitStatus> mySeen;
+    private final CommitStatus myFound;
+
+    private Result(@NotNull Collection<CommitStatus> seen, @Nullable CommitStatus found) {
+      mySeen = seen;
+      myFound = found;
+    }
+
+    @NotNull
+    Collection<CommitStatus> getSeen() {
+      return mySeen;
+    }
+
+    @Nullable
+    CommitStatus getFound() {
+      return myFound;
+    }
+  }
+
+  CombinedStatusScanner(@NotNull Executor executor) {
+    myExecutor = executor;
+  }
+
+  /**
+   * @param reader reads a page of the combined status
+   * @param context context to look for
+   * @param maxStatuses number of statuses to read at most
+   */
+  @NotNull
+  Result scan(@NotNull PageReader reader, @NotNull String context, int maxStatuses) throws IOException, PublisherException {
+    final int perPage = getPageSize(maxStatuses);
+    final List<CommitStatus> seen = new ArrayList<>();
+
+    final CombinedCommitStatus first = reader.read(perPage, 1);
+    CommitStatus found = collect(first, context, seen);
+    if (found != null || seen.isEmpty()) return new Result(seen, found);
+
+    final int total = first.total_count != null ? Math.min(first.total_count, maxStatuses) : 0;
+    final int lastPage = (total + perPage - 1) / perPage;
+    if (lastPage <= 1) return new Result(seen, null);
+
+    final int parallelism = Math.max(1, TeamCityProperties.getInteger(PARALLELISM_PROPERTY, DEFAULT_PARALLELISM));
+    if (parallelism == 1) {
+      for (int page = 2; page <= lastPage && found == null; page++) {
+        final CombinedCommitStatus statuses = reader.read(perPage, page);
+        found = collect(statuses, context, seen);
+        if (statuses.statuses == null || statuses.statuses.isEmpty()) break;
+      }
+      return new Result(seen, found);
+    }
+
+    final Deque<CallerRunsTask<CombinedCommitStatus>> reads = new ArrayDeque<>();
+    int nextPage = 2;
+    try {
+      while (found == null && (nextPage <= lastPage || !reads.isEmpty())) {
+        for (; nextPage <= lastPage && reads.size() < parallelism; nextPage++) {
+          reads.addLast(start(reader, perPage, nextPage));
+        }
+        found = collect(reads.pollFirst().await(), context, seen);
+      }
+    } finally {
+      // the status is found or reading failed, the rest of the pages are not needed
+      for (CallerRunsTask<CombinedCommitStatus> read : reads) {
+        read.cancel();
+      }
+    }
+    return new Result(seen, found);
+  }
+
+  private static int getPageSize(int maxStatuses) {
+    final int pageSize = TeamCityProperties.getInteger(PAGE_SIZE_PROPERTY, MAX_PAGE_SIZE);
+    return Math.max(1, Math.min(Math.min(pageSize, MAX_PAGE_SIZE), maxStatuses));
+  }
+
+  @Nullable
+  private static CommitStatus collect(@NotNull CombinedCommitStatus page, @NotNull String context, @NotNull Collection<CommitStatus> seen) {
+    if (page.statuses == null) return null;
+    seen.addAll(page.statuses);
+    return page.statuses.stream().filter(status -> context.equals(status.context)).findAny().orElse(null);
+  }
+
+  @NotNull
+  private CallerRunsTask<CombinedCommitStatus> start(@NotNull PageReader reader, int perPage, int page) {
+    return new CallerRunsTask<>("reading statuses from GitHub", () -> reader.read(perPage, page)).submitTo(myExecutor);
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.Repository;
+import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
+import jetbrains.buildServer.commitPublisher.github.api.GitHubChangeState;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CheckRun;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitCheckRuns;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
+/**
+ * Publishes build states as GitHub check runs instead of commit statuses.
+ * <p>
+ * A check run is created once per build promotion and context and is then updated in place, so that a commit does not
+ * collect a new status record on every transition and never reaches the limit of statuses per commit.
+ * Check runs can be published with GitHub App installation tokens only, states are published as commit statuses with other credentials.
+ * </p>
+ */
+class GitHubCheckRuns {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.github.checks.enabled";
+  static final String MAX_ANNOTATIONS_PROPERTY = "teamcity.commitStatusPublisher.github.checks.maxAnnotations";
+  // GitHub accepts at most 50 annotations per request
+  static final int ANNOTATIONS_PER_REQUEST = 50;
+  static final int CHECK_RUNS_PER_PAGE = 100;
+  private static final int DEFAULT_MAX_ANNOTATIONS = 500;
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, Long> myCheckRunIds = CacheBuilder.newBuilder()
+                                                                .maximumSize(MAX_SIZE)
+                                                                .expireAfterAccess(1, TimeUnit.DAYS)
+                                                                .build();
+
+  static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(ENABLED_PROPERTY);
+  }
+
+  static int getMaxAnnotations() {
+    return TeamCityProperties.getInteger(MAX_ANNOTATIONS_PROPERTY, DEFAULT_MAX_ANNOTATIONS);
+  }
+
+  /**
+   * Creates the check run of the promotion and the context or updates the one created previously
+   * @param checkRun state of the check run, its output carries the first batch of the annotations
+   * @param annotations annotations to add, they are sent in batches
+   */
+  void publish(@NotNull GitHubApi api,
+               @NotNull Repository repo,
+               @NotNull String hash,
+               long promotionId,
+               @NotNull String name,
+               @NotNull CheckRun checkRun,
+               @NotNull List<CheckRun.Annotation> annotations) throws IOException, PublisherException {
+    final String key = repo.url() + "|" + hash + "|" + promotionId + "|" + name;
+    final List<List<CheckRun.Annotation>> batches = Lists.partition(annotations, ANNOTATIONS_PER_REQUEST);
+    if (checkRun.output != null && !batches.isEmpty()) {
+      checkRun.output.annotations = batches.get(0);
+    }
+
+    Long checkRunId = myCheckRunIds.getIfPresent(key);
+    if (checkRunId != null) {
+      try {
+        api.updateCheckRun(repo.owner(), repo.repositoryName(), checkRunId, checkRun);
+      } catch (PublisherException e) {
+        if (e.shouldRetry()) throw e;
+        LOG.debug(String.format("Failed to update check run %d for hash %s, a new check run will be created", checkRunId, hash), e);
+        myCheckRunIds.invalidate(key);
+        checkRunId = null;
+      }
+    }
+    if (checkRunId == null) {
+      checkRun.name = name;
+      checkRun.head_sha = hash;
+      checkRun.external_id = String.valueOf(promotionId);
+      checkRunId = api.createCheckRun(repo.owner(), repo.repositoryName(), checkRun);
+      myCheckRunIds.put(key, checkRunId);
+    }
+
+    for (int i = 1; i < batches.size(); i++) {
+      final CheckRun more = new CheckRun();
+      more.output = new CheckRun.Output();
+      more.output.title = checkRun.output != null ? checkRun.output.title : name;
+      more.output.summary = checkRun.output != null ? checkRun.output.summary : "";
+      more.output.annotations = batches.get(i);
+      api.updateCheckRun(repo.owner(), repo.repositoryName(), checkRunId, more);
+    }
+  }
+
+  /**
+   * Reads check runs of the commit as commit statuses, so that the states published as check runs can be read back
+   * @param maxCheckRuns number of check runs to read at most
+   */
+  @NotNull
+  static List<CommitStatus> readAsStatuses(@NotNull GitHubApi api,
+                                           @NotNull Repository repo,
+                                           @NotNull String hash,
+                                           int maxCheckRuns) throws IOException, PublisherException {
+    final List<CommitStatus> result = new ArrayList<>();
+    for (int page = 1; result.size() < maxCheckRuns; page++) {
+      final CommitCheckRuns checkRuns = api.readCheckRuns(repo.owner(), repo.repositoryName(), hash, CHECK_RUNS_PER_PAGE, page);
+      if (checkRuns.check_runs == null || checkRuns.check_runs.isEmpty()) break;
+      for (CheckRun checkRun : checkRuns.check_runs) {
+        if (result.size() >= maxCheckRuns) break;
+        result.add(toCommitStatus(checkRun));
+      }
+      if (checkRuns.total_count == null || page * CHECK_RUNS_PER_PAGE >= checkRuns.total_count) break;
+    }
+    return result;
+  }
+
+  /**
+   * Reverse of {@link #toCheckRun}
+   */
+  @NotNull
+  static CommitStatus toCommitStatus(@NotNull CheckRun checkRun) {
+    final String summary = checkRun.output != null ? checkRun.output.summary : null;
+    return new CommitStatus(getState(checkRun).getState(), checkRun.details_url, summary, checkRun.name);
+  }
+
+  @NotNull
+  private static GitHubChangeState getState(@NotNull CheckRun checkRun) {
+    if (!"completed".equals(checkRun.status)) return GitHubChangeState.Pending;
+    if (checkRun.conclusion == null) return GitHubChangeState.Error;
+    switch (checkRun.conclusion) {
+      case "success":
+      case "skipped":
+      case "neutral":
+        return GitHubChangeState.Success;
+      case "failure":
+      case "cancelled":
+      case "timed_out":
+      case "action_required":
+        return GitHubChangeState.Failure;
+      default:
+        return GitHubChangeState.Error;
+    }
+  }
+
+  /**
+   * @param queued whether the state is published for a build in the queue
+   */
+  @NotNull
+  static CheckRun toCheckRun(@NotNull GitHubChangeState state,
+                             boolean queued,
+                             @NotNull String title,
+                             @NotNull String description,
+                             @NotNull String detailsUrl) {
+    final CheckRun checkRun = new CheckRun();
+    checkRun.details_url = detailsUrl;
+    checkRun.output = new CheckRun.Output();
+    checkRun.output.title = title;
+    checkRun.output.summary = description;
+    if (state == GitHubChangeState.Pending) {
+      checkRun.status = queued ? "queued" : "in_progress";
+      return checkRun;
+    }
+    checkRun.status = "completed";
+    switch (state) {
+      case Success:
+        checkRun.conclusion = queued ? "skipped" : "success";
+        break;
+      case Failure:
+        checkRun.conclusion = queued ? "cancelled" : "failure";
+        break;
+      default:
+        checkRun.conclusion = "failure";
+    }
+    return checkRun;
+  }
+}
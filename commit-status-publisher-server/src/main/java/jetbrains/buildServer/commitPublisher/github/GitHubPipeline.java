@@ -0,0 +1,52 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github;
+
+import java.util.concurrent.Executor;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Runs the steps of publishing to GitHub which do not depend on each other concurrently,
+ * e.g. reads statuses of a commit while the commit is checked against the VCS history.
+ * <p>
+ * A step no thread of the executor has taken yet is run by the thread awaiting its result, so awaiting never waits for the executor queue.
+ * When pipelining is disabled, a step is always run by the thread awaiting its result, so the steps are run one after another.
+ * </p>
+ */
+final class GitHubPipeline {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.github.pipelinedPublishing.enabled";
+
+  private final Executor myExecutor;
+
+  GitHubPipeline(@NotNull Executor executor) {
+    myExecutor = executor;
+  }
+
+  static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(ENABLED_PROPERTY);
+  }
+
+  /**
+   * Starts the step in background
+   */
+  @NotNull
+  <T> CallerRunsTask<T> start(@NotNull CallerRunsTask.Work<T> step) {
+    final CallerRunsTask<T> stage = new CallerRunsTask<>("publishing to GitHub", step);
+    return isEnabled() ? stage.submitTo(myExecutor) : stage;
+  }
+}
@@ -123,6 +123,17 @@ class GitHubPublisher extends BaseCommitStatusPublisher {
     return new RevisionStatus(triggeredEvent, commitStatus.description, isSameBuildType, getBuildIdFromViewUrl(commitStatus.target_url));
   }
 
+  @Nullable
+  @Override
+  public String getStatusContext(@NotNull BuildPromotion buildPromotion) {
+    try {
+      return myBuildNameProvider.getBuildName(buildPromotion, myParams);
+    } catch (GitHubContextResolveException e) {
+      LOG.debug("Context was not resolved for promotion #" + buildPromotion.getId(), e);
+      return null;
+    }
+  }
+
   private boolean isSameBuildType(BuildPromotion buildPromotion, CommitStatus commitStatus) {
     String buildName;
     try {
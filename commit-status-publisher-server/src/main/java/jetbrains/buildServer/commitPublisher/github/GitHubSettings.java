@@ -88,9 +88,12 @@ public class GitHubSettings extends BasePublisherSettings implements CommitStatu
                         @NotNull OAuthTokensStorage oauthTokensStorage,
                         @NotNull SecurityContext securityContext,
                         @NotNull SSLTrustStoreProvider trustStoreProvider,
+                        @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                        @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                        @NotNull PublishedPayloads publishedPayloads,
                         @NotNull GitHubBuildContextProvider buildNameProvider
   ) {
-    super(descriptor, links, problems, trustStoreProvider);
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads);
     myUpdater = updater;
     myOauthConnectionsManager = oauthConnectionsManager;
     myOAuthTokensStorage = oauthTokensStorage;
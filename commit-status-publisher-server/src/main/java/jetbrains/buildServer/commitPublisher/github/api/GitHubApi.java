@@ -20,9 +20,13 @@ package jetbrains.buildServer.commitPublisher.github.api;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Map;
 import jetbrains.buildServer.commitPublisher.PublisherException;
 import jetbrains.buildServer.commitPublisher.Repository;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CheckRun;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.CombinedCommitStatus;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitCheckRuns;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -40,6 +44,61 @@ public interface GitHubApi {
                                                 @Nullable final Integer perPage,
                                                 @Nullable final Integer page) throws IOException, PublisherException;
 
+  /**
+   * reads statuses of several commits of the repository with a single GraphQL query
+   * @param repoOwner repo owner
+   * @param repoName repo name
+   * @param hashes commit hashes
+   * @return statuses by commit hash, commits unknown to GitHub are absent
+   */
+  @NotNull
+  Map<String, Collection<CommitStatus>> readCommitStatuses(@NotNull String repoOwner,
+                                                           @NotNull String repoName,
+                                                           @NotNull Collection<String> hashes) throws IOException, PublisherException;
+
+  /**
+   * creates a check run for a commit, check runs can be created with GitHub App installation tokens only
+   * @param repoOwner repo owner
+   * @param repoName repo name
+   * @param checkRun check run to create, its name and head_sha are required
+   * @return id of the created check run
+   */
+  long createCheckRun(@NotNull String repoOwner,
+                      @NotNull String repoName,
+                      @NotNull CheckRun checkRun) throws IOException, PublisherException;
+
+  /**
+   * updates a check run in place, annotations of the output are added to the ones sent previously
+   * @param repoOwner repo owner
+   * @param repoName repo name
+   * @param checkRunId id of the check run
+   * @param checkRun fields to update
+   */
+  void updateCheckRun(@NotNull String repoOwner,
+                      @NotNull String repoName,
+                      long checkRunId,
+                      @NotNull CheckRun checkRun) throws IOException, PublisherException;
+
+  /**
+   * reads check runs of a commit
+   * @param repoOwner repo owner
+   * @param repoName repo name
+   * @param hash commit hash
+   * @param perPage number of check runs per page, 100 at most
+   * @param page page number starting from 1
+   */
+  @NotNull
+  CommitCheckRuns readCheckRuns(@NotNull String repoOwner,
+                                @NotNull String repoName,
+                                @NotNull String hash,
+                                int perPage,
+                                int page) throws IOException, PublisherException;
+
+  /**
+   * @return true if the API is used with a GitHub App installation token, check runs can't be created with other credentials
+   */
+  boolean isInstallationToken();
+
   void setChangeStatus(@NotNull String repoOwner,
                        @NotNull String repositoryName,
                        @NotNull String hash,
@@ -97,4 +156,9 @@ public interface GitHubApi {
                           @NotNull final String repoName,
                           @NotNull final String hash,
                           @NotNull final String comment) throws IOException;
+
+  /**
+   * @return true if GitHub has rejected the credentials the API is used with, so a client keeping them should not be reused
+   */
+  boolean isAuthenticationFailed();
 }
\ No newline at end of file
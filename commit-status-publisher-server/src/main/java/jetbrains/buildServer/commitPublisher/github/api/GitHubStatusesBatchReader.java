@@ -0,0 +1,152 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Merges reads of commit statuses of a repository, which are made concurrently within a short window,
+ * into a single {@link GitHubApi#readCommitStatuses} query.
+ * <p>
+ * The first read of a batch waits for the window to pass (or for the batch to become full) and performs the query on behalf of
+ * all the reads of the batch, the others wait for its result.
+ * </p>
+ */
+public class GitHubStatusesBatchReader {
+  public static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.github.graphql.enabled";
+  static final String WINDOW_PROPERTY = "teamcity.commitStatusPublisher.github.graphql.batchWindowMs";
+  static final String MAX_COMMITS_PROPERTY = "teamcity.commitStatusPublisher.github.graphql.maxCommits";
+  static final String QUERIES_COUNTER = "github.graphql.statusQueries";
+  private static final long DEFAULT_WINDOW_MS = 20;
+  private static final int DEFAULT_MAX_COMMITS = 50;
+
+  private final ConcurrentMap<String, Batch> myOpenBatches = new ConcurrentHashMap<>();
+  private final PublishingMetrics myMetrics;
+
+  public GitHubStatusesBatchReader(@NotNull PublishingMetrics metrics) {
+    myMetrics = metrics;
+  }
+
+  public static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(ENABLED_PROPERTY);
+  }
+
+  /**
+   * @param key identifies the server, the repository and the credentials, only reads with the same key are merged
+   * @param api api to perform the query with, if the read happens to be the first one of a batch
+   * @return statuses of the commit or null if GitHub does not know the commit
+   */
+  @Nullable
+  public Collection<CommitStatus> read(@NotNull String key,
+                                       @NotNull GitHubApi api,
+                                       @NotNull String repoOwner,
+                                       @NotNull String repoName,
+                                       @NotNull String hash) throws IOException, PublisherException {
+    final int maxCommits = Math.max(1, TeamCityProperties.getInteger(MAX_COMMITS_PROPERTY, DEFAULT_MAX_COMMITS));
+    Batch batch;
+    boolean first;
+    while (true) {
+      batch = myOpenBatches.computeIfAbsent(key, k -> new Batch(maxCommits));
+      final Boolean added = batch.add(hash);
+      if (added != null) {
+        first = added;
+        break;
+      }
+      // the batch is full or its query has already been started
+      myOpenBatches.remove(key, batch);
+    }
+
+    if (first) {
+      batch.awaitFull(TeamCityProperties.getLong(WINDOW_PROPERTY, DEFAULT_WINDOW_MS));
+      myOpenBatches.remove(key, batch);
+      final Set<String> hashes = batch.close();
+      try {
+        myMetrics.increment(QUERIES_COUNTER);
+        batch.myResult.complete(api.readCommitStatuses(repoOwner, repoName, hashes));
+      } catch (Throwable t) {
+        batch.myResult.completeExceptionally(t);
+      }
+    }
+
+    try {
+      return batch.myResult.get().get(hash);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PublisherException("Interrupted while reading statuses of " + hash, e);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof IOException) throw (IOException)cause;
+      if (cause instanceof PublisherException) throw (PublisherException)cause;
+      throw new PublisherException("Failed to read statuses of " + hash, cause);
+    }
+  }
+
+  private static class Batch {
+    private final int myMaxCommits;
+    private final Set<String> myHashes = new LinkedHashSet<>();
+    private final CountDownLatch myFull = new CountDownLatch(1);
+    private final CompletableFuture<Map<String, Collection<CommitStatus>>> myResult = new CompletableFuture<>();
+    private boolean myClosed;
+    private boolean myHasReads;
+
+    private Batch(int maxCommits) {
+      myMaxCommits = maxCommits;
+    }
+
+    /**
+     * @return null if the batch does not accept reads anymore, true if the read is the first one of the batch
+     */
+    @Nullable
+    synchronized Boolean add(@NotNull String hash) {
+      if (myClosed) return null;
+      if (!myHashes.contains(hash) && myHashes.size() >= myMaxCommits) return null;
+      myHashes.add(hash);
+      final boolean first = !myHasReads;
+      myHasReads = true;
+      if (myHashes.size() >= myMaxCommits) {
+        myFull.countDown();
+      }
+      return first;
+    }
+
+    void awaitFull(long windowMs) {
+      if (windowMs <= 0) return;
+      try {
+        myFull.await(windowMs, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @NotNull
+    synchronized Set<String> close() {
+      myClosed = true;
+      return new LinkedHashSet<>(myHashes);
+    }
+  }
+}
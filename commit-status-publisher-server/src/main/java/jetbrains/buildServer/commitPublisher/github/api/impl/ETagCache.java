@@ -0,0 +1,107 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.http.SimpleCredentials;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.apache.http.HttpHeaders;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps ETags of GitHub responses together with the parsed responses per url and credentials, so that conditional requests can be made:
+ * GitHub does not count {@code 304 Not Modified} responses against the rate limit.
+ */
+public class ETagCache {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.github.conditionalRequests.enabled";
+  static final String NOT_MODIFIED_COUNTER = "github.notModified";
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, Entry> myEntries = CacheBuilder.newBuilder()
+                                                             .maximumSize(MAX_SIZE)
+                                                             .expireAfterAccess(1, TimeUnit.HOURS)
+                                                             .build();
+  private final PublishingMetrics myMetrics;
+
+  public ETagCache(@NotNull PublishingMetrics metrics) {
+    myMetrics = metrics;
+  }
+
+  static boolean isEnabled() {
+    return TeamCityProperties.getBooleanOrTrue(ENABLED_PROPERTY);
+  }
+
+  /**
+   * @return key of the response, the credentials are hashed
+   */
+  @NotNull
+  static String getKey(@NotNull String uri, @NotNull SimpleCredentials credentials) {
+    final String identity = credentials.getUsername() + ":" + credentials.getPassword();
+    return uri + "#" + Hashing.sha256().hashString(identity, StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Adds If-None-Match header if a response for the key is known
+   */
+  void addConditionalHeader(@NotNull String key, @NotNull Map<String, String> headers) {
+    if (!isEnabled()) return;
+    final Entry entry = myEntries.getIfPresent(key);
+    if (entry != null) {
+      headers.put(HttpHeaders.IF_NONE_MATCH, entry.myETag);
+    }
+  }
+
+  /**
+   * @return previously received response for the key, if it is of the expected type
+   */
+  @Nullable
+  <T> T getNotModified(@NotNull String key, @NotNull Class<T> clazz) {
+    final Entry entry = myEntries.getIfPresent(key);
+    if (entry == null || !clazz.isInstance(entry.myValue)) return null;
+    myMetrics.increment(NOT_MODIFIED_COUNTER);
+    return clazz.cast(entry.myValue);
+  }
+
+  void put(@NotNull String key, @Nullable String eTag, @NotNull Object value) {
+    if (!isEnabled() || eTag == null) {
+      myEntries.invalidate(key);
+      return;
+    }
+    myEntries.put(key, new Entry(eTag, value));
+  }
+
+  void invalidate(@NotNull String key) {
+    myEntries.invalidate(key);
+  }
+
+  private static class Entry {
+    private final String myETag;
+    private final Object myValue;
+
+    private Entry(@NotNull String eTag, @NotNull Object value) {
+      myETag = eTag;
+      myValue = value;
+    }
+  }
+}
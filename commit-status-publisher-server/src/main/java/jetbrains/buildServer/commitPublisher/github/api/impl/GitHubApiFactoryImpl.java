@@ -19,12 +19,15 @@
 package jetbrains.buildServer.commitPublisher.github.api.impl;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
 import jetbrains.buildServer.commitPublisher.PublisherException;
 import jetbrains.buildServer.commitPublisher.Repository;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubApiFactory;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.RepoInfo;
 import jetbrains.buildServer.http.SimpleCredentials;
+import jetbrains.buildServer.serverSide.IOGuard;
 import jetbrains.buildServer.serverSide.ProjectManager;
 import jetbrains.buildServer.serverSide.SProject;
 import jetbrains.buildServer.serverSide.oauth.*;
@@ -32,6 +35,8 @@ import jetbrains.buildServer.users.SUser;
 import jetbrains.buildServer.vcs.SVcsRoot;
 import org.jetbrains.annotations.NotNull;
 
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
 /**
  * Created by Eugene Petrenko (eugene.petrenko@gmail.com)
  * Date: 06.09.12 2:54
@@ -48,14 +53,34 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
   @NotNull
   protected final ProjectManager myProjectManager;
 
+  @NotNull
+  private final PublishedPayloads myPublishedPayloads;
+
+  @NotNull
+  private final ETagCache myETagCache;
+
+  @NotNull
+  private final PermissionProbes myPermissionProbes;
+
+  @NotNull
+  private final GitHubInstallations myInstallations;
+
   public GitHubApiFactoryImpl(@NotNull final HttpClientWrapper wrapper,
                               @NotNull OAuthTokensStorage oAuthTokensStorage,
                               @NotNull OAuthConnectionsManager connectionsManager,
-                              @NotNull ProjectManager projectManager) {
+                              @NotNull ProjectManager projectManager,
+                              @NotNull PublishedPayloads publishedPayloads,
+                              @NotNull ETagCache eTagCache,
+                              @NotNull PermissionProbes permissionProbes,
+                              @NotNull GitHubInstallations installations) {
     myWrapper = wrapper;
     myOAuthTokensStorage = oAuthTokensStorage;
     myConnectionsManager = connectionsManager;
     myProjectManager = projectManager;
+    myPublishedPayloads = publishedPayloads;
+    myETagCache = eTagCache;
+    myPermissionProbes = permissionProbes;
+    myInstallations = installations;
   }
 
 
@@ -64,7 +89,7 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
   public GitHubApi openGitHubForUser(@NotNull final String url,
                                      @NotNull final String username,
                                      @NotNull final String password) {
-    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url)){
+    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url), myPublishedPayloads, myETagCache, myPermissionProbes){
       @Override
       protected SimpleCredentials authenticationCredentials() {
         return new SimpleCredentials(username, password);
@@ -76,7 +101,7 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
   @Override
   public GitHubApi openGitHubForToken(@NotNull final String url,
                                       @NotNull final String token) {
-    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url)){
+    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url), myPublishedPayloads, myETagCache, myPermissionProbes){
       @Override
       protected SimpleCredentials authenticationCredentials() {
         return new SimpleCredentials("x-oauth-basic", token);
@@ -90,11 +115,16 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
                                             @NotNull final String tokenId,
                                             @NotNull final SProject project) {
 
-    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url)){
+    return new GitHubApiImpl(myWrapper, new GitHubApiPaths(url), myPublishedPayloads, myETagCache, myPermissionProbes){
+      private final StoredTokenHolder myToken = new StoredTokenHolder(() -> myOAuthTokensStorage.getToken(project, tokenId, true, true));
+
       @Override
       protected SimpleCredentials authenticationCredentials() throws IOException {
-        final OAuthToken gitHubOAuthToken = myOAuthTokensStorage.getToken(project, tokenId, true, true);
+        final OAuthToken gitHubOAuthToken = myToken.getToken();
         if (gitHubOAuthToken != null) {
+          if (SUser.UKNOWN_USER_ID == gitHubOAuthToken.getTeamCityUserId()) { // GitHub App installation token
+            registerInstallationToken(gitHubOAuthToken);
+          }
           //todo: must be refactored to use Bearer token TW-76091
           return new SimpleCredentials("oauth2", gitHubOAuthToken.getAccessToken());
         }
@@ -103,13 +133,29 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
         }
       }
 
+      @Override
+      protected void onAuthenticationFailure() {
+        myToken.invalidate();
+      }
+
+      @Override
+      public boolean isInstallationToken() {
+        final AtomicReference<OAuthToken> token = new AtomicReference<>();
+        try {
+          IOGuard.allowNetworkCall(() -> token.set(myToken.getToken()));
+        } catch (Exception e) {
+          LOG.debug("Failed to retrieve configured token from storage (tokenId: " + tokenId + ")", e);
+        }
+        return token.get() != null && SUser.UKNOWN_USER_ID == token.get().getTeamCityUserId();
+      }
+
       @Override
       protected void checkPermissions(@NotNull Repository repo, @NotNull RepoInfo repoInfo) throws PublisherException {
         if (null == repoInfo.name || null == repoInfo.permissions) {
           throw new PublisherException(String.format("Repository \"%s\" is inaccessible", repo.url()));
         }
 
-        final OAuthToken gitHubOAuthToken = myOAuthTokensStorage.getToken(project, tokenId, true, true);
+        final OAuthToken gitHubOAuthToken = myToken.getToken();
         if (gitHubOAuthToken == null) {
           throw new PublisherException("Failed to retrieve configured token from storage (tokenId: " + tokenId + ")");
         }
@@ -129,6 +175,14 @@ public class GitHubApiFactoryImpl implements GitHubApiFactory {
       }
 
 
+      private void registerInstallationToken(@NotNull OAuthToken token) {
+        if (!GitHubInstallations.isEnabled()) return;
+        final TokenFullIdComponents components = OAuthTokensStorage.parseFullTokenId(tokenId);
+        if (components != null) {
+          myInstallations.registerToken(token.getAccessToken(), url + "|" + components.getTokenStorageId());
+        }
+      }
+
       @NotNull
       private OAuthConnectionDescriptor getConnection(@NotNull SProject project, @NotNull String tokenId) throws PublisherException {
         final TokenFullIdComponents components = OAuthTokensStorage.parseFullTokenId(tokenId);
@@ -20,9 +20,12 @@ package jetbrains.buildServer.commitPublisher.github.api.impl;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -62,13 +65,23 @@ public abstract class GitHubApiImpl implements GitHubApi {
 
   private final HttpClientWrapper myClient;
   private final GitHubApiPaths myUrls;
+  private final PublishedPayloads myPublishedPayloads;
+  private final ETagCache myETagCache;
+  private final PermissionProbes myPermissionProbes;
   private final Gson myGson;
+  private volatile boolean myAuthenticationFailed = false;
 
   public GitHubApiImpl(@NotNull final HttpClientWrapper client,
-                       @NotNull final GitHubApiPaths urls
+                       @NotNull final GitHubApiPaths urls,
+                       @NotNull final PublishedPayloads publishedPayloads,
+                       @NotNull final ETagCache eTagCache,
+                       @NotNull final PermissionProbes permissionProbes
   ) {
     myClient = client;
     myUrls = urls;
+    myPublishedPayloads = publishedPayloads;
+    myETagCache = eTagCache;
+    myPermissionProbes = permissionProbes;
     myGson = new GsonBuilder().setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").create();
   }
 
@@ -103,6 +116,34 @@ public abstract class GitHubApiImpl implements GitHubApi {
     checkPermissions(repo, repoInfo);
   }
 
+  /**
+   * GitHub responds with 403 both when the permissions are missing and when the rate limit is exceeded, only the former is a permission failure
+   */
+  private static boolean isPermissionFailure(@NotNull HTTPRequestBuilder.Response response) {
+    final int code = response.getStatusCode();
+    if (code == HttpStatus.SC_NOT_FOUND || code == HttpStatus.SC_UNAUTHORIZED) return true;
+    return code == HttpStatus.SC_FORBIDDEN && !"0".equals(response.getHeader("X-RateLimit-Remaining"));
+  }
+
+  /**
+   * Unlike {@link #isPermissionFailure}, 404 is not counted: it does not mean the credentials are outdated
+   */
+  private static boolean isAuthenticationFailure(@NotNull HTTPRequestBuilder.Response response) {
+    final int code = response.getStatusCode();
+    return code == HttpStatus.SC_UNAUTHORIZED || code == HttpStatus.SC_FORBIDDEN && !"0".equals(response.getHeader("X-RateLimit-Remaining"));
+  }
+
+  @Override
+  public boolean isAuthenticationFailed() {
+    return myAuthenticationFailed;
+  }
+
+  /**
+   * Called when GitHub rejects the credentials, implementations keeping resolved credentials should forget them
+   */
+  protected void onAuthenticationFailure() {
+  }
+
   private String validateAndAddHintForGitHubUrl(@NotNull String url) {
     ServerURI uri;
 
@@ -160,37 +201,55 @@ public abstract class GitHubApiImpl implements GitHubApi {
     final AtomicReference<CombinedCommitStatus> status = new AtomicReference<>();
     final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
     IOGuard.allowNetworkCall(() -> {
-      myClient.get(statusUrl, authenticationCredentials(), defaultHeaders(),
-                   success -> {
-                     String json = success.getBodyAsString();
-                     if (StringUtil.isEmptyOrSpaces(json)) {
-                       logFailedResponse(HttpMethod.GET, statusUrl, null, success);
-                       exceptionRef.set(new IOException(getErrorMessage(success, "Empty response.")));
-                       return;
-                     }
-                     CombinedCommitStatus combinedCommitStatus;
-                     try {
-                       combinedCommitStatus = myGson.fromJson(json, CombinedCommitStatus.class);
-                     } catch (JsonSyntaxException e) {
-                       exceptionRef.set(new PublisherException("GitHub publisher can not parse malformed json", e));
-                       return;
-                     }
-                     if (null == combinedCommitStatus) {
-                       exceptionRef.set(new PublisherException("GitHub publisher fails to parse a response"));
-                     } else {
-                       status.set(combinedCommitStatus);
-                     }
-                   },
-                   response -> {
-                     String responseBody = logFailedResponse(method, statusUrl, null, response);
-                     String additionalErrorsMessage = parseErrorsFromResponse(responseBody);
-                     PublisherException ex = new PublisherException(getErrorMessage(response, additionalErrorsMessage));
-                     if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
-                       ex.setShouldRetry();
-                     }
-                     exceptionRef.set(ex);
-                   },
-                   e -> exceptionRef.set(e));
+      final SimpleCredentials credentials = authenticationCredentials();
+      final String cacheKey = ETagCache.getKey(statusUrl, credentials);
+      final AtomicBoolean notModifiedUnknown = new AtomicBoolean();
+      for (boolean conditional = true; ; conditional = false) {
+        final Map<String, String> headers = defaultHeaders();
+        if (conditional) myETagCache.addConditionalHeader(cacheKey, headers);
+        notModifiedUnknown.set(false);
+        myClient.get(statusUrl, credentials, headers,
+                     success -> {
+                       if (success.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                         notModifiedUnknown.set(!serveNotModified(cacheKey, CombinedCommitStatus.class, status));
+                         return;
+                       }
+                       String json = success.getBodyAsString();
+                       if (StringUtil.isEmptyOrSpaces(json)) {
+                         logFailedResponse(HttpMethod.GET, statusUrl, null, success);
+                         exceptionRef.set(new IOException(getErrorMessage(success, "Empty response.")));
+                         return;
+                       }
+                       CombinedCommitStatus combinedCommitStatus;
+                       try {
+                         combinedCommitStatus = myGson.fromJson(json, CombinedCommitStatus.class);
+                       } catch (JsonSyntaxException e) {
+                         exceptionRef.set(new PublisherException("GitHub publisher can not parse malformed json", e));
+                         return;
+                       }
+                       if (null == combinedCommitStatus) {
+                         exceptionRef.set(new PublisherException("GitHub publisher fails to parse a response"));
+                       } else {
+                         status.set(combinedCommitStatus);
+                         myETagCache.put(cacheKey, success.getHeader(HttpHeaders.ETAG), combinedCommitStatus);
+                       }
+                     },
+                     response -> {
+                       if (response.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                         notModifiedUnknown.set(!serveNotModified(cacheKey, CombinedCommitStatus.class, status));
+                         return;
+                       }
+                       String responseBody = logFailedResponse(method, statusUrl, null, response);
+                       String additionalErrorsMessage = parseErrorsFromResponse(responseBody);
+                       PublisherException ex = new PublisherException(getErrorMessage(response, additionalErrorsMessage));
+                       if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
+                         ex.setShouldRetry();
+                       }
+                       exceptionRef.set(ex);
+                     },
+                     e -> exceptionRef.set(e));
+        if (!notModifiedUnknown.get() || !shouldRepeatUnconditionally(statusUrl, conditional, exceptionRef)) break;
+      }
     });
 
     final Exception ex;
@@ -207,6 +266,128 @@ public abstract class GitHubApiImpl implements GitHubApi {
     return status.get();
   }
 
+  @NotNull
+  public Map<String, Collection<CommitStatus>> readCommitStatuses(@NotNull final String repoOwner,
+                                                                  @NotNull final String repoName,
+                                                                  @NotNull final Collection<String> hashes) throws IOException, PublisherException {
+    if (hashes.isEmpty()) return Collections.emptyMap();
+    final List<String> commits = new ArrayList<>(hashes);
+    final String url = myUrls.getGraphQLUrl();
+    final String entity = myGson.toJson(buildStatusesQuery(repoOwner, repoName, commits));
+
+    final HttpMethod method = HttpMethod.POST;
+    LoggerUtil.logRequest(Constants.GITHUB_PUBLISHER_ID, method, url, entity);
+
+    final AtomicReference<Map<String, Collection<CommitStatus>>> statuses = new AtomicReference<>();
+    final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
+    IOGuard.allowNetworkCall(() -> {
+      myClient.post(
+        url, authenticationCredentials(), defaultHeaders(),
+        entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(),
+        success -> {
+          String json = success.getBodyAsString();
+          if (StringUtil.isEmptyOrSpaces(json)) {
+            logFailedResponse(method, url, entity, success);
+            exceptionRef.set(new IOException(getErrorMessage(success, "Empty response.")));
+            return;
+          }
+          try {
+            statuses.set(parseStatusesResponse(json, commits));
+          } catch (JsonSyntaxException | IllegalStateException | ClassCastException e) {
+            exceptionRef.set(new PublisherException("GitHub publisher can not parse malformed json", e));
+          } catch (PublisherException e) {
+            exceptionRef.set(e);
+          }
+        },
+        response -> {
+          String responseBody = logFailedResponse(method, url, entity, response);
+          String additionalErrorsMessage = parseErrorsFromResponse(responseBody);
+          PublisherException ex = new PublisherException(getErrorMessage(response, additionalErrorsMessage));
+          if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
+            ex.setShouldRetry();
+          }
+          exceptionRef.set(ex);
+        },
+        e -> exceptionRef.set(e));
+    });
+
+    final Exception ex;
+    if ((ex = exceptionRef.get()) != null) {
+      if (ex instanceof PublisherException) {
+        throw (PublisherException)ex;
+      } else {
+        PublisherException e = new PublisherException(ex.getMessage(), ex);
+        RetryResponseProcessor.processNetworkException(ex, e);
+        throw e;
+      }
+    }
+
+    return statuses.get();
+  }
+
+  @NotNull
+  private static JsonObject buildStatusesQuery(@NotNull String repoOwner, @NotNull String repoName, @NotNull List<String> commits) {
+    final StringBuilder declarations = new StringBuilder("$owner: String!, $name: String!");
+    final StringBuilder objects = new StringBuilder();
+    final JsonObject variables = new JsonObject();
+    variables.addProperty("owner", repoOwner);
+    variables.addProperty("name", repoName);
+    for (int i = 0; i < commits.size(); i++) {
+      declarations.append(", $c").append(i).append(": GitObjectID!");
+      objects.append(" c").append(i).append(": object(oid: $c").append(i).append(") { ... on Commit { status { contexts { context state description targetUrl } } } }");
+      variables.addProperty("c" + i, commits.get(i));
+    }
+    final JsonObject body = new JsonObject();
+    body.addProperty("query", "query(" + declarations + ") { repository(owner: $owner, name: $name) {" + objects + " } }");
+    body.add("variables", variables);
+    return body;
+  }
+
+  @NotNull
+  private Map<String, Collection<CommitStatus>> parseStatusesResponse(@NotNull String json, @NotNull List<String> commits) throws PublisherException {
+    final JsonObject response = myGson.fromJson(json, JsonObject.class);
+    final JsonObject data = response != null ? getObject(response, "data") : null;
+    final JsonObject repository = data != null ? getObject(data, "repository") : null;
+    if (repository == null) {
+      final JsonElement errors = response != null ? response.get("errors") : null;
+      throw new PublisherException("GitHub publisher fails to read statuses with GraphQL" + (errors != null ? ": " + errors : ""));
+    }
+
+    final Map<String, Collection<CommitStatus>> result = new HashMap<>();
+    for (int i = 0; i < commits.size(); i++) {
+      final JsonObject commit = getObject(repository, "c" + i);
+      if (commit == null) continue;
+      final JsonObject status = getObject(commit, "status");
+      final JsonElement contexts = status != null ? status.get("contexts") : null;
+      if (contexts == null || !contexts.isJsonArray()) {
+        result.put(commits.get(i), Collections.emptyList());
+        continue;
+      }
+      final List<CommitStatus> commitStatuses = new ArrayList<>();
+      for (JsonElement element : contexts.getAsJsonArray()) {
+        final JsonObject context = element.getAsJsonObject();
+        final String state = getString(context, "state");
+        // GraphQL API returns states in upper case, REST API in lower case
+        commitStatuses.add(new CommitStatus(state != null ? state.toLowerCase(Locale.ENGLISH) : null,
+                                            getString(context, "targetUrl"), getString(context, "description"), getString(context, "context")));
+      }
+      result.put(commits.get(i), commitStatuses);
+    }
+    return result;
+  }
+
+  @Nullable
+  private static JsonObject getObject(@NotNull JsonObject object, @NotNull String member) {
+    final JsonElement element = object.get(member);
+    return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+  }
+
+  @Nullable
+  private static String getString(@NotNull JsonObject object, @NotNull String member) {
+    final JsonElement element = object.get(member);
+    return element != null && !element.isJsonNull() ? element.getAsString() : null;
+  }
+
   private Map<String, String> defaultHeaders() {
     final Map<String, String> result = new LinkedHashMap<String, String>();
     result.put(HttpHeaders.ACCEPT_ENCODING, "UTF-8");
@@ -225,14 +406,23 @@ public abstract class GitHubApiImpl implements GitHubApi {
 
     final String url = myUrls.getStatusUrl(repoOwner, repoName, hash);
     final String entity = myGson.toJson(new CommitStatus(status.getState(), targetUrl, description, context));
+    if (myPublishedPayloads.isAlreadySent(url, context, entity)) return;
 
     final HttpMethod method = HttpMethod.POST;
     LoggerUtil.logRequest(Constants.GITHUB_PUBLISHER_ID, method, url, entity);
 
     final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
     IOGuard.allowNetworkCall(() -> {
+      final SimpleCredentials credentials = authenticationCredentials();
+      // the credentials are known to have no access to the repository
+      final String probeKey = PermissionProbes.getKey(myUrls.getRepoInfo(repoOwner, repoName), credentials);
+      final PublisherException knownFailure = myPermissionProbes.getKnownFailure(probeKey);
+      if (knownFailure != null) {
+        exceptionRef.set(knownFailure);
+        return;
+      }
       myClient.post(
-        url, authenticationCredentials(), defaultHeaders(),
+        url, credentials, defaultHeaders(),
         entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(),
         response -> {
         },
@@ -243,12 +433,104 @@ public abstract class GitHubApiImpl implements GitHubApi {
           PublisherException ex = new PublisherException(getErrorMessage(response, additionalComment));
           if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
             ex.setShouldRetry();
+          } else if (isPermissionFailure(response)) {
+            myPermissionProbes.failed(probeKey, ex.getMessage());
           }
           exceptionRef.set(ex);
         },
         e -> exceptionRef.set(e));
     });
 
+    final Exception ex;
+    if ((ex = exceptionRef.get()) != null) {
+      myPublishedPayloads.failed(url, context);
+      if (ex instanceof PublisherException) {
+        throw ((PublisherException)ex).setRequest(url, entity);
+      } else {
+        PublisherException e = new PublisherException(ex.getMessage(), ex);
+        RetryResponseProcessor.processNetworkException(ex, e);
+        throw e.setRequest(url, entity);
+      }
+    }
+    myPublishedPayloads.sent(url, context, entity);
+  }
+
+  @Override
+  public long createCheckRun(@NotNull final String repoOwner,
+                             @NotNull final String repoName,
+                             @NotNull final CheckRun checkRun) throws IOException, PublisherException {
+    final CheckRun created = sendCheckRun(HttpMethod.POST, myUrls.getCheckRunsUrl(repoOwner, repoName), myGson.toJson(checkRun));
+    if (created.id == null) {
+      throw new PublisherException("GitHub has not returned id of the created check run");
+    }
+    return created.id;
+  }
+
+  @Override
+  public void updateCheckRun(@NotNull final String repoOwner,
+                             @NotNull final String repoName,
+                             final long checkRunId,
+                             @NotNull final CheckRun checkRun) throws IOException, PublisherException {
+    sendCheckRun(HttpMethod.PATCH, myUrls.getCheckRunUrl(repoOwner, repoName, checkRunId), myGson.toJson(checkRun));
+  }
+
+  @NotNull
+  @Override
+  public CommitCheckRuns readCheckRuns(@NotNull final String repoOwner,
+                                       @NotNull final String repoName,
+                                       @NotNull final String hash,
+                                       final int perPage,
+                                       final int page) throws IOException, PublisherException {
+    return processResponse(myUrls.getCommitCheckRunsUrl(repoOwner, repoName, hash, perPage, page), CommitCheckRuns.class, false);
+  }
+
+  @Override
+  public boolean isInstallationToken() {
+    return false;
+  }
+
+  @NotNull
+  private CheckRun sendCheckRun(@NotNull final HttpMethod method, @NotNull final String url, @NotNull final String entity) throws PublisherException {
+    LoggerUtil.logRequest(Constants.GITHUB_PUBLISHER_ID, method, url, entity);
+
+    final AtomicReference<CheckRun> resultRef = new AtomicReference<>();
+    final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
+    final HTTPRequestBuilder.ResponseConsumer success = response -> {
+      final String json = response.getBodyAsString();
+      try {
+        final CheckRun result = StringUtil.isEmptyOrSpaces(json) ? null : myGson.fromJson(json, CheckRun.class);
+        if (result == null) {
+          logFailedResponse(method, url, entity, response);
+          exceptionRef.set(new IOException(getErrorMessage(response, "Empty response.")));
+        } else {
+          resultRef.set(result);
+        }
+      } catch (JsonSyntaxException e) {
+        exceptionRef.set(new PublisherException("GitHub publisher can not parse malformed json", e));
+      }
+    };
+    final HTTPRequestBuilder.ResponseConsumer error = response -> {
+      String responseBody = logFailedResponse(method, url, entity, response);
+      String githubError = parseErrorsFromResponse(responseBody);
+      String additionalComment = githubError != null ? githubError : response.getStatusCode() == HttpStatus.SC_NOT_FOUND ? MSG_NOT_FOUND : MSG_PROXY_OR_PERMISSIONS;
+      PublisherException ex = new PublisherException(getErrorMessage(response, additionalComment));
+      if (RetryResponseProcessor.shouldRetryOnCode(response.getStatusCode())) {
+        ex.setShouldRetry();
+      }
+      exceptionRef.set(ex);
+    };
+    IOGuard.allowNetworkCall(() -> {
+      if (method == HttpMethod.PATCH) {
+        myClient.patch(url, authenticationCredentials(), defaultHeaders(),
+                       entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(),
+                       success, error, exceptionRef::set);
+      } else {
+        myClient.post(url, authenticationCredentials(), defaultHeaders(),
+                      entity, ContentType.APPLICATION_JSON.getMimeType(), ContentType.APPLICATION_JSON.getCharset(),
+                      success, error, exceptionRef::set);
+      }
+    });
+
     final Exception ex;
     if ((ex = exceptionRef.get()) != null) {
       if (ex instanceof PublisherException) {
@@ -259,6 +541,7 @@ public abstract class GitHubApiImpl implements GitHubApi {
         throw e;
       }
     }
+    return resultRef.get();
   }
 
   public boolean isPullRequestMergeBranch(@NotNull String branchName) {
@@ -312,36 +595,54 @@ public abstract class GitHubApiImpl implements GitHubApi {
     final AtomicReference<Exception> exceptionRef = new AtomicReference<>();
     final AtomicReference<T> resultRef = new AtomicReference<>();
     IOGuard.allowNetworkCall(() -> {
-      myClient.get(uri, authenticationCredentials(), defaultHeaders(),
-                   success -> {
-                     final String json = success.getBodyAsString();
-                     if (StringUtil.isEmptyOrSpaces(json)) {
-                       logFailedResponse(HttpMethod.GET, uri, null, success, logErrorsDebugOnly);
-                       exceptionRef.set(new IOException(getErrorMessage(success, "Empty response.")));
-                     } else {
-                       LOG.debug("Parsing json for " + uri + ": " + json);
-                       T result = myGson.fromJson(json, clazz);
-                       if (null == result) {
-                         exceptionRef.set(new PublisherException("GitHub publisher fails to parse a response"));
+      final SimpleCredentials credentials = authenticationCredentials();
+      final String cacheKey = ETagCache.getKey(uri, credentials);
+      final AtomicBoolean notModifiedUnknown = new AtomicBoolean();
+      for (boolean conditional = true; ; conditional = false) {
+        final Map<String, String> headers = defaultHeaders();
+        if (conditional) myETagCache.addConditionalHeader(cacheKey, headers);
+        notModifiedUnknown.set(false);
+        myClient.get(uri, credentials, headers,
+                     success -> {
+                       if (success.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                         notModifiedUnknown.set(!serveNotModified(cacheKey, clazz, resultRef));
+                         return;
+                       }
+                       final String json = success.getBodyAsString();
+                       if (StringUtil.isEmptyOrSpaces(json)) {
+                         logFailedResponse(HttpMethod.GET, uri, null, success, logErrorsDebugOnly);
+                         exceptionRef.set(new IOException(getErrorMessage(success, "Empty response.")));
                        } else {
-                         resultRef.set(result);
+                         LOG.debug("Parsing json for " + uri + ": " + json);
+                         T result = myGson.fromJson(json, clazz);
+                         if (null == result) {
+                           exceptionRef.set(new PublisherException("GitHub publisher fails to parse a response"));
+                         } else {
+                           resultRef.set(result);
+                           myETagCache.put(cacheKey, success.getHeader(HttpHeaders.ETAG), result);
+                         }
                        }
+                     },
+                     error -> {
+                       if (error.getStatusCode() == HttpStatus.SC_NOT_MODIFIED) {
+                         notModifiedUnknown.set(!serveNotModified(cacheKey, clazz, resultRef));
+                         return;
+                       }
+                       String responseBody = logFailedResponse(HttpMethod.GET, uri, null, error, logErrorsDebugOnly);
+                       String githubError = parseErrorsFromResponse(responseBody);
+                       String additionalComment = githubError != null ? githubError :  error.getStatusCode() == HttpStatus.SC_NOT_FOUND ? MSG_NOT_FOUND : MSG_PROXY_OR_PERMISSIONS;
+                       PublisherException ex = new PublisherException(getErrorMessage(error, additionalComment));
+                       if (RetryResponseProcessor.shouldRetryOnCode(error.getStatusCode())) {
+                         ex.setShouldRetry();
+                       }
+                       exceptionRef.set(ex);
+                     },
+                     e -> {
+                       exceptionRef.set(e);
                      }
-                   },
-                   error -> {
-                     String responseBody = logFailedResponse(HttpMethod.GET, uri, null, error, logErrorsDebugOnly);
-                     String githubError = parseErrorsFromResponse(responseBody);
-                     String additionalComment = githubError != null ? githubError :  error.getStatusCode() == HttpStatus.SC_NOT_FOUND ? MSG_NOT_FOUND : MSG_PROXY_OR_PERMISSIONS;
-                     PublisherException ex = new PublisherException(getErrorMessage(error, additionalComment));
-                     if (RetryResponseProcessor.shouldRetryOnCode(error.getStatusCode())) {
-                       ex.setShouldRetry();
-                     }
-                     exceptionRef.set(ex);
-                   },
-                   e -> {
-                     exceptionRef.set(e);
-                   }
-      );
+        );
+        if (!notModifiedUnknown.get() || !shouldRepeatUnconditionally(uri, conditional, exceptionRef)) break;
+      }
     });
 
     final Exception ex;
@@ -358,6 +659,30 @@ public abstract class GitHubApiImpl implements GitHubApi {
     return resultRef.get();
   }
 
+  /**
+   * Serves the previously received response on {@code 304 Not Modified}
+   * @return false if the previous response is no longer known
+   */
+  private <T> boolean serveNotModified(@NotNull String cacheKey, @NotNull Class<T> clazz, @NotNull AtomicReference<T> resultRef) {
+    final T cached = myETagCache.getNotModified(cacheKey, clazz);
+    if (cached == null) return false;
+    resultRef.set(cached);
+    return true;
+  }
+
+  /**
+   * Handles {@code 304 Not Modified} received when the previous response is no longer known, e.g. it has been evicted from the cache
+   * @return true if the request should be repeated without the conditional header
+   */
+  private static boolean shouldRepeatUnconditionally(@NotNull String uri, boolean conditional, @NotNull AtomicReference<Exception> exceptionRef) {
+    if (conditional) {
+      LOG.debug("GitHub responded with Not Modified to " + uri + ", but the previous response is no longer known. Repeating the request without the conditional header");
+      return true;
+    }
+    exceptionRef.set(new PublisherException("GitHub responded with Not Modified, but no previous response is known").setShouldRetry());
+    return false;
+  }
+
   @Nullable
   private String parseErrorsFromResponse(@Nullable String responseBody) {
     if (responseBody == null) {
@@ -405,6 +730,10 @@ public abstract class GitHubApiImpl implements GitHubApi {
                                  @Nullable String requestEntity,
                                  @NotNull HTTPRequestBuilder.Response response,
                                  boolean debugOnly) throws IOException {
+    if (isAuthenticationFailure(response)) {
+      myAuthenticationFailed = true;
+      onAuthenticationFailure();
+    }
     String responseBody = response.getBodyAsStringLimit(256 * 1024); //limit buffer with 256K
     String responseText = responseBody;
     if (responseText == null) {
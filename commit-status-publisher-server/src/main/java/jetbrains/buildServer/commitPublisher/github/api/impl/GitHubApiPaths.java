@@ -38,6 +38,15 @@ public class GitHubApiPaths {
     return myUrl;
   }
 
+  @NotNull
+  public String getGraphQLUrl() {
+    // GitHub Enterprise: /api/v3 -> /api/graphql
+    if (myUrl.endsWith("/api/v3")) {
+      return myUrl.substring(0, myUrl.length() - "/v3".length()) + "/graphql";
+    }
+    return myUrl + "/graphql";
+  }
+
   @NotNull
   public String getRepoInfo(@NotNull final String repoOwner,
                             @NotNull final String repoName) {
@@ -78,6 +87,31 @@ public class GitHubApiPaths {
     return myUrl + "/repos/" + ownerName + "/" + repoName + "/statuses/" + hash;
   }
 
+  @NotNull
+  public String getCheckRunsUrl(@NotNull final String ownerName,
+                                @NotNull final String repoName) {
+    // /repos/:owner/:repo/check-runs
+    return myUrl + "/repos/" + ownerName + "/" + repoName + "/check-runs";
+  }
+
+  @NotNull
+  public String getCheckRunUrl(@NotNull final String ownerName,
+                               @NotNull final String repoName,
+                               long checkRunId) {
+    // /repos/:owner/:repo/check-runs/:check_run_id
+    return getCheckRunsUrl(ownerName, repoName) + "/" + checkRunId;
+  }
+
+  @NotNull
+  public String getCommitCheckRunsUrl(@NotNull final String ownerName,
+                                      @NotNull final String repoName,
+                                      @NotNull final String hash,
+                                      final int perPage,
+                                      final int page) {
+    // /repos/:owner/:repo/commits/:ref/check-runs
+    return String.format("%s/repos/%s/%s/commits/%s/check-runs?per_page=%d&page=%d", myUrl, ownerName, repoName, hash, perPage, page);
+  }
+
   @NotNull
   public String getPullRequestInfo(@NotNull final String repoOwner,
                                    @NotNull final String repoName,
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.commitPublisher.PublishingThrottledException;
+import jetbrains.buildServer.http.SimpleCredentials;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.util.HTTPRequestBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Registry of GitHub App installations the publisher talks to.
+ * <p>
+ * Installation tokens of a GitHub App share the rate limit of the installation, i.e. of the app and the account owning the repositories.
+ * Tokens resolved from the token storage are registered here with the app they were issued by, and every request made with such a token
+ * is accounted to the installation of the repository owner: requests to one installation are limited in number, served fairly
+ * across its repositories, and are not made at all while the remaining quota of the installation is nearly exhausted.
+ * The latter is reported to {@link AdaptiveConcurrencyLimiter}, so that requests to the host are slowed down as well.
+ * </p>
+ */
+public class GitHubInstallations {
+  static final String ENABLED_PROPERTY = "teamcity.commitStatusPublisher.github.installations.enabled";
+  static final String MAX_CONCURRENT_REQUESTS_PROPERTY = "teamcity.commitStatusPublisher.github.installations.maxConcurrentRequests";
+  static final String RESERVED_REQUESTS_PROPERTY = "teamcity.commitStatusPublisher.github.installations.reservedRequests";
+  static final String ACQUIRE_TIMEOUT_PROPERTY = "teamcity.commitStatusPublisher.github.installations.acquireTimeoutMs";
+  static final String QUOTA_EXHAUSTED_COUNTER = "github.installations.quotaExhausted";
+  private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 8;
+  private static final int DEFAULT_RESERVED_REQUESTS = 100;
+  private static final long DEFAULT_ACQUIRE_TIMEOUT_MS = 30_000;
+  private static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+  private static final String RESET_HEADER = "X-RateLimit-Reset";
+  private static final Pattern REPOSITORY_PATH = Pattern.compile("/repos/([^/?#]+)/([^/?#]+)");
+
+  private static final Permit NO_LIMIT = response -> {};
+
+  private final AdaptiveConcurrencyLimiter myConcurrencyLimiter;
+  private final PublishingMetrics myMetrics;
+  // app of the token by the hash of the token
+  private final Cache<String, String> myTokenApps = CacheBuilder.newBuilder()
+                                                                .maximumSize(10_000)
+                                                                .expireAfterAccess(1, TimeUnit.DAYS)
+                                                                .build();
+  private final ConcurrentMap<String, Installation> myInstallations = new ConcurrentHashMap<>();
+
+  interface Permit {
+    /**
+     * @param response response received with the permit or null if the request has failed
+     */
+    void release(@Nullable HTTPRequestBuilder.Response response);
+  }
+
+  public GitHubInstallations(@NotNull AdaptiveConcurrencyLimiter concurrencyLimiter, @NotNull PublishingMetrics metrics) {
+    myConcurrencyLimiter = concurrencyLimiter;
+    myMetrics = metrics;
+    myMetrics.registerGauges("github.installations.remaining", this::getRemaining);
+  }
+
+  static boolean isEnabled() {
+    return TeamCityProperties.getBoolean(ENABLED_PROPERTY);
+  }
+
+  /**
+   * Registers an installation token
+   * @param accessToken token
+   * @param appKey identifies the GitHub App which has issued the token, e.g. server url and connection
+   */
+  void registerToken(@NotNull String accessToken, @NotNull String appKey) {
+    if (!isEnabled()) return;
+    myTokenApps.put(hash(accessToken), appKey);
+  }
+
+  /**
+   * Waits until a request to the url with the credentials can be made
+   * @return permit which must be released once the request is completed
+   * @throws PublisherException (retryable) if the quota of the installation is nearly exhausted,
+   * {@link PublishingThrottledException} if the request can't be made in time
+   */
+  @NotNull
+  Permit acquire(@NotNull String url, @NotNull SimpleCredentials credentials) throws PublisherException {
+    if (!isEnabled()) return NO_LIMIT;
+    final String password = credentials.getPassword();
+    final String app = password != null ? myTokenApps.getIfPresent(hash(password)) : null;
+    if (app == null) return NO_LIMIT;
+    final Matcher matcher = REPOSITORY_PATH.matcher(url);
+    if (!matcher.find()) return NO_LIMIT;
+
+    final String installationKey = app + "|" + matcher.group(1);
+    final String repository = matcher.group(1) + "/" + matcher.group(2);
+    final Installation installation = myInstallations.computeIfAbsent(installationKey, k -> new Installation());
+    if (installation.isQuotaExhausted()) {
+      myMetrics.increment(QUOTA_EXHAUSTED_COUNTER);
+      myConcurrencyLimiter.reportOverload(url);
+      throw new PublisherException(String.format("Rate limit of GitHub App installation for \"%s\" is nearly exhausted, the request is postponed till %s",
+                                                 matcher.group(1), new Date(installation.getResetTime()))).setShouldRetry();
+    }
+    try {
+      if (!installation.acquire(repository, TeamCityProperties.getLong(ACQUIRE_TIMEOUT_PROPERTY, DEFAULT_ACQUIRE_TIMEOUT_MS))) {
+        throw new PublishingThrottledException(String.format("Too many concurrent requests to GitHub App installation for \"%s\"", matcher.group(1)));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PublisherException("Interrupted while waiting for a request to GitHub", e);
+    }
+    return response -> {
+      installation.release(response);
+      if (response != null && installation.isQuotaExhausted()) {
+        myConcurrencyLimiter.reportOverload(url);
+      }
+    };
+  }
+
+  @NotNull
+  Map<String, Integer> getRemaining() {
+    final Map<String, Integer> result = new TreeMap<>();
+    myInstallations.forEach((key, installation) -> {
+      final int remaining = installation.getRemaining();
+      if (remaining >= 0) result.put(key, remaining);
+    });
+    return result;
+  }
+
+  @NotNull
+  private static String hash(@NotNull String token) {
+    return Hashing.sha256().hashString(token, StandardCharsets.UTF_8).toString();
+  }
+
+  static class Installation {
+    private int myInFlight = 0;
+    private int myRemaining = -1;
+    private long myResetTime = 0;
+    // repositories with waiting requests in the order of their turns and the number of the waiting requests
+    private final Deque<String> myTurns = new ArrayDeque<>();
+    private final Map<String, Integer> myWaiting = new HashMap<>();
+
+    synchronized boolean acquire(@NotNull String repository, long timeoutMs) throws InterruptedException {
+      final int limit = Math.max(1, TeamCityProperties.getInteger(MAX_CONCURRENT_REQUESTS_PROPERTY, DEFAULT_MAX_CONCURRENT_REQUESTS));
+      if (myInFlight < limit && myTurns.isEmpty()) {
+        take();
+        return true;
+      }
+
+      if (myWaiting.merge(repository, 1, Integer::sum) == 1) {
+        myTurns.add(repository);
+      }
+      final long deadline = System.currentTimeMillis() + timeoutMs;
+      boolean served = false;
+      try {
+        while (myInFlight >= limit || !repository.equals(myTurns.peek())) {
+          final long timeToWait = deadline - System.currentTimeMillis();
+          if (timeToWait <= 0) return false;
+          wait(timeToWait);
+        }
+        take();
+        served = true;
+        return true;
+      } finally {
+        leaveQueue(repository, served);
+      }
+    }
+
+    synchronized void release(@Nullable HTTPRequestBuilder.Response response) {
+      myInFlight--;
+      if (response != null) {
+        update(response.getHeader(REMAINING_HEADER), response.getHeader(RESET_HEADER));
+      }
+      notifyAll();
+    }
+
+    synchronized boolean isQuotaExhausted() {
+      if (myRemaining < 0) return false;
+      if (System.currentTimeMillis() >= myResetTime) {
+        // the quota has been restored, the next response tells the actual one
+        myRemaining = -1;
+        return false;
+      }
+      return myRemaining <= TeamCityProperties.getInteger(RESERVED_REQUESTS_PROPERTY, DEFAULT_RESERVED_REQUESTS);
+    }
+
+    synchronized int getRemaining() {
+      return myRemaining;
+    }
+
+    synchronized long getResetTime() {
+      return myResetTime;
+    }
+
+    private void take() {
+      myInFlight++;
+      // requests made concurrently with this one are accounted before their responses tell the actual quota
+      if (myRemaining > 0) myRemaining--;
+    }
+
+    private void leaveQueue(@NotNull String repository, boolean served) {
+      final int left = myWaiting.merge(repository, -1, Integer::sum);
+      if (left <= 0) {
+        myWaiting.remove(repository);
+        myTurns.remove(repository);
+      } else if (served) {
+        // the other repositories go first
+        myTurns.remove(repository);
+        myTurns.add(repository);
+      }
+      notifyAll();
+    }
+
+    private void update(@Nullable String remaining, @Nullable String reset) {
+      if (remaining == null || reset == null) return;
+      try {
+        myRemaining = Integer.parseInt(remaining.trim());
+        myResetTime = TimeUnit.SECONDS.toMillis(Long.parseLong(reset.trim()));
+      } catch (NumberFormatException ignored) {
+      }
+    }
+  }
+}
@@ -53,4 +53,16 @@ public interface HttpClientWrapper {
     @NotNull HTTPRequestBuilder.ResponseConsumer error,
     @NotNull Consumer<Exception> exception
   ) throws IOException;
+
+  void patch(
+    @NotNull String uri,
+    @NotNull SimpleCredentials simpleCredentials,
+    @NotNull Map<String, String> headers,
+    @NotNull String data,
+    @NotNull String mimeType,
+    @NotNull Charset charset,
+    @NotNull HTTPRequestBuilder.ResponseConsumer success,
+    @NotNull HTTPRequestBuilder.ResponseConsumer error,
+    @NotNull Consumer<Exception> exception
+  ) throws IOException;
 }
\ No newline at end of file
@@ -21,7 +21,12 @@ package jetbrains.buildServer.commitPublisher.github.api.impl;
 import java.net.URISyntaxException;
 import java.nio.charset.Charset;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
+import jetbrains.buildServer.commitPublisher.PublisherException;
 import jetbrains.buildServer.http.SimpleCredentials;
 import jetbrains.buildServer.serverSide.TeamCityProperties;
 import jetbrains.buildServer.util.HTTPRequestBuilder;
@@ -30,6 +35,8 @@ import jetbrains.buildServer.util.http.RedirectStrategy;
 import jetbrains.buildServer.util.ssl.SSLTrustStoreProvider;
 import org.jetbrains.annotations.NotNull;
 
+import static jetbrains.buildServer.commitPublisher.LoggerUtil.LOG;
+
 /**
  * Created by Eugene Petrenko (eugene.petrenko@gmail.com)
  * Date: 11.08.11 16:24
@@ -40,10 +47,20 @@ public class HttpClientWrapperImpl implements HttpClientWrapper {
 
   private final HTTPRequestBuilder.RequestHandler myRequestHandler;
   private final SSLTrustStoreProvider mySSLTrustStoreProvider;
+  private final AdaptiveConcurrencyLimiter myConcurrencyLimiter;
+  private final AdaptiveTimeouts myAdaptiveTimeouts;
+  private final GitHubInstallations myInstallations;
 
-  public HttpClientWrapperImpl(final HTTPRequestBuilder.RequestHandler requestHandler, final SSLTrustStoreProvider sslTrustStoreProvider) {
+  public HttpClientWrapperImpl(final HTTPRequestBuilder.RequestHandler requestHandler,
+                               final SSLTrustStoreProvider sslTrustStoreProvider,
+                               final AdaptiveConcurrencyLimiter concurrencyLimiter,
+                               final AdaptiveTimeouts adaptiveTimeouts,
+                               final GitHubInstallations installations) {
     myRequestHandler = requestHandler;
     mySSLTrustStoreProvider = sslTrustStoreProvider;
+    myConcurrencyLimiter = concurrencyLimiter;
+    myAdaptiveTimeouts = adaptiveTimeouts;
+    myInstallations = installations;
   }
 
   @Override
@@ -55,15 +72,25 @@ public class HttpClientWrapperImpl implements HttpClientWrapper {
     @NotNull final HTTPRequestBuilder.ResponseConsumer error,
     @NotNull final Consumer<Exception> exception
   ) {
-    try {
-      final HTTPRequestBuilder.Request request =
-        constructBuilder(uri, simpleCredentials, headers, success, error, exception)
-          .withMethod(HttpMethod.GET)
-          .build();
-      myRequestHandler.doRequest(request);
-    } catch (URISyntaxException e) {
-      exception.accept(e);
+    final int configuredTimeout = getConfiguredTimeout();
+    final int timeout = myAdaptiveTimeouts.getTimeout(uri, configuredTimeout);
+    if (timeout < configuredTimeout && AdaptiveTimeouts.isRetryOnTimeoutEnabled()) {
+      // GET is idempotent: when the adapted timeout turns out to be too short, try once more with the configured one
+      final AtomicReference<Exception> timeoutRef = new AtomicReference<>();
+      final Consumer<Exception> firstAttemptException = e -> {
+        if (AdaptiveTimeouts.isTimeout(e)) {
+          timeoutRef.set(e);
+        } else {
+          exception.accept(e);
+        }
+      };
+      doRequest(uri, timeout, success, error, firstAttemptException, builder -> builder.withMethod(HttpMethod.GET).withHeader(headers), simpleCredentials);
+      if (timeoutRef.get() == null) return;
+      LOG.debug("GET request to " + uri + " has timed out in " + timeout + " ms, retrying with timeout " + configuredTimeout + " ms");
+      doRequest(uri, configuredTimeout, success, error, exception, builder -> builder.withMethod(HttpMethod.GET).withHeader(headers), simpleCredentials);
+      return;
     }
+    doRequest(uri, timeout, success, error, exception, builder -> builder.withMethod(HttpMethod.GET).withHeader(headers), simpleCredentials);
   }
 
   @Override
@@ -78,35 +105,105 @@ public class HttpClientWrapperImpl implements HttpClientWrapper {
     @NotNull final HTTPRequestBuilder.ResponseConsumer error,
     @NotNull final Consumer<Exception> exception
   ) {
+    final int timeout = myAdaptiveTimeouts.getTimeout(uri, getConfiguredTimeout());
+    doRequest(uri, timeout, success, error, exception,
+              builder -> builder.withMethod(HttpMethod.POST).withHeader(headers).withPostStringEntity(data, mimeType, charset), simpleCredentials);
+  }
+
+  @Override
+  public void patch(
+    @NotNull final String uri,
+    @NotNull final SimpleCredentials simpleCredentials,
+    @NotNull final Map<String, String> headers,
+    @NotNull final String data,
+    @NotNull final String mimeType,
+    @NotNull final Charset charset,
+    @NotNull final HTTPRequestBuilder.ResponseConsumer success,
+    @NotNull final HTTPRequestBuilder.ResponseConsumer error,
+    @NotNull final Consumer<Exception> exception
+  ) {
+    final int timeout = myAdaptiveTimeouts.getTimeout(uri, getConfiguredTimeout());
+    doRequest(uri, timeout, success, error, exception,
+              builder -> builder.withMethod(HttpMethod.PATCH).withHeader(headers).withPostStringEntity(data, mimeType, charset), simpleCredentials);
+  }
+
+  private void doRequest(
+    @NotNull final String uri,
+    final int timeout,
+    @NotNull final HTTPRequestBuilder.ResponseConsumer success,
+    @NotNull final HTTPRequestBuilder.ResponseConsumer error,
+    @NotNull final Consumer<Exception> exception,
+    @NotNull final Function<HTTPRequestBuilder, HTTPRequestBuilder> customizer,
+    @NotNull final SimpleCredentials simpleCredentials
+  ) {
+    final GitHubInstallations.Permit installationPermit;
+    final AdaptiveConcurrencyLimiter.Permit permit;
     try {
-      final HTTPRequestBuilder.Request request =
-        constructBuilder(uri, simpleCredentials, headers, success, error, exception)
-          .withMethod(HttpMethod.POST)
-          .withPostStringEntity(data, mimeType, charset)
-          .build();
+      installationPermit = myInstallations.acquire(uri, simpleCredentials);
+    } catch (PublisherException e) {
+      exception.accept(e);
+      return;
+    }
+    try {
+      permit = myConcurrencyLimiter.acquire(uri);
+    } catch (PublisherException e) {
+      installationPermit.release(null);
+      exception.accept(e);
+      return;
+    }
+    final AtomicReference<AdaptiveConcurrencyLimiter.Outcome> outcome = new AtomicReference<>(AdaptiveConcurrencyLimiter.Outcome.IGNORED);
+    final AtomicReference<HTTPRequestBuilder.Response> received = new AtomicReference<>();
+    final long startTime = System.currentTimeMillis();
+    final HTTPRequestBuilder.ResponseConsumer trackedSuccess = response -> {
+      myAdaptiveTimeouts.recordLatency(uri, System.currentTimeMillis() - startTime);
+      outcome.set(AdaptiveConcurrencyLimiter.getOutcome(response.getStatusCode()));
+      received.set(response);
+      success.consume(response);
+    };
+    final HTTPRequestBuilder.ResponseConsumer trackedError = response -> {
+      myAdaptiveTimeouts.recordLatency(uri, System.currentTimeMillis() - startTime);
+      outcome.set(AdaptiveConcurrencyLimiter.getOutcome(response.getStatusCode()));
+      received.set(response);
+      error.consume(response);
+    };
+    final Consumer<Exception> trackedException = e -> {
+      if (AdaptiveTimeouts.isTimeout(e)) {
+        myAdaptiveTimeouts.recordLatency(uri, timeout);
+      }
+      outcome.set(AdaptiveConcurrencyLimiter.getOutcome(e));
+      exception.accept(e);
+    };
+    try {
+      final HTTPRequestBuilder.Request request = customizer.apply(constructBuilder(uri, timeout, simpleCredentials, trackedSuccess, trackedError, trackedException)).build();
       myRequestHandler.doRequest(request);
     } catch (URISyntaxException e) {
       exception.accept(e);
+    } finally {
+      permit.release(outcome.get());
+      installationPermit.release(received.get());
     }
   }
 
+  private static int getConfiguredTimeout() {
+    return TeamCityProperties.getInteger("teamcity.github.http.timeout", 10 * 1000);
+  }
+
   private HTTPRequestBuilder constructBuilder(
     @NotNull final String uri,
+    final int timeout,
     @NotNull final SimpleCredentials simpleCredentials,
-    @NotNull final Map<String, String> headers,
     @NotNull final HTTPRequestBuilder.ResponseConsumer success,
     @NotNull final HTTPRequestBuilder.ResponseConsumer error,
     @NotNull final Consumer<Exception> exception
   ) throws URISyntaxException {
     return new HTTPRequestBuilder(uri)
-      .withTimeout(TeamCityProperties.getInteger("teamcity.github.http.timeout", 10 * 1000))
+      .withTimeout(timeout)
       .withAuthenticateHeader(simpleCredentials)
       .withRedirectStrategy(RedirectStrategy.LAX)
       .withTrustStore(mySSLTrustStoreProvider.getTrustStore())
       .allowNonSecureConnection(true)
       .withEncodingInterceptor(true)
       .withRetryCount(RETRY_COUNT)
-      .withHeader(headers)
       .onException(exception)
       .onErrorResponse(error)
       .onSuccess(success);
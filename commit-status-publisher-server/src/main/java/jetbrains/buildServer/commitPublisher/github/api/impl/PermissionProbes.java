@@ -0,0 +1,102 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.http.SimpleCredentials;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Remembers for a short while the permission errors GitHub has responded with on publishing. A misconfigured token is then reported
+ * without a request to GitHub, instead of every publishing attempt receiving the same error.
+ * <p>
+ * Connection tests are not answered from here: they always reach GitHub, so that a fixed token is seen at once.
+ * </p>
+ */
+public class PermissionProbes {
+  static final String TTL_PROPERTY = "teamcity.commitStatusPublisher.github.permissionProbe.ttlMs";
+  static final String KNOWN_FAILURES_COUNTER = "github.permissionProbe.knownFailures";
+  private static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(1);
+  private static final int MAX_SIZE = 10_000;
+
+  private final Cache<String, Result> myResults = CacheBuilder.newBuilder()
+                                                              .maximumSize(MAX_SIZE)
+                                                              .expireAfterWrite(1, TimeUnit.HOURS)
+                                                              .build();
+  private final PublishingMetrics myMetrics;
+
+  public PermissionProbes(@NotNull PublishingMetrics metrics) {
+    myMetrics = metrics;
+  }
+
+  /**
+   * @param repoInfoUrl url of the repository
+   * @return key of the repository and the credentials, the credentials are hashed
+   */
+  @NotNull
+  static String getKey(@NotNull String repoInfoUrl, @NotNull SimpleCredentials credentials) {
+    return ETagCache.getKey(repoInfoUrl, credentials);
+  }
+
+  /**
+   * @return failure remembered for the key or null if there is none
+   */
+  @Nullable
+  PublisherException getKnownFailure(@NotNull String key) {
+    final Result known = getResult(key);
+    return known != null ? knownFailure(known.myFailure) : null;
+  }
+
+  void failed(@NotNull String key, @NotNull String failure) {
+    final long ttl = TeamCityProperties.getLong(TTL_PROPERTY, DEFAULT_TTL_MS);
+    if (ttl <= 0) return;
+    myResults.put(key, new Result(failure, System.currentTimeMillis() + ttl));
+  }
+
+  @Nullable
+  private Result getResult(@NotNull String key) {
+    final Result result = myResults.getIfPresent(key);
+    if (result == null) return null;
+    if (System.currentTimeMillis() >= result.myValidUntil) {
+      myResults.invalidate(key);
+      return null;
+    }
+    return result;
+  }
+
+  @NotNull
+  private PublisherException knownFailure(@NotNull String failure) {
+    myMetrics.increment(KNOWN_FAILURES_COUNTER);
+    return new PublisherException(failure);
+  }
+
+  private static class Result {
+    private final String myFailure;
+    private final long myValidUntil;
+
+    private Result(@NotNull String failure, long validUntil) {
+      myFailure = failure;
+      myValidUntil = validUntil;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import jetbrains.buildServer.serverSide.TeamCityProperties;
+import jetbrains.buildServer.serverSide.oauth.OAuthToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Keeps a token resolved from the token storage for a while, but not longer than till shortly before the token expires,
+ * so that the storage is not queried (and the token is not refreshed) on every request.
+ */
+class StoredTokenHolder {
+  static final String TTL_PROPERTY = "teamcity.commitStatusPublisher.github.storedTokenCache.ttlMs";
+  static final String EXPIRATION_MARGIN_PROPERTY = "teamcity.commitStatusPublisher.github.storedTokenCache.expirationMarginMs";
+  private static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(5);
+  private static final long DEFAULT_EXPIRATION_MARGIN_MS = TimeUnit.MINUTES.toMillis(1);
+
+  private final Supplier<OAuthToken> myLoader;
+  private volatile CachedToken myCachedToken;
+
+  StoredTokenHolder(@NotNull Supplier<OAuthToken> loader) {
+    myLoader = loader;
+  }
+
+  @Nullable
+  OAuthToken getToken() {
+    final long ttl = TeamCityProperties.getLong(TTL_PROPERTY, DEFAULT_TTL_MS);
+    if (ttl <= 0) return myLoader.get();
+
+    final long now = System.currentTimeMillis();
+    final CachedToken cached = myCachedToken;
+    if (cached != null && now < cached.myValidUntil) return cached.myToken;
+
+    final OAuthToken token = myLoader.get();
+    if (token == null) {
+      myCachedToken = null;
+      return null;
+    }
+    long validUntil = now + ttl;
+    if (token.getExpiresIn() > 0) {
+      final long expiresAt = token.getCreateDate() + TimeUnit.SECONDS.toMillis(token.getExpiresIn());
+      validUntil = Math.min(validUntil, expiresAt - TeamCityProperties.getLong(EXPIRATION_MARGIN_PROPERTY, DEFAULT_EXPIRATION_MARGIN_MS));
+    }
+    myCachedToken = new CachedToken(token, validUntil);
+    return token;
+  }
+
+  /**
+   * Forgets the cached token, e.g. when GitHub has rejected it, so that the next request loads the token from the storage again
+   */
+  void invalidate() {
+    myCachedToken = null;
+  }
+
+  private static class CachedToken {
+    private final OAuthToken myToken;
+    private final long myValidUntil;
+
+    private CachedToken(@NotNull OAuthToken token, long validUntil) {
+      myToken = token;
+      myValidUntil = validUntil;
+    }
+  }
+}
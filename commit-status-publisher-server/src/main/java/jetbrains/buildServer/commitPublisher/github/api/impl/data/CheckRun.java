@@ -0,0 +1,50 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl.data;
+
+import java.util.List;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Check run of the GitHub Checks API, fields left null are not sent
+ */
+@SuppressWarnings("UnusedDeclaration")
+public class CheckRun {
+  @Nullable public Long id;
+  @Nullable public String name;
+  @Nullable public String head_sha;
+  @Nullable public String status;
+  @Nullable public String conclusion;
+  @Nullable public String details_url;
+  @Nullable public String external_id;
+  @Nullable public Output output;
+
+  public static class Output {
+    @Nullable public String title;
+    @Nullable public String summary;
+    @Nullable public List<Annotation> annotations;
+  }
+
+  public static class Annotation {
+    @Nullable public String path;
+    public int start_line;
+    public int end_line;
+    @Nullable public String annotation_level;
+    @Nullable public String title;
+    @Nullable public String message;
+  }
+}
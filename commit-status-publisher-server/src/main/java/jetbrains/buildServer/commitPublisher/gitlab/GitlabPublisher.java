@@ -36,7 +36,6 @@ import jetbrains.buildServer.pullRequests.PullRequestManager;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
 import jetbrains.buildServer.util.StringUtil;
-import jetbrains.buildServer.vcs.SVcsModification;
 import jetbrains.buildServer.vcs.VcsModificationHistoryEx;
 import jetbrains.buildServer.vcs.VcsRoot;
 import jetbrains.buildServer.vcs.VcsRootInstance;
@@ -59,25 +58,31 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
   private static final GitRepositoryParser VCS_URL_PARSER = new GitRepositoryParser();
 
   @NotNull private final CommitStatusesCache<GitLabReceiveCommitStatus> myStatusesCache;
+  @NotNull private final PullRequestHeadsCache<GitLabMergeRequest> myMergeRequestsCache;
   @NotNull private final VcsModificationHistoryEx myVcsModificationHistory;
+  @NotNull private final VcsModificationsMemo myModificationsMemo;
   @Nullable private final PullRequestManager myPullRequestManager;
   @NotNull private final StatusPublisherBuildNameProvider myBuildNameProvider;
 
   private static final String USE_REF_WHEN_PUBLISHING_STATUS_ON_MERGE_COMMITS_INTERNAL_PROP = "teamcity.pullRequests.publishRefForMergeCommits";
 
-  GitlabPublisher(@NotNull CommitStatusPublisherSettings settings,
+  GitlabPublisher(@NotNull BasePublisherSettings settings,
                   @NotNull SBuildType buildType,
                   @NotNull String buildFeatureId,
                   @NotNull WebLinks links,
                   @NotNull Map<String, String> params,
                   @NotNull CommitStatusPublisherProblems problems,
                   @NotNull CommitStatusesCache<GitLabReceiveCommitStatus> statusesCache,
+                  @NotNull PullRequestHeadsCache<GitLabMergeRequest> mergeRequestsCache,
                   @NotNull VcsModificationHistoryEx vcsModificationHistory,
+                  @NotNull VcsModificationsMemo modificationsMemo,
                   @Nullable PullRequestManager pullRequestManager,
                   @NotNull StatusPublisherBuildNameProvider buildNameProvider) {
     super(settings, buildType, buildFeatureId, params, problems, links);
     myStatusesCache = statusesCache;
+    myMergeRequestsCache = mergeRequestsCache;
     myVcsModificationHistory = vcsModificationHistory;
+    myModificationsMemo = modificationsMemo;
     myPullRequestManager = pullRequestManager;
     myBuildNameProvider = buildNameProvider;
   }
@@ -406,7 +411,8 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
     }
 
     final String mergeRequestNumber = matcher.group(MERGE_REQUEST_GROUP_NO);
-    final GitLabMergeRequest mergeRequest = getMergeRequest(credentials, repository, mergeRequestNumber);
+    final GitLabMergeRequest mergeRequest = myMergeRequestsCache.get(repository.url(), mergeRequestNumber, revision,
+                                                                     () -> getMergeRequest(credentials, repository, mergeRequestNumber));
     if (mergeRequest == null) {
       return null;
     }
@@ -428,12 +434,11 @@ class GitlabPublisher extends HttpBasedCommitStatusPublisher<GitlabBuildStatus>
 
   @NotNull
   private Set<String> getParentRevisions(@NotNull VcsRootInstance root, @NotNull String revision) {
-    final SVcsModification modification = myVcsModificationHistory.findModificationByVersion(root, revision);
-    if (modification == null) {
+    final Collection<String> parentRevisions = myModificationsMemo.getParentRevisions(myVcsModificationHistory, root, revision);
+    if (parentRevisions == null) {
       LOG.warn("unable to find GitLab merge result revision " + revision + " in VCS root " + root + ", status publishing will be skipped");
       return Collections.emptySet();
     }
-    final Collection<String> parentRevisions = modification.getParentRevisions();
     if (parentRevisions.isEmpty()) {
       LOG.warn("no parent revisions found for revision " + revision + " in VCS root " + root + ", status publishing will be skipped");
     }
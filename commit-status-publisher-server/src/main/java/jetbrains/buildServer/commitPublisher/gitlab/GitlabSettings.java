@@ -28,6 +28,7 @@ import java.util.regex.Pattern;
 import jetbrains.buildServer.ServiceLocator;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabMergeRequest;
 import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabReceiveCommitStatus;
 import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabRepoInfo;
 import jetbrains.buildServer.commitPublisher.gitlab.data.GitLabUserInfo;
@@ -76,7 +77,9 @@ public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatu
   }};
 
   @NotNull private final CommitStatusesCache<GitLabReceiveCommitStatus> myStatusesCache;
+  @NotNull private final PullRequestHeadsCache<GitLabMergeRequest> myMergeRequestsCache;
   @NotNull private final VcsModificationHistoryEx myVcsModificationHistory;
+  @NotNull private final VcsModificationsMemo myModificationsMemo;
   @NotNull private final ServiceLocator myServiceLocator;
   @NotNull private final GitLabBuildNameProvider myBuildNameProvider;
   @NotNull final ProjectManager myProjectManager;
@@ -85,7 +88,11 @@ public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatu
                         @NotNull WebLinks links,
                         @NotNull CommitStatusPublisherProblems problems,
                         @NotNull SSLTrustStoreProvider trustStoreProvider,
+                        @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                        @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                        @NotNull PublishedPayloads publishedPayloads,
                         @NotNull VcsModificationHistoryEx vcsModificationHistory,
+                        @NotNull VcsModificationsMemo modificationsMemo,
                         @NotNull OAuthConnectionsManager oAuthConnectionsManager,
                         @NotNull OAuthTokensStorage oAuthTokensStorage,
                         @NotNull UserModel userModel,
@@ -94,10 +101,12 @@ public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatu
                         @NotNull GitLabBuildNameProvider buildNameProvider,
                         @NotNull ProjectManager projectManager
   ) {
-    super(descriptor, links, problems, trustStoreProvider, oAuthTokensStorage, userModel, oAuthConnectionsManager, securityContext);
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads, oAuthTokensStorage, userModel, oAuthConnectionsManager, securityContext);
     myVcsModificationHistory = vcsModificationHistory;
+    myModificationsMemo = modificationsMemo;
     myProjectManager = projectManager;
     myStatusesCache = new CommitStatusesCache<>();
+    myMergeRequestsCache = new PullRequestHeadsCache<>();
     myServiceLocator = serviceLocator;
     myBuildNameProvider = buildNameProvider;
   }
@@ -123,7 +132,7 @@ public class GitlabSettings extends AuthTypeAwareSettings implements CommitStatu
   @NotNull
   @Override
   public GitlabPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
-    return new GitlabPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, myStatusesCache, myVcsModificationHistory,
+    return new GitlabPublisher(this, buildType, buildFeatureId, myLinks, params, myProblems, myStatusesCache, myMergeRequestsCache, myVcsModificationHistory, myModificationsMemo,
                                myServiceLocator.findSingletonService(PullRequestManager.class), myBuildNameProvider);
   }
 
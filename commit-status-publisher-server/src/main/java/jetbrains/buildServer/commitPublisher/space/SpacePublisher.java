@@ -49,7 +49,7 @@ public class SpacePublisher extends HttpBasedCommitStatusPublisher<SpaceBuildSta
   private final CommitStatusesCache<SpaceBuildStatusInfo> myStatusesCache;
   private final boolean myHasBuildFeature;
 
-  SpacePublisher(@NotNull CommitStatusPublisherSettings settings,
+  SpacePublisher(@NotNull BasePublisherSettings settings,
                  @NotNull SBuildType buildType,
                  @NotNull String buildFeatureId,
                  @NotNull WebLinks links,
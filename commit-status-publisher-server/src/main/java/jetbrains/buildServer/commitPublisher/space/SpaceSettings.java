@@ -83,10 +83,13 @@ public class SpaceSettings extends BasePublisherSettings implements CommitStatus
                        @NotNull WebLinks links,
                        @NotNull CommitStatusPublisherProblems problems,
                        @NotNull SSLTrustStoreProvider trustStoreProvider,
+                       @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                       @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                       @NotNull PublishedPayloads publishedPayloads,
                        @NotNull OAuthConnectionsManager oAuthConnectionsManager,
                        @NotNull SecurityContext securityContext,
                        @NotNull SpaceApplicationInformationManager applicationInformationManager) {
-    super(descriptor, links, problems, trustStoreProvider);
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads);
     myOAuthConnectionManager = oAuthConnectionsManager;
     mySecurityContext = securityContext;
     myApplicationInformationManager = applicationInformationManager;
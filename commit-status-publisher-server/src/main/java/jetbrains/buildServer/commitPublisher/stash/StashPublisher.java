@@ -55,7 +55,7 @@ class StashPublisher extends HttpBasedCommitStatusPublisher<StashBuildStatus> {
 
   private BitbucketEndpoint myBitbucketEndpoint = null;
 
-  StashPublisher(@NotNull CommitStatusPublisherSettings settings,
+  StashPublisher(@NotNull BasePublisherSettings settings,
                  @NotNull SBuildType buildType,
                  @NotNull String buildFeatureId,
                  @NotNull WebLinks links,
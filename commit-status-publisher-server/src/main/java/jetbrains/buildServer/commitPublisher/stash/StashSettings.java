@@ -85,6 +85,9 @@ public class StashSettings extends AuthTypeAwareSettings implements CommitStatus
                        @NotNull WebLinks links,
                        @NotNull CommitStatusPublisherProblems problems,
                        @NotNull SSLTrustStoreProvider trustStoreProvider,
+                       @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                       @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                       @NotNull PublishedPayloads publishedPayloads,
                        @NotNull OAuthConnectionsManager oAuthConnectionsManager,
                        @NotNull OAuthTokensStorage oAuthTokensStorage,
                        @NotNull UserModel userModel,
@@ -92,7 +95,7 @@ public class StashSettings extends AuthTypeAwareSettings implements CommitStatus
                        @NotNull ProjectManager projectManager,
                        @NotNull StashBuildNameProvider buildNameProvider
   ) {
-    super(descriptor, links, problems, trustStoreProvider, oAuthTokensStorage, userModel, oAuthConnectionsManager, securityContext);
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads, oAuthTokensStorage, userModel, oAuthConnectionsManager, securityContext);
     myProjectManager = projectManager;
     myStatusesCache = new CommitStatusesCache<>();
     myBuildNameProvider = buildNameProvider;
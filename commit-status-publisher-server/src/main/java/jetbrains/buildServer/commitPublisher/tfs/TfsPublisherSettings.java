@@ -79,10 +79,13 @@ public class TfsPublisherSettings extends AuthTypeAwareSettings implements Commi
                               @NotNull SecurityContext securityContext,
                               @NotNull UserModel userModel,
                               @NotNull SSLTrustStoreProvider trustStoreProvider,
+                              @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                              @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                              @NotNull PublishedPayloads publishedPayloads,
                               @NotNull TfsBuildNameProvider buildNameProvider,
                               @NotNull ProjectManager projectManager
   ) {
-    super(descriptor, links, problems, trustStoreProvider, oauthTokensStorage, userModel, oauthConnectionsManager, securityContext);
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads, oauthTokensStorage, userModel, oauthConnectionsManager, securityContext);
     myProjectManager = projectManager;
     myStatusesCache = new CommitStatusesCache<>();
     myBuildNameProvider = buildNameProvider;
@@ -69,7 +69,7 @@ class TfsStatusPublisher extends HttpBasedCommitStatusPublisher<TfsStatusPublish
   private final CommitStatusesCache<CommitStatus> myStatusesCache;
   private final StatusPublisherBuildNameProvider myBuildNameProvider;
 
-  TfsStatusPublisher(@NotNull final CommitStatusPublisherSettings settings,
+  TfsStatusPublisher(@NotNull final BasePublisherSettings settings,
                      @NotNull final SBuildType buildType,
                      @NotNull final String buildFeatureId,
                      @NotNull final WebLinks webLinks,
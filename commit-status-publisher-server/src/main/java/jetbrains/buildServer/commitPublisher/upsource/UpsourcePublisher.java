@@ -42,7 +42,7 @@ class UpsourcePublisher extends HttpBasedCommitStatusPublisher<UpsourceStatus> {
   private static final Pattern TEAMCITY_SVN_REVISION_PATTERN = Pattern.compile("([^\\|]+\\|)?([0-9]+)(_.+)?");
 
 
-  UpsourcePublisher(@NotNull CommitStatusPublisherSettings settings,
+  UpsourcePublisher(@NotNull BasePublisherSettings settings,
                     @NotNull SBuildType buildType, @NotNull String buildFeatureId,
                     @NotNull VcsModificationHistory vcsHistory,
                     @NotNull WebLinks links, @NotNull Map<String, String> params,
@@ -68,8 +68,11 @@ public class UpsourceSettings extends BasePublisherSettings implements CommitSta
                           @NotNull PluginDescriptor descriptor,
                           @NotNull WebLinks links,
                           @NotNull CommitStatusPublisherProblems problems,
-                          @NotNull SSLTrustStoreProvider trustStoreProvider) {
-    super(descriptor, links, problems, trustStoreProvider);
+                          @NotNull SSLTrustStoreProvider trustStoreProvider,
+                          @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                          @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                          @NotNull PublishedPayloads publishedPayloads) {
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads);
     myVcsHistory = vcsHistory;
   }
 
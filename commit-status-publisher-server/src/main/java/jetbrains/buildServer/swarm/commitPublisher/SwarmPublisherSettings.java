@@ -19,9 +19,12 @@ package jetbrains.buildServer.swarm.commitPublisher;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import java.util.*;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
 import jetbrains.buildServer.commitPublisher.BasePublisherSettings;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
 import jetbrains.buildServer.commitPublisher.PublisherException;
 import jetbrains.buildServer.serverSide.*;
 import jetbrains.buildServer.serverSide.impl.LogUtil;
@@ -67,8 +70,11 @@ public class SwarmPublisherSettings extends BasePublisherSettings {
                                 @NotNull WebLinks links,
                                 @NotNull CommitStatusPublisherProblems problems,
                                 @NotNull SSLTrustStoreProvider trustStoreProvider,
+                                @NotNull AdaptiveConcurrencyLimiter concurrencyLimiter,
+                                @NotNull AdaptiveTimeouts adaptiveTimeouts,
+                                @NotNull PublishedPayloads publishedPayloads,
                                 @NotNull SwarmClientManager clientManager) {
-    super(descriptor, links, problems, trustStoreProvider);
+    super(descriptor, links, problems, trustStoreProvider, concurrencyLimiter, adaptiveTimeouts, publishedPayloads);
     myClientManager = clientManager;
   }
 
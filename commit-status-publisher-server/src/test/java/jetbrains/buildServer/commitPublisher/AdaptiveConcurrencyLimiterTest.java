@@ -0,0 +1,95 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class AdaptiveConcurrencyLimiterTest extends BaseTestCase {
+
+  private static final String URL = "https://bitbucket.example.com/rest/build-status/1.0/commits/abc";
+
+  private AdaptiveConcurrencyLimiter myLimiter;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myLimiter = new AdaptiveConcurrencyLimiter(new PublishingMetrics());
+    setInternalProperty(AdaptiveConcurrencyLimiter.ENABLED_PROPERTY, "true");
+    setInternalProperty(AdaptiveConcurrencyLimiter.INITIAL_LIMIT_PROPERTY, "2");
+  }
+
+  public void requests_over_limit_are_throttled() throws Exception {
+    setInternalProperty(AdaptiveConcurrencyLimiter.ACQUIRE_TIMEOUT_PROPERTY, "0");
+    AdaptiveConcurrencyLimiter.Permit first = myLimiter.acquire(URL);
+    myLimiter.acquire(URL);
+
+    try {
+      myLimiter.acquire(URL);
+      fail("Limit must not be exceeded");
+    } catch (PublishingThrottledException e) {
+      then(e.shouldRetry()).isTrue();
+      then(PublishingThrottledException.isThrottled(new PublisherException("wrapped", e))).isTrue();
+    }
+
+    then(myLimiter.acquire("https://github.com/owner/repo")).isNotNull();
+    first.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    then(myLimiter.acquire(URL)).isNotNull();
+  }
+
+  public void request_over_limit_waits_for_released_permit() throws Exception {
+    setInternalProperty(AdaptiveConcurrencyLimiter.ACQUIRE_TIMEOUT_PROPERTY, "10000");
+    AdaptiveConcurrencyLimiter.Permit first = myLimiter.acquire(URL);
+    myLimiter.acquire(URL);
+
+    Thread releaser = new Thread(() -> {
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException ignored) {
+      }
+      first.release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    });
+    releaser.start();
+    then(myLimiter.acquire(URL)).isNotNull();
+    releaser.join();
+  }
+
+  public void limit_is_cut_on_overload_and_grows_on_success() throws Exception {
+    AdaptiveConcurrencyLimiter.Permit first = myLimiter.acquire(URL);
+    AdaptiveConcurrencyLimiter.Permit second = myLimiter.acquire(URL);
+    first.release(AdaptiveConcurrencyLimiter.getOutcome(503));
+    then(myLimiter.getLimits()).containsEntry("bitbucket.example.com", 1);
+    second.release(AdaptiveConcurrencyLimiter.getOutcome(404));
+    then(myLimiter.getLimits()).containsEntry("bitbucket.example.com", 1);
+
+    myLimiter.acquire(URL).release(AdaptiveConcurrencyLimiter.Outcome.SUCCESS);
+    then(myLimiter.getLimits()).containsEntry("bitbucket.example.com", 2);
+  }
+
+  public void disabled_limiter_does_not_limit() throws Exception {
+    setInternalProperty(AdaptiveConcurrencyLimiter.ENABLED_PROPERTY, "false");
+    for (int i = 0; i < 10; i++) {
+      myLimiter.acquire(URL);
+    }
+    then(myLimiter.getLimits()).isEmpty();
+  }
+}
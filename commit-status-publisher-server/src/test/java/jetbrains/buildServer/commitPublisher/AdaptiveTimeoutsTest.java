@@ -0,0 +1,78 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class AdaptiveTimeoutsTest extends BaseTestCase {
+
+  private static final String URL = "https://dev.azure.com/org/project/_apis/git/repositories/repo/commits/abc/statuses";
+
+  private AdaptiveTimeouts myTimeouts;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myTimeouts = new AdaptiveTimeouts(new PublishingMetrics());
+    setInternalProperty(AdaptiveTimeouts.ENABLED_PROPERTY, "true");
+    setInternalProperty(AdaptiveTimeouts.MIN_SAMPLES_PROPERTY, "10");
+    setInternalProperty(AdaptiveTimeouts.FLOOR_PROPERTY, "500");
+  }
+
+  public void configured_timeout_is_used_until_enough_latencies_are_known() {
+    for (int i = 0; i < 9; i++) {
+      myTimeouts.recordLatency(URL, 150);
+    }
+    then(myTimeouts.getTimeout(URL, 10000)).isEqualTo(10000);
+  }
+
+  public void timeout_is_derived_from_latencies() {
+    for (int i = 0; i < 99; i++) {
+      myTimeouts.recordLatency(URL, 150);
+    }
+    myTimeouts.recordLatency(URL, 400);
+    then(myTimeouts.getTimeout(URL, 10000)).isEqualTo(500);
+
+    for (int i = 0; i < 10; i++) {
+      myTimeouts.recordLatency(URL, 1000);
+    }
+    then(myTimeouts.getTimeout(URL, 10000)).isEqualTo(3000);
+    then(myTimeouts.getTimeout(URL, 2000)).isEqualTo(2000);
+    then(myTimeouts.getTimeout("https://github.com/owner/repo", 10000)).isEqualTo(10000);
+  }
+
+  public void disabled() {
+    setInternalProperty(AdaptiveTimeouts.ENABLED_PROPERTY, "false");
+    for (int i = 0; i < 100; i++) {
+      myTimeouts.recordLatency(URL, 150);
+    }
+    then(myTimeouts.getTimeout(URL, 10000)).isEqualTo(10000);
+  }
+
+  public void detect_timeout() {
+    then(AdaptiveTimeouts.isTimeout(new PublisherException("failed", new SocketTimeoutException("Read timed out")))).isTrue();
+    then(AdaptiveTimeouts.isTimeout(new IOException("Connection reset"))).isFalse();
+  }
+}
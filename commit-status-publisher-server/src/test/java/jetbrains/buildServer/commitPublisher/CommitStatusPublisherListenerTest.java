@@ -21,6 +21,7 @@ package jetbrains.buildServer.commitPublisher;
 import java.io.File;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import jetbrains.buildServer.BuildAgent;
@@ -84,7 +85,11 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
   private PublisherLogger myLogger;
   private SUser myUser;
   private Event myLastEventProcessed;
-  private final Consumer<Event> myEventProcessedCallback = event -> myLastEventProcessed = event;
+  private final List<Event> myEventsProcessed = new CopyOnWriteArrayList<>();
+  private final Consumer<Event> myEventProcessedCallback = event -> {
+    myLastEventProcessed = event;
+    myEventsProcessed.add(event);
+  };
   private Map<String, SVcsRoot> myRoots;
   private AtomicBoolean myCanStartBuilds = new AtomicBoolean(false);
   private FavoriteBuildProcessor myFavoriteBuildProcessor;
@@ -95,13 +100,14 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
   public void setUp() throws Exception {
     super.setUp();
     myLastEventProcessed = null;
+    myEventsProcessed.clear();
     myLogger = new PublisherLogger();
     myFavoriteBuildProcessor = Mockito.spy(new DefaultFavoriteBuildProcessor());
     myBuildOwnerSupplier = Mockito.spy(new PullRequestBuildOwnerSupplier(Mockito.mock(VcsRootUsernamesManager.class)));
     myListener = new CommitStatusPublisherListener(myFixture.getEventDispatcher(), new PublisherManager(myServer), myFixture.getHistory(), myBuildsManager, myFixture.getBuildPromotionManager(), myProblems,
                                                    myFixture.getServerResponsibility(), myFixture.getSingletonService(ExecutorServices.class),
                                                    myFixture.getSingletonService(ProjectManager.class), myFixture.getSingletonService(TeamCityNodes.class),
-                                                   myFixture.getSingletonService(UserModel.class), myMultiNodeTasks, myFavoriteBuildProcessor, myBuildOwnerSupplier);
+                                                   myFixture.getSingletonService(UserModel.class), myMultiNodeTasks, myFavoriteBuildProcessor, myBuildOwnerSupplier, new PublishingMetrics());
     myListener.setEventProcessedCallback(myEventProcessedCallback);
     myPublisher = new MockPublisher(myPublisherSettings, MockPublisherSettings.PUBLISHER_ID, myBuildType, myFeatureDescriptor.getId(),
                                     Collections.emptyMap(), myProblems, myLogger, myWebLinks);
@@ -165,6 +171,28 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
     then(myPublisher.getEventsReceived()).isEqualTo(Arrays.asList(Event.QUEUED, Event.STARTED));
   }
 
+  public void should_publish_started_after_grace_period() {
+    setInternalProperty(STARTED_GRACE_PERIOD_PROPERTY, "200");
+    prepareVcs();
+    addBuildToQueue();
+    waitForTasksToFinish(Event.QUEUED);
+    myFixture.flushQueueAndWait();
+    waitForTasksToFinish(Event.STARTED);
+    then(myPublisher.getEventsReceived()).isEqualTo(Arrays.asList(Event.QUEUED, Event.STARTED));
+  }
+
+  public void should_not_publish_started_for_build_finished_within_grace_period() {
+    setInternalProperty(STARTED_GRACE_PERIOD_PROPERTY, "1000");
+    prepareVcs();
+    addBuildToQueue();
+    waitForTasksToFinish(Event.QUEUED);
+    SRunningBuild runningBuild = myFixture.flushQueueAndWait();
+    myFixture.finishBuild(runningBuild, false);
+    waitForTasksToFinish(Event.FINISHED);
+    waitForTasksToFinish(Event.STARTED);
+    then(myPublisher.getEventsReceived()).isEqualTo(Arrays.asList(Event.QUEUED, Event.FINISHED));
+  }
+
   public void should_not_publish_remove_from_queue_before_start() {
     prepareVcs();
     addBuildToQueue();
@@ -240,6 +268,20 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
     then(myPublisher.getLastComment()).isEqualTo("My test comment");
   }
 
+  public void should_not_read_status_published_by_this_node() {
+    setInternalProperty(PublishedStatusLedger.ENABLED_PROPERTY, "true");
+    prepareVcs();
+    addBuildToQueue();
+    waitForTasksToFinish(Event.QUEUED);
+    SRunningBuild runningBuild = myFixture.flushQueueAndWait();
+    waitForTasksToFinish(Event.STARTED);
+    long getRequestsBefore = myPublisher.getSentRequests().stream().filter(method -> method == HttpMethod.GET).count();
+    runningBuild.setBuildComment(myUser , "My test comment");
+    waitForTasksToFinish(Event.COMMENTED);
+    then(myPublisher.getEventsReceived()).isEqualTo(Arrays.asList(Event.QUEUED, Event.STARTED, Event.COMMENTED));
+    then(myPublisher.getSentRequests().stream().filter(method -> method == HttpMethod.GET).count()).isEqualTo(getRequestsBefore);
+  }
+
   public void should_publish_failure() {
     prepareVcs();
     addBuildToQueue();
@@ -691,6 +733,45 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
     assertEquals(0L, myPublisher.getSentRequests().stream().filter(method -> method == HttpMethod.GET).count());
   }
 
+  public void should_publish_queued_once_for_build_chain_with_aggregation() {
+    myPublisher.setStatusContext("shared context");
+    addBuildChainToQueueWithAggregation();
+    then(getCntPostRequests()).isEqualTo(1); // builds of the chain report to the same context, only one of them publishes queued status
+  }
+
+  public void should_publish_queued_for_every_context_of_build_chain_with_aggregation() {
+    addBuildChainToQueueWithAggregation();
+    then(getCntPostRequests()).isEqualTo(3); // every build of the chain reports to its own context
+  }
+
+  private void addBuildChainToQueueWithAggregation() {
+    prepareVcs();
+    setInternalProperty(CHECK_STATUS_BEFORE_PUBLISHING, "false");
+    setInternalProperty(QUEUED_CHAIN_AGGREGATION_PROPERTY, "true");
+    String projectName = myProject.getName();
+    SBuildFeatureDescriptor myBuildFeature = myBuildType.getBuildFeatures().iterator().next();
+    SVcsRoot commonVcsRoot = myBuildType.getVcsRoots().iterator().next();
+    VcsRootInstance commonVcsRootInstance = myBuildType.getVcsRootInstances().iterator().next();
+    int version = 42;
+
+    BuildTypeImpl bt2 = registerBuildType("bt2", projectName);
+    bt2.addBuildFeature(myBuildFeature);
+    bt2.addVcsRoot(commonVcsRoot);
+    myFixture.addModification(ModificationDataBuilder.modification().in(commonVcsRootInstance).version(version++), bt2, RelationType.REGULAR);
+    BuildTypeImpl bt3 = registerBuildType("bt3", projectName);
+    bt3.addBuildFeature(myBuildFeature);
+    bt3.addVcsRoot(commonVcsRoot);
+    myFixture.addModification(ModificationDataBuilder.modification().in(commonVcsRootInstance).version(version), bt3, RelationType.REGULAR);
+    DependencyFactory dependencyFactory = myFixture.getSingletonService(DependencyFactory.class);
+    myBuildType.addDependency(dependencyFactory.createDependency(bt2));
+    myBuildType.addDependency(dependencyFactory.createDependency(bt3));
+
+    assertEquals(0, myPublisher.getSentRequests().size());
+    addBuildToQueue();
+    waitFor(() -> myFixture.getBuildQueue().getNumberOfItems() == 3, TASK_COMPLETION_TIMEOUT_MS);
+    waitFor(() -> myEventsProcessed.stream().filter(event -> event == Event.QUEUED).count() == 3, TASK_COMPLETION_TIMEOUT_MS);
+  }
+
   private void waitForNRequestsToBeSent(int expected) {
     try {
       waitFor(() -> myPublisher.getSentRequests().size() >= expected, TASK_COMPLETION_TIMEOUT_MS);
@@ -773,6 +854,21 @@ public class CommitStatusPublisherListenerTest extends CommitStatusPublisherTest
     waitForTasksToFinish(Event.STARTED);
   }
 
+  public void should_record_number_of_attempts_in_dead_letters() {
+    prepareVcs();
+    setInternalProperty(CHECK_STATUS_BEFORE_PUBLISHING, "false");
+    setInternalProperty(RETRY_ENABLED_PROPERTY_NAME, true);
+    setInternalProperty(RETRY_INITAL_DELAY_PROPERTY_NAME, 1);
+    setInternalProperty(RETRY_MAX_DELAY_PROPERTY_NAME, 4);
+    setInternalProperty(PROCESS_TASKS_DELAY_MILLIS, 1);
+    myPublisher.shouldFailToPublish(1000);
+    addBuildToQueue();
+    waitFor(() -> !myListener.getDeadLetters().getEntries(entry -> true).isEmpty(), TASK_COMPLETION_TIMEOUT_MS);
+
+    then(getCntPostRequests()).isEqualTo(4L);
+    then(myListener.getDeadLetters().getEntries(entry -> true)).extracting(PublishingDeadLetters.Entry::getAttempts).containsExactly(4);
+  }
+
   @TestFor(issues = "TW-34249")
   public void should_retry_on_all_possible_event_types() {
     prepareVcs();
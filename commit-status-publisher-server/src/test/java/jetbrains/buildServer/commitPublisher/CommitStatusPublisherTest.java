@@ -70,7 +70,7 @@ public abstract class CommitStatusPublisherTest extends BaseServerTestCase {
   private final AtomicBoolean myCanStartBuilds = new AtomicBoolean(true);
 
   protected CommitStatusPublisher myPublisher;
-  protected CommitStatusPublisherSettings myPublisherSettings;
+  protected BasePublisherSettings myPublisherSettings;
   protected CommitStatusPublisherProblems myProblems;
   protected Map<EventToTest, String> myExpectedRegExps = new HashMap<EventToTest, String>();
   protected String myVcsURL = "http://localhost/defaultvcs";
@@ -297,7 +297,7 @@ public abstract class CommitStatusPublisherTest extends BaseServerTestCase {
                                                                                myFixture.getServerResponsibility(), myFixture.getSingletonService(ExecutorServices.class),
                                                                                myFixture.getSingletonService(ProjectManager.class), myFixture.getSingletonService(TeamCityNodes.class),
                                                                                myFixture.getSingletonService(UserModel.class), myFixture.getMultiNodeTasks(),
-                                                                               Mockito.mock(FavoriteBuildProcessor.class), Mockito.mock(BuildOwnerSupplier.class));
+                                                                               Mockito.mock(FavoriteBuildProcessor.class), Mockito.mock(BuildOwnerSupplier.class), new PublishingMetrics());
 
     VcsRootInstance vcsRootInstance = myBuildType.getVcsRootInstances().stream().filter(root -> root.getParent().getId() == myVcsRoot.getId()).findFirst().get();
     setUpFeature();
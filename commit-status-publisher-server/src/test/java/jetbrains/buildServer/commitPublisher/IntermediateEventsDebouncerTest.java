@@ -0,0 +1,91 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class IntermediateEventsDebouncerTest extends BaseTestCase {
+
+  private ScheduledExecutorService myExecutor;
+  private List<String> myPublished;
+  private IntermediateEventsDebouncer myDebouncer;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    setInternalProperty(IntermediateEventsDebouncer.WINDOW_PROPERTY, "200");
+    myExecutor = Executors.newSingleThreadScheduledExecutor();
+    myPublished = new CopyOnWriteArrayList<>();
+    myDebouncer = new IntermediateEventsDebouncer(() -> myExecutor, (buildId, event) -> myPublished.add(buildId + ":" + event.getName()));
+  }
+
+  @AfterMethod
+  @Override
+  protected void tearDown() throws Exception {
+    myExecutor.shutdownNow();
+    super.tearDown();
+  }
+
+  public void only_latest_event_is_published() {
+    then(myDebouncer.offer(1, Event.FAILURE_DETECTED)).isTrue();
+    then(myDebouncer.offer(1, Event.MARKED_AS_SUCCESSFUL)).isTrue();
+    then(myDebouncer.offer(1, Event.FAILURE_DETECTED)).isTrue();
+    then(myDebouncer.offer(2, Event.MARKED_AS_SUCCESSFUL)).isTrue();
+    then(myPublished).isEmpty();
+
+    waitFor(() -> myPublished.size() == 2, 5000);
+    then(myPublished).containsExactlyInAnyOrder("1:" + Event.FAILURE_DETECTED.getName(), "2:" + Event.MARKED_AS_SUCCESSFUL.getName());
+    then(myDebouncer.getPendingEventsCount()).isZero();
+  }
+
+  public void cancelled_event_is_not_published() throws Exception {
+    myDebouncer.offer(1, Event.FAILURE_DETECTED);
+    myDebouncer.cancel(1);
+    Thread.sleep(400);
+    then(myPublished).isEmpty();
+  }
+
+  public void other_events_are_not_debounced() {
+    then(myDebouncer.offer(1, Event.FINISHED)).isFalse();
+    then(myDebouncer.offer(1, Event.COMMENTED)).isFalse();
+    then(myDebouncer.getPendingEventsCount()).isZero();
+  }
+
+  public void event_is_published_right_away_when_executor_rejects_it() {
+    myExecutor.shutdownNow();
+    then(myDebouncer.offer(1, Event.FAILURE_DETECTED)).isFalse();
+    then(myDebouncer.getPendingEventsCount()).isZero();
+    then(myDebouncer.offer(1, Event.MARKED_AS_SUCCESSFUL)).isFalse();
+  }
+
+  public void disabled() {
+    setInternalProperty(IntermediateEventsDebouncer.WINDOW_PROPERTY, "0");
+    then(myDebouncer.offer(1, Event.FAILURE_DETECTED)).isFalse();
+  }
+}
@@ -41,6 +41,7 @@ class MockPublisher extends BaseCommitStatusPublisher implements CommitStatusPub
   private final WebLinks myLinks;
   private final String myType;
   private String myVcsRootId = null;
+  private String myStatusContext = null;
 
   private User myLastUser = null;
 
@@ -128,6 +129,16 @@ class MockPublisher extends BaseCommitStatusPublisher implements CommitStatusPub
     myVcsRootId = vcsRootId;
   }
 
+  @Nullable
+  @Override
+  public String getStatusContext(@NotNull BuildPromotion buildPromotion) {
+    return myStatusContext;
+  }
+
+  void setStatusContext(String statusContext) {
+    myStatusContext = statusContext;
+  }
+
   void setEventToWait(Event event) {
     myEventsToWait.add(event);
   }
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PromotionStateTableTest extends BaseTestCase {
+
+  public void first_event_is_rejected_after_consequent_one() {
+    PromotionStateTable table = new PromotionStateTable(16, 60_000);
+    then(table.eventAccepted(1, Event.STARTED)).isTrue();
+    then(table.getLastEvent(1)).isNull();
+    then(table.eventAccepted(1, Event.COMMENTED)).isTrue();
+    then(table.getLastEvent(1)).isNull();
+    then(table.eventAccepted(1, Event.FINISHED)).isTrue();
+    then(table.getLastEvent(1)).isEqualTo(Event.FINISHED);
+    then(table.eventAccepted(1, Event.STARTED)).isFalse();
+    then(table.eventAccepted(2, Event.STARTED)).isTrue();
+  }
+
+  public void finalized_event_is_consumed_once() {
+    PromotionStateTable table = new PromotionStateTable(16, 60_000);
+    then(table.consumeFinalizedEvent(1)).isFalse();
+    table.finalizedEventReceived(1);
+    table.eventAccepted(1, Event.FAILURE_DETECTED);
+    then(table.consumeFinalizedEvent(1)).isTrue();
+    then(table.consumeFinalizedEvent(1)).isFalse();
+    then(table.getLastEvent(1)).isEqualTo(Event.FAILURE_DETECTED);
+  }
+
+  public void expired_finalized_event_is_not_consumed() {
+    PromotionStateTable table = new PromotionStateTable(16, -1);
+    table.finalizedEventReceived(1);
+    then(table.consumeFinalizedEvent(1)).isFalse();
+  }
+
+  public void colliding_promotions_keep_their_states() {
+    PromotionStateTable table = new PromotionStateTable(10, 60_000);
+    table.eventAccepted(1, Event.FINISHED);
+    table.finalizedEventReceived(17);
+    table.eventAccepted(17, Event.INTERRUPTED);
+    then(table.getLastEvent(1)).isEqualTo(Event.FINISHED);
+    then(table.getLastEvent(17)).isEqualTo(Event.INTERRUPTED);
+    then(table.eventAccepted(1, Event.STARTED)).isFalse();
+    then(table.consumeFinalizedEvent(1)).isFalse();
+    then(table.consumeFinalizedEvent(17)).isTrue();
+  }
+
+  public void oldest_promotion_is_dropped_when_slots_are_full() {
+    PromotionStateTable table = new PromotionStateTable(2, 60_000);
+    table.eventAccepted(2, Event.FINISHED);
+    table.eventAccepted(4, Event.FINISHED);
+    table.eventAccepted(6, Event.INTERRUPTED);
+    then(table.getLastEvent(2)).isNull();
+    then(table.getLastEvent(4)).isEqualTo(Event.FINISHED);
+    then(table.getLastEvent(6)).isEqualTo(Event.INTERRUPTED);
+    then(table.eventAccepted(2, Event.STARTED)).isTrue();
+  }
+
+  public void older_promotion_does_not_replace_newer_ones() {
+    PromotionStateTable table = new PromotionStateTable(2, 60_000);
+    table.eventAccepted(4, Event.FINISHED);
+    table.eventAccepted(6, Event.INTERRUPTED);
+    then(table.eventAccepted(2, Event.FINISHED)).isTrue();
+    table.finalizedEventReceived(2);
+    then(table.getLastEvent(2)).isNull();
+    then(table.consumeFinalizedEvent(2)).isFalse();
+    then(table.getLastEvent(4)).isEqualTo(Event.FINISHED);
+    then(table.getLastEvent(6)).isEqualTo(Event.INTERRUPTED);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishedPayloadsTest extends BaseTestCase {
+
+  private static final String URL = "https://api.github.com/repos/owner/repo/statuses/abc";
+  private static final String PAYLOAD = "{\"state\":\"pending\",\"description\":\"TeamCity build started\",\"context\":\"Build\"}";
+
+  private PublishingMetrics myMetrics;
+  private PublishedPayloads myPayloads;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myMetrics = new PublishingMetrics();
+    myPayloads = new PublishedPayloads(myMetrics);
+    setInternalProperty(PublishedPayloads.ENABLED_PROPERTY, "true");
+  }
+
+  public void same_payload_is_sent_once() {
+    then(myPayloads.isAlreadySent(URL, "Build", PAYLOAD)).isFalse();
+    myPayloads.sent(URL, "Build", PAYLOAD);
+    then(myPayloads.isAlreadySent(URL, "Build", PAYLOAD)).isTrue();
+    then(myPayloads.isAlreadySent(URL, "Build", PAYLOAD.replace("pending", "success"))).isFalse();
+    then(myPayloads.isAlreadySent(URL, "Tests", PAYLOAD)).isFalse();
+    then(myMetrics.snapshot().get(PublishedPayloads.SKIPPED_COUNTER)).isEqualTo(1L);
+  }
+
+  public void payload_is_sent_again_after_failure() {
+    myPayloads.sent(URL, "Build", PAYLOAD);
+    myPayloads.failed(URL, "Build");
+    then(myPayloads.isAlreadySent(URL, "Build", PAYLOAD)).isFalse();
+  }
+
+  public void payload_is_sent_again_after_ttl() {
+    setInternalProperty(PublishedPayloads.TTL_PROPERTY, "0");
+    myPayloads.sent(URL, "Build", PAYLOAD);
+    then(myPayloads.isAlreadySent(URL, "Build", PAYLOAD)).isFalse();
+  }
+
+  public void disabled() {
+    setInternalProperty(PublishedPayloads.ENABLED_PROPERTY, "false");
+    myPayloads.sent(URL, "Build", PAYLOAD);
+    then(myPayloads.isAlreadySent(URL, "Build", PAYLOAD)).isFalse();
+  }
+}
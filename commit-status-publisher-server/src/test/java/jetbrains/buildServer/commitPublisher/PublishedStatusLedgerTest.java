@@ -0,0 +1,89 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import jetbrains.buildServer.serverSide.BuildPromotion;
+import jetbrains.buildServer.serverSide.BuildRevision;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.Mockito.*;
+
+@Test
+public class PublishedStatusLedgerTest extends BaseTestCase {
+
+  private PublishedStatusLedger myLedger;
+  private BuildRevision myRevision;
+  private BuildPromotion myPromotion;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    setInternalProperty(PublishedStatusLedger.ENABLED_PROPERTY, "true");
+    myLedger = new PublishedStatusLedger();
+    VcsRootInstance root = mock(VcsRootInstance.class);
+    when(root.getId()).thenReturn(1L);
+    myRevision = mock(BuildRevision.class);
+    when(myRevision.getRoot()).thenReturn(root);
+    when(myRevision.getRevision()).thenReturn("abc");
+    myPromotion = mock(BuildPromotion.class);
+    when(myPromotion.getId()).thenReturn(10L);
+  }
+
+  public void published_status_is_known() {
+    CommitStatusPublisher publisher = publisher("feature1", "context1");
+    then(myLedger.getRevisionStatus(publisher, myRevision, myPromotion)).isNull();
+
+    myLedger.published(Event.STARTED, myPromotion, publisher, myRevision);
+
+    RevisionStatus status = myLedger.getRevisionStatus(publisher, myRevision, myPromotion);
+    then(status).isNotNull();
+    then(status.getTriggeredEvent()).isEqualTo(Event.STARTED);
+  }
+
+  public void statuses_with_other_context_are_kept_apart() {
+    myLedger.published(Event.STARTED, myPromotion, publisher("feature1", "context1"), myRevision);
+
+    then(myLedger.getRevisionStatus(publisher("feature1", "context2"), myRevision, myPromotion)).isNull();
+    then(myLedger.getRevisionStatus(publisher("feature2", "context1"), myRevision, myPromotion)).isNull();
+    then(myLedger.getRevisionStatus(publisher("feature1", "context1"), myRevision, myPromotion)).isNotNull();
+  }
+
+  public void disabled() {
+    setInternalProperty(PublishedStatusLedger.ENABLED_PROPERTY, "false");
+    CommitStatusPublisher publisher = publisher("feature1", "context1");
+    myLedger.published(Event.STARTED, myPromotion, publisher, myRevision);
+    then(myLedger.getRevisionStatus(publisher, myRevision, myPromotion)).isNull();
+  }
+
+  private CommitStatusPublisher publisher(String featureId, String context) {
+    SBuildType buildType = mock(SBuildType.class);
+    when(buildType.getBuildTypeId()).thenReturn("bt1");
+    CommitStatusPublisher publisher = mock(CommitStatusPublisher.class);
+    when(publisher.getId()).thenReturn("githubStatusPublisher");
+    when(publisher.getBuildFeatureId()).thenReturn(featureId);
+    when(publisher.getBuildType()).thenReturn(buildType);
+    when(publisher.getStatusContext(myPromotion)).thenReturn(context);
+    return publisher;
+  }
+}
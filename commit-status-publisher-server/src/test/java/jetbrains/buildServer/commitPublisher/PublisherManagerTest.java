@@ -20,6 +20,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import jetbrains.buildServer.serverSide.SBuild;
@@ -42,18 +43,21 @@ import static org.assertj.core.api.BDDAssertions.then;
 public class PublisherManagerTest extends CommitStatusPublisherTestBase {
 
   private static final String SETTINGS_SUPPORTING_FEATURELESS_ID = "settings-supporting-featureless";
+  private static final String QUEUED_NOT_SUPPORTED_ID = "queued-not-supported";
   private static final String DUMMY_FEATURE_PARAM = "dummy-param";
   private static final String BUILD_PARAM_VALUE = "dummy-param-value";
   private static final String BUILD_PARAM_NAME = "build-param-name";
 
   private PublisherManager myPublisherManager;
+  private SettingsSupportingFeatureless mySettingsSupportingFeatureless;
 
   @Override
   @BeforeMethod
   public void setUp() throws Exception {
     super.setUp();
 
-    myServer.registerExtension(CommitStatusPublisherSettings.class, SETTINGS_SUPPORTING_FEATURELESS_ID, new SettingsSupportingFeatureless());
+    mySettingsSupportingFeatureless = new SettingsSupportingFeatureless();
+    myServer.registerExtension(CommitStatusPublisherSettings.class, SETTINGS_SUPPORTING_FEATURELESS_ID, mySettingsSupportingFeatureless);
 
     myPublisherManager = new PublisherManager(myServer);
   }
@@ -156,6 +160,92 @@ public class PublisherManagerTest extends CommitStatusPublisherTestBase {
     then(supplementaryPublishers).hasSize(1);
     then(supplementaryPublishers.entrySet()).have(publisherEntry(notEmpty(), forVcsRootId(vcsRoot.getId())));
   }
+  @Test
+  public void createSupplementaryPublishers_cached() {
+    final SVcsRoot vcsRoot = vcsRoot();
+
+    final Map<String, CommitStatusPublisher> supplementaryPublishers = myPublisherManager.createSupplementaryPublishers(myBuildType, Collections.emptyMap());
+    final int supportChecks = mySettingsSupportingFeatureless.mySupportChecks.get();
+    final Map<String, CommitStatusPublisher> cachedPublishers = myPublisherManager.createSupplementaryPublishers(myBuildType, Collections.emptyMap());
+
+    then(cachedPublishers).hasSize(1);
+    then(cachedPublishers.keySet()).isEqualTo(supplementaryPublishers.keySet());
+    then(cachedPublishers.values().iterator().next()).as("Only the resolution is cached, publishers are created on every call")
+                                                    .isNotSameAs(supplementaryPublishers.values().iterator().next());
+    then(mySettingsSupportingFeatureless.mySupportChecks.get()).isEqualTo(supportChecks);
+
+    final SVcsRoot anotherRoot = vcsRoot();
+    final Map<String, CommitStatusPublisher> publishersForNewRoots = myPublisherManager.createSupplementaryPublishers(myBuildType, Collections.emptyMap());
+    then(publishersForNewRoots).hasSize(2);
+    then(publishersForNewRoots.entrySet()).haveExactly(1, publisherEntry(notEmpty(), forVcsRootId(vcsRoot.getId())));
+    then(publishersForNewRoots.entrySet()).haveExactly(1, publisherEntry(notEmpty(), forVcsRootId(anotherRoot.getId())));
+
+    final CommitStatusPublisher publisher = publisherUsingVcsRoot("build-feature-1", vcsRoot);
+    final Map<String, CommitStatusPublisher> publishersWithFeature = myPublisherManager.createSupplementaryPublishers(myBuildType, publisherMap(publisher));
+    then(publishersWithFeature).hasSize(1);
+    then(publishersWithFeature.entrySet()).have(publisherEntry(notEmpty(), forVcsRootId(anotherRoot.getId())));
+  }
+
+  @Test
+  public void createSupplementaryPublishers_cacheInvalidated() {
+    vcsRoot();
+
+    myPublisherManager.createSupplementaryPublishers(myBuildType, Collections.emptyMap());
+    final int supportChecks = mySettingsSupportingFeatureless.mySupportChecks.get();
+    myPublisherManager.invalidateSupplementaryPublishers(myBuildType.getInternalId());
+
+    then(myPublisherManager.createSupplementaryPublishers(myBuildType, Collections.emptyMap())).hasSize(1);
+    then(mySettingsSupportingFeatureless.mySupportChecks.get()).isGreaterThan(supportChecks);
+  }
+
+  @Test
+  public void createSupplementaryPublishers_cacheDisabled() {
+    setInternalProperty(PublisherManager.SUPPLEMENTARY_PUBLISHERS_CACHE_ENABLED_PROPERTY, "false");
+    vcsRoot();
+
+    myPublisherManager.createSupplementaryPublishers(myBuildType, Collections.emptyMap());
+    final int supportChecks = mySettingsSupportingFeatureless.mySupportChecks.get();
+
+    then(myPublisherManager.createSupplementaryPublishers(myBuildType, Collections.emptyMap())).hasSize(1);
+    then(mySettingsSupportingFeatureless.mySupportChecks.get()).isGreaterThan(supportChecks);
+  }
+
+  @Test
+  public void createPublishers_onlyForSupportedEvents() {
+    final SVcsRoot vcsRoot = vcsRoot();
+    final AtomicInteger createdPublishers = new AtomicInteger();
+    myServer.registerExtension(CommitStatusPublisherSettings.class, QUEUED_NOT_SUPPORTED_ID, new DummyPublisherSettings() {
+      @NotNull
+      @Override
+      public String getId() {
+        return QUEUED_NOT_SUPPORTED_ID;
+      }
+
+      @Override
+      public boolean isEventSupported(CommitStatusPublisher.Event event, SBuildType buildType, Map<String, String> params) {
+        return event != CommitStatusPublisher.Event.QUEUED;
+      }
+
+      @Nullable
+      @Override
+      public CommitStatusPublisher createPublisher(@NotNull SBuildType buildType, @NotNull String buildFeatureId, @NotNull Map<String, String> params) {
+        createdPublishers.incrementAndGet();
+        return publisherUsingVcsRoot(buildFeatureId, vcsRoot);
+      }
+    });
+    myBuildType.removeBuildFeature(myFeatureDescriptor.getId());
+    Map<String, String> featureParams = new HashMap<>();
+    featureParams.put(Constants.PUBLISHER_ID_PARAM, QUEUED_NOT_SUPPORTED_ID);
+    featureParams.put(Constants.VCS_ROOT_ID_PARAM, String.valueOf(vcsRoot.getId()));
+    myBuildType.addBuildFeature(CommitStatusPublisherFeature.TYPE, featureParams);
+    SQueuedBuild build = addToQueue(myBuildType);
+
+    then(myPublisherManager.createPublishers(build.getBuildPromotion(), CommitStatusPublisher.Event.QUEUED)).isEmpty();
+    then(createdPublishers.get()).as("Publisher must not be created for unsupported event, its root must not get a featureless publisher").isZero();
+
+    then(myPublisherManager.createPublishers(build.getBuildPromotion(), CommitStatusPublisher.Event.STARTED)).hasSize(1);
+    then(createdPublishers.get()).isEqualTo(1);
+  }
 
   @NotNull
   private static CommitStatusPublisher publisherUsingVcsRoot(@NotNull String buildFeatureId, @NotNull SVcsRoot vcsRoot) {
@@ -241,6 +331,7 @@ public class PublisherManagerTest extends CommitStatusPublisherTestBase {
   }
 
   static class SettingsSupportingFeatureless extends DummyPublisherSettings {
+    private final AtomicInteger mySupportChecks = new AtomicInteger();
 
     @NotNull
     @Override
@@ -256,6 +347,7 @@ public class PublisherManagerTest extends CommitStatusPublisherTestBase {
 
     @Override
     public boolean isFeatureLessPublishingSupported(@NotNull SBuildType buildType) {
+      mySupportChecks.incrementAndGet();
       return true;
     }
 
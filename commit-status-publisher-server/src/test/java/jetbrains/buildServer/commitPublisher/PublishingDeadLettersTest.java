@@ -0,0 +1,90 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.List;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingDeadLettersTest extends BaseTestCase {
+
+  private PublishingDeadLetters myDeadLetters;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myDeadLetters = new PublishingDeadLetters();
+  }
+
+  public void repeated_failure_replaces_previous_entry() {
+    myDeadLetters.record(entry(1, "github.com", 3));
+    myDeadLetters.record(entry(2, "github.com", 1));
+    myDeadLetters.record(entry(1, "github.com", 2));
+
+    then(myDeadLetters.getEntries(e -> true)).extracting(PublishingDeadLetters.Entry::getPromotionId).containsExactly(2L, 1L);
+    then(myDeadLetters.getEntries(e -> e.getPromotionId() == 1).get(0).getAttempts()).isEqualTo(2);
+  }
+
+  public void oldest_entries_are_evicted() {
+    setInternalProperty(PublishingDeadLetters.MAX_SIZE_PROPERTY, "2");
+    myDeadLetters.record(entry(1, "github.com", 1));
+    myDeadLetters.record(entry(2, "github.com", 1));
+    myDeadLetters.record(entry(3, "github.com", 1));
+
+    then(myDeadLetters.getEntries(e -> true)).extracting(PublishingDeadLetters.Entry::getPromotionId).containsExactly(2L, 3L);
+  }
+
+  public void published_status_is_removed() {
+    myDeadLetters.record(entry(1, "github.com", 1));
+    myDeadLetters.record(entry(2, "gitlab.com", 1));
+
+    myDeadLetters.published(1, "githubStatusPublisher", "Root", "abc");
+
+    then(myDeadLetters.getEntries(e -> true)).extracting(PublishingDeadLetters.Entry::getPromotionId).containsExactly(2L);
+  }
+
+  public void remove_entries() {
+    myDeadLetters.record(entry(1, "github.com", 1));
+    myDeadLetters.record(entry(2, "gitlab.com", 1));
+    myDeadLetters.record(entry(3, "github.com", 1));
+
+    myDeadLetters.remove(myDeadLetters.getEntries(e -> e.getHostKey().endsWith(":github.com")));
+    then(myDeadLetters.getEntries(e -> true)).extracting(PublishingDeadLetters.Entry::getPromotionId).containsExactly(2L);
+  }
+
+  public void replaced_entry_is_not_removed() {
+    myDeadLetters.record(entry(1, "github.com", 1));
+    List<PublishingDeadLetters.Entry> redriven = myDeadLetters.getEntries(e -> true);
+    myDeadLetters.record(entry(1, "github.com", 2));
+
+    myDeadLetters.remove(redriven);
+    then(myDeadLetters.getEntries(e -> true)).extracting(PublishingDeadLetters.Entry::getAttempts).containsExactly(2);
+  }
+
+  private static PublishingDeadLetters.Entry entry(long promotionId, String host, int attempts) {
+    return new PublishingDeadLetters.Entry(promotionId, promotionId, "bt1", "project1", "githubStatusPublisher", "GitHub",
+                                           "githubStatusPublisher:" + host, "Root", "abc", Event.FINISHED,
+                                           "https://" + host + "/statuses/abc", "{\"state\":\"success\"}", "Connection refused",
+                                           attempts, System.currentTimeMillis());
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingRecoveryTrackerTest {
+
+  private PublishingRecoveryTracker myTracker;
+
+  @BeforeMethod
+  protected void setUp() {
+    myTracker = new PublishingRecoveryTracker();
+  }
+
+  public void only_probe_keeps_retrying() {
+    then(myTracker.registerFailure("github:github.com", 1)).isTrue();
+    then(myTracker.registerFailure("github:github.com", 2)).isFalse();
+    then(myTracker.registerFailure("github:github.com", 3)).isFalse();
+    then(myTracker.registerFailure("github:github.com", 1)).isTrue();
+    then(myTracker.registerFailure("github:ghe.example.com", 4)).isTrue();
+  }
+
+  public void success_returns_affected_promotions_once() {
+    myTracker.registerFailure("github:github.com", 1);
+    myTracker.registerFailure("github:github.com", 2);
+    myTracker.registerFailure("github:github.com", 3);
+    myTracker.registerFailure("github:github.com", 2);
+
+    then(myTracker.registerSuccess("github:github.com")).containsExactly(2L, 3L);
+    then(myTracker.registerSuccess("github:github.com")).isEmpty();
+    then(myTracker.registerFailure("github:github.com", 2)).isTrue();
+  }
+
+  public void probe_giving_up_ends_outage() {
+    myTracker.registerFailure("github:github.com", 1);
+    myTracker.registerFailure("github:github.com", 2);
+    myTracker.registerFailure("github:github.com", 3);
+
+    then(myTracker.registerGiveUp("github:github.com", 2)).isEmpty();
+    then(myTracker.registerGiveUp("github:github.com", 1)).containsExactly(2L, 3L);
+    then(myTracker.registerGiveUp("github:github.com", 1)).isEmpty();
+    then(myTracker.registerFailure("github:github.com", 2)).isTrue();
+    then(myTracker.registerFailure("github:github.com", 3)).isFalse();
+  }
+
+  public void success_for_other_host_does_not_end_outage() {
+    myTracker.registerFailure("github:github.com", 1);
+    myTracker.registerFailure("github:github.com", 2);
+
+    then(myTracker.registerSuccess("gitlab:gitlab.com")).isEmpty();
+    then(myTracker.registerFailure("github:github.com", 3)).isFalse();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.CommitStatusPublisher.Event;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PublishingTaskDispatcherTest extends BaseTestCase {
+
+  private Deque<Runnable> myExecutorQueue;
+  private PublishingTaskDispatcher myDispatcher;
+  private List<String> myPublished;
+  private List<String> myCompleted;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    setInternalProperty(PublishingTaskDispatcher.PRIORITY_LANES_ENABLED_PROPERTY, "true");
+    setInternalProperty(PublishingTaskDispatcher.MAX_CONCURRENCY_PROPERTY, "1");
+    myExecutorQueue = new ArrayDeque<>();
+    myDispatcher = new PublishingTaskDispatcher(myExecutorQueue::addLast);
+    myPublished = new ArrayList<>();
+    myCompleted = new ArrayList<>();
+  }
+
+  public void final_statuses_go_first() {
+    submit(Event.STARTED, 1); // occupies the only slot
+    submit(Event.QUEUED, 2);
+    submit(Event.STARTED, 3);
+    submit(Event.FAILURE_DETECTED, 4);
+    submit(Event.FINISHED, 5);
+
+    runAll();
+
+    then(myPublished).containsExactly("STARTED:1", "FINISHED:5", "FAILURE_DETECTED:4", "STARTED:3", "QUEUED:2");
+  }
+
+  public void progress_events_are_dropped_when_final_status_is_known() {
+    submit(Event.STARTED, 1); // occupies the only slot
+    submit(Event.STARTED, 2);
+    submit(Event.FAILURE_DETECTED, 2);
+    submit(Event.COMMENTED, 2);
+    submit(Event.FINISHED, 2);
+    submit(Event.FAILURE_DETECTED, 2);
+
+    then(myCompleted).containsExactly("STARTED:2", "FAILURE_DETECTED:2", "FAILURE_DETECTED:2");
+    runAll();
+
+    then(myPublished).containsExactly("STARTED:1", "FINISHED:2", "COMMENTED:2");
+    then(myCompleted).hasSize(6);
+    then(myDispatcher.getQueuedTasksCount()).isZero();
+  }
+
+  public void removal_from_queue_goes_first_and_drops_queued_status() {
+    submit(Event.STARTED, 1); // occupies the only slot
+    submit(Event.QUEUED, 2);
+    submit(Event.QUEUED, 3);
+    submit(Event.REMOVED_FROM_QUEUE, 3);
+    submit(Event.QUEUED, 3);
+
+    then(myCompleted).containsExactly("QUEUED:3", "QUEUED:3");
+    runAll();
+
+    then(myPublished).containsExactly("STARTED:1", "REMOVED_FROM_QUEUE:3", "QUEUED:2");
+  }
+
+  public void projects_are_served_in_weighted_round_robin() {
+    setInternalProperty(PublishingTaskDispatcher.FAIR_SCHEDULING_ENABLED_PROPERTY, "true");
+    setInternalProperty(PublishingTaskDispatcher.FAIR_SCHEDULING_WEIGHTS_PROPERTY, "Important:2");
+    submit(Event.FINISHED, 1, "Noisy"); // occupies the only slot
+    for (int i = 2; i <= 5; i++) {
+      submit(Event.FINISHED, i, "Noisy");
+    }
+    submit(Event.FINISHED, 6, "Other");
+    submit(Event.FINISHED, 7, "Important");
+    submit(Event.FINISHED, 8, "Important");
+    submit(Event.FINISHED, 9, "Important");
+
+    runAll();
+
+    then(myPublished).containsExactly("FINISHED:1", "FINISHED:2", "FINISHED:6", "FINISHED:7", "FINISHED:8",
+                                      "FINISHED:3", "FINISHED:9", "FINISHED:4", "FINISHED:5");
+  }
+
+  public void running_tasks_of_project_are_limited_while_other_projects_wait() {
+    setInternalProperty(PublishingTaskDispatcher.FAIR_SCHEDULING_ENABLED_PROPERTY, "true");
+    setInternalProperty(PublishingTaskDispatcher.MAX_CONCURRENCY_PROPERTY, "2");
+    setInternalProperty(PublishingTaskDispatcher.MAX_CONCURRENCY_PER_PROJECT_PROPERTY, "1");
+    for (int i = 1; i <= 4; i++) {
+      submit(Event.FINISHED, i, "Noisy");
+    }
+    submit(Event.FINISHED, 5, "Other");
+
+    then(myExecutorQueue).hasSize(2);
+    runAll();
+    then(myPublished).containsExactly("FINISHED:1", "FINISHED:2", "FINISHED:5", "FINISHED:3", "FINISHED:4");
+  }
+
+  public void single_project_uses_all_threads() {
+    setInternalProperty(PublishingTaskDispatcher.FAIR_SCHEDULING_ENABLED_PROPERTY, "true");
+    setInternalProperty(PublishingTaskDispatcher.MAX_CONCURRENCY_PROPERTY, "4");
+    for (int i = 1; i <= 5; i++) {
+      submit(Event.FINISHED, i, "Noisy");
+    }
+
+    then(myExecutorQueue).hasSize(4);
+    runAll();
+    then(myPublished).hasSize(5);
+  }
+
+  private void submit(Event event, long promotionId) {
+    submit(event, promotionId, "Project");
+  }
+
+  private void submit(Event event, long promotionId, String projectId) {
+    String description = event.name() + ":" + promotionId;
+    myDispatcher.submit(event, promotionId, projectId, () -> myPublished.add(description), () -> myCompleted.add(description));
+  }
+
+  private void runAll() {
+    Runnable task;
+    while ((task = myExecutorQueue.pollFirst()) != null) {
+      task.run();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import jetbrains.buildServer.BaseTestCase;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PullRequestHeadsCacheTest extends BaseTestCase {
+
+  private static final String REPO = "https://github.com/owner/repo";
+
+  private PullRequestHeadsCache<String> myCache;
+  private AtomicInteger myLoads;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCache = new PullRequestHeadsCache<>();
+    myLoads = new AtomicInteger();
+  }
+
+  public void head_is_loaded_once_for_revision() {
+    then(myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load("head1"))).isEqualTo("head1");
+    then(myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load("head2"))).isEqualTo("head1");
+    then(myLoads.get()).isEqualTo(1);
+  }
+
+  public void new_revision_of_branch_reloads_head() {
+    then(myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load("head1"))).isEqualTo("head1");
+    then(myCache.get(REPO, "refs/pull/1/merge", "rev2", () -> load("head2"))).isEqualTo("head2");
+    then(myCache.get(REPO, "refs/pull/2/merge", "rev2", () -> load("head3"))).isEqualTo("head3");
+    then(myCache.get("https://github.com/owner/another", "refs/pull/1/merge", "rev2", () -> load("head4"))).isEqualTo("head4");
+    then(myLoads.get()).isEqualTo(4);
+  }
+
+  public void expired_head_is_reloaded() throws InterruptedException {
+    setInternalProperty(PullRequestHeadsCache.TTL_PROPERTY, "1");
+    then(myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load("head1"))).isEqualTo("head1");
+    Thread.sleep(10);
+    then(myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load("head2"))).isEqualTo("head2");
+  }
+
+  public void unknown_head_is_not_cached() {
+    then(myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load(null))).isNull();
+    then(myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load("head1"))).isEqualTo("head1");
+    then(myLoads.get()).isEqualTo(2);
+  }
+
+  public void failed_load_is_not_cached() {
+    try {
+      myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> {
+        throw new PublisherException("Failed to load");
+      });
+      fail("Exception expected");
+    } catch (PublisherException e) {
+      then(e).hasMessage("Failed to load");
+    }
+    then(myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load("head1"))).isEqualTo("head1");
+  }
+
+  public void disabled() {
+    setInternalProperty(PullRequestHeadsCache.TTL_PROPERTY, "0");
+    myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load("head1"));
+    myCache.get(REPO, "refs/pull/1/merge", "rev1", () -> load("head1"));
+    then(myLoads.get()).isEqualTo(2);
+  }
+
+  private String load(String head) {
+    myLoads.incrementAndGet();
+    return head;
+  }
+}
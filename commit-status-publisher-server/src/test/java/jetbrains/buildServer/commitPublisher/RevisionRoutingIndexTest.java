@@ -0,0 +1,120 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.Arrays;
+import java.util.List;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.serverSide.BuildRevision;
+import jetbrains.buildServer.serverSide.SBuildType;
+import jetbrains.buildServer.vcs.SVcsRootEx;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.Mockito.*;
+
+@Test
+public class RevisionRoutingIndexTest extends BaseTestCase {
+
+  private SBuildType myBuildType;
+  private RevisionRoutingIndex myIndex;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myBuildType = mock(SBuildType.class);
+    when(myBuildType.getInternalId()).thenReturn("bt1");
+    myIndex = new RevisionRoutingIndex();
+  }
+
+  public void routes_are_matched_once() {
+    SVcsRootEx root1 = mockRoot("Root1");
+    SVcsRootEx root2 = mockRoot("Root2");
+    List<BuildRevision> revisions = Arrays.asList(mockRevision(root1, 1), mockRevision(root2, 2));
+    CommitStatusPublisher publisher = mockPublisher("OldRoot2");
+    when(root2.isAliasExternalId("OldRoot2")).thenReturn(true);
+
+    then(myIndex.getRevisions(publisher, revisions)).containsExactly(revisions.get(1));
+    List<BuildRevision> nextBuildRevisions = Arrays.asList(mockRevision(root1, 1), mockRevision(root2, 2));
+    then(myIndex.getRevisions(publisher, nextBuildRevisions)).containsExactly(nextBuildRevisions.get(1));
+    verify(root2, times(1)).isAliasExternalId("OldRoot2");
+  }
+
+  public void routes_are_rebuilt_for_other_roots() {
+    SVcsRootEx root1 = mockRoot("Root1");
+    SVcsRootEx root2 = mockRoot("Root2");
+    CommitStatusPublisher publisher = mockPublisher("Root2");
+
+    then(myIndex.getRevisions(publisher, Arrays.asList(mockRevision(root1, 1), mockRevision(root2, 2)))).hasSize(1);
+    List<BuildRevision> revisions = Arrays.asList(mockRevision(root2, 3), mockRevision(root1, 1));
+    then(myIndex.getRevisions(publisher, revisions)).containsExactly(revisions.get(0));
+  }
+
+  public void publisher_without_root() {
+    SVcsRootEx root1 = mockRoot("Root1");
+    SVcsRootEx root2 = mockRoot("Root2");
+    List<BuildRevision> revisions = Arrays.asList(mockRevision(root1, 1), mockRevision(root2, 2));
+    CommitStatusPublisher publisher = mockPublisher(null);
+    when(publisher.isPublishingForRevision(revisions.get(0))).thenReturn(true);
+
+    then(myIndex.getRevisions(publisher, revisions)).containsExactly(revisions.get(0));
+    then(myIndex.getRevisions(publisher, revisions)).containsExactly(revisions.get(0));
+    verify(publisher, times(1)).isPublishingForRevision(revisions.get(1));
+  }
+
+  public void routes_are_rebuilt_after_invalidation() {
+    SVcsRootEx root1 = mockRoot("Root1");
+    SVcsRootEx root2 = mockRoot("Root2");
+    List<BuildRevision> revisions = Arrays.asList(mockRevision(root1, 1), mockRevision(root2, 2));
+    CommitStatusPublisher publisher = mockPublisher(null);
+    when(publisher.isPublishingForRevision(revisions.get(0))).thenReturn(true);
+    then(myIndex.getRevisions(publisher, revisions)).containsExactly(revisions.get(0));
+
+    when(publisher.isPublishingForRevision(revisions.get(0))).thenReturn(false);
+    when(publisher.isPublishingForRevision(revisions.get(1))).thenReturn(true);
+    then(myIndex.getRevisions(publisher, revisions)).containsExactly(revisions.get(0));
+    myIndex.invalidate("bt1");
+    then(myIndex.getRevisions(publisher, revisions)).containsExactly(revisions.get(1));
+  }
+
+  private SVcsRootEx mockRoot(String externalId) {
+    SVcsRootEx root = mock(SVcsRootEx.class);
+    when(root.getExternalId()).thenReturn(externalId);
+    return root;
+  }
+
+  private BuildRevision mockRevision(SVcsRootEx root, long instanceId) {
+    VcsRootInstance instance = mock(VcsRootInstance.class);
+    when(instance.getId()).thenReturn(instanceId);
+    when(instance.getParent()).thenReturn(root);
+    BuildRevision revision = mock(BuildRevision.class);
+    when(revision.getRoot()).thenReturn(instance);
+    return revision;
+  }
+
+  private CommitStatusPublisher mockPublisher(String vcsRootId) {
+    CommitStatusPublisher publisher = mock(CommitStatusPublisher.class);
+    when(publisher.getBuildType()).thenReturn(myBuildType);
+    when(publisher.getVcsRootId()).thenReturn(vcsRootId);
+    when(publisher.getId()).thenReturn("githubStatusPublisher");
+    when(publisher.getBuildFeatureId()).thenReturn("BUILD_EXT_1");
+    return publisher;
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher;
+
+import java.util.Arrays;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.vcs.SVcsModification;
+import jetbrains.buildServer.vcs.VcsModificationHistory;
+import jetbrains.buildServer.vcs.VcsModificationOrder;
+import jetbrains.buildServer.vcs.VcsRootInstance;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.Mockito.*;
+
+@Test
+public class VcsModificationsMemoTest extends BaseTestCase {
+
+  private VcsModificationsMemo myMemo;
+  private VcsModificationHistory myHistory;
+  private VcsRootInstance myRoot;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myMemo = new VcsModificationsMemo();
+    myHistory = mock(VcsModificationHistory.class);
+    myRoot = mock(VcsRootInstance.class);
+    when(myRoot.getId()).thenReturn(1L);
+  }
+
+  public void ancestry_is_asked_once() {
+    when(myHistory.getModificationsOrder(myRoot, "head", "merge")).thenReturn(VcsModificationOrder.BEFORE);
+
+    then(myMemo.getModificationsOrder(myHistory, myRoot, "head", "merge")).isEqualTo(VcsModificationOrder.BEFORE);
+    then(myMemo.getModificationsOrder(myHistory, myRoot, "head", "merge")).isEqualTo(VcsModificationOrder.BEFORE);
+    verify(myHistory, times(1)).getModificationsOrder(myRoot, "head", "merge");
+  }
+
+  public void ancestry_is_kept_per_root() {
+    VcsRootInstance otherRoot = mock(VcsRootInstance.class);
+    when(otherRoot.getId()).thenReturn(2L);
+    when(myHistory.getModificationsOrder(any(), eq("head"), eq("merge"))).thenReturn(VcsModificationOrder.BEFORE);
+
+    myMemo.getModificationsOrder(myHistory, myRoot, "head", "merge");
+    myMemo.getModificationsOrder(myHistory, otherRoot, "head", "merge");
+    verify(myHistory, times(1)).getModificationsOrder(myRoot, "head", "merge");
+    verify(myHistory, times(1)).getModificationsOrder(otherRoot, "head", "merge");
+  }
+
+  public void parents_are_asked_once() {
+    SVcsModification modification = mock(SVcsModification.class);
+    when(modification.getParentRevisions()).thenReturn(Arrays.asList("parent1", "parent2"));
+    when(myHistory.findModificationByVersion(myRoot, "merge")).thenReturn(modification);
+
+    then(myMemo.getParentRevisions(myHistory, myRoot, "merge")).containsExactly("parent1", "parent2");
+    then(myMemo.getParentRevisions(myHistory, myRoot, "merge")).containsExactly("parent1", "parent2");
+    verify(myHistory, times(1)).findModificationByVersion(myRoot, "merge");
+  }
+
+  public void unknown_modification_is_not_remembered() {
+    then(myMemo.getParentRevisions(myHistory, myRoot, "merge")).isNull();
+
+    SVcsModification modification = mock(SVcsModification.class);
+    when(modification.getParentRevisions()).thenReturn(Arrays.asList("parent1", "parent2"));
+    when(myHistory.findModificationByVersion(myRoot, "merge")).thenReturn(modification);
+    then(myMemo.getParentRevisions(myHistory, myRoot, "merge")).containsExactly("parent1", "parent2");
+  }
+
+  public void disabled() {
+    setInternalProperty(VcsModificationsMemo.ENABLED_PROPERTY, "false");
+    when(myHistory.getModificationsOrder(myRoot, "head", "merge")).thenReturn(VcsModificationOrder.BEFORE);
+
+    myMemo.getModificationsOrder(myHistory, myRoot, "head", "merge");
+    myMemo.getModificationsOrder(myHistory, myRoot, "head", "merge");
+    verify(myHistory, times(2)).getModificationsOrder(myRoot, "head", "merge");
+  }
+}
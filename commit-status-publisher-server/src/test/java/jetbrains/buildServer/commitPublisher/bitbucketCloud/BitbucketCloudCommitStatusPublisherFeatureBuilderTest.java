@@ -1,8 +1,12 @@
 package jetbrains.buildServer.commitPublisher.bitbucketCloud;
 
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherSettings;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
@@ -32,6 +36,9 @@ public class BitbucketCloudCommitStatusPublisherFeatureBuilderTest extends BaseS
        myWebLinks,
        problems,
        trustStoreProvider,
+       new AdaptiveConcurrencyLimiter(new PublishingMetrics()),
+       new AdaptiveTimeouts(new PublishingMetrics()),
+       new PublishedPayloads(new PublishingMetrics()),
        myFixture.getSingletonService(OAuthConnectionsManager.class),
        myFixture.getSingletonService(OAuthTokensStorage.class),
        getUserModelEx(),
@@ -221,6 +221,9 @@ public class BitbucketCloudPublisherTest extends HttpPublisherTest {
        myWebLinks,
        myProblems,
        myTrustStoreProvider,
+       new AdaptiveConcurrencyLimiter(new PublishingMetrics()),
+       new AdaptiveTimeouts(new PublishingMetrics()),
+       new PublishedPayloads(new PublishingMetrics()),
        myOAuthConnectionsManager,
        myOAuthTokenStorage,
        myFixture.getUserModel(),
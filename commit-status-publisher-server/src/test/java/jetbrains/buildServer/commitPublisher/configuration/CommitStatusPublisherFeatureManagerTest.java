@@ -1,10 +1,15 @@
 package jetbrains.buildServer.commitPublisher.configuration;
 
 import com.google.common.collect.ImmutableMap;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherSettings;
 import jetbrains.buildServer.commitPublisher.Constants;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.commitPublisher.VcsModificationsMemo;
 import jetbrains.buildServer.commitPublisher.bitbucketCloud.BitbucketCloudBuildNameProvider;
 import jetbrains.buildServer.commitPublisher.bitbucketCloud.BitbucketCloudCommitStatusPublisherFeatureBuilderService;
 import jetbrains.buildServer.commitPublisher.bitbucketCloud.BitbucketCloudSettings;
@@ -12,8 +17,11 @@ import jetbrains.buildServer.commitPublisher.github.ChangeStatusUpdater;
 import jetbrains.buildServer.commitPublisher.github.GitHubBuildContextProvider;
 import jetbrains.buildServer.commitPublisher.github.GitHubCommitStatusPublisherFeatureBuilderService;
 import jetbrains.buildServer.commitPublisher.github.GitHubSettings;
+import jetbrains.buildServer.commitPublisher.github.api.impl.ETagCache;
 import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubApiFactoryImpl;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubInstallations;
 import jetbrains.buildServer.commitPublisher.github.api.impl.HttpClientWrapperImpl;
+import jetbrains.buildServer.commitPublisher.github.api.impl.PermissionProbes;
 import jetbrains.buildServer.commitPublisher.gitlab.GitLabBuildNameProvider;
 import jetbrains.buildServer.commitPublisher.gitlab.GitLabCommitStatusPublisherFeatureBuilderService;
 import jetbrains.buildServer.commitPublisher.gitlab.GitlabSettings;
@@ -24,6 +32,7 @@ import jetbrains.buildServer.commitPublisher.tfs.AzureDevOpsCommitStatusPublishe
 import jetbrains.buildServer.commitPublisher.tfs.TfsBuildNameProvider;
 import jetbrains.buildServer.commitPublisher.tfs.TfsPublisherSettings;
 import jetbrains.buildServer.serverSide.SBuildFeatureDescriptor;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionDescriptor;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
@@ -260,11 +269,14 @@ public class CommitStatusPublisherFeatureManagerTest extends BaseServerTestCase
   }
 
   private void setupPublisherSettings() {
+    final AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(metrics);
+    final GitHubInstallations installations = new GitHubInstallations(concurrencyLimiter);
     @SuppressWarnings("deprecation") final ChangeStatusUpdater changeStatusUpdater =
-      new ChangeStatusUpdater(new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null),
+      new ChangeStatusUpdater(new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null, concurrencyLimiter, new AdaptiveTimeouts(metrics), installations),
                                                        myFixture.getSingletonService(OAuthTokensStorage.class),
                                                        myFixture.getSingletonService(OAuthConnectionsManager.class),
-                                                       myFixture.getProjectManager()), myFixture.getVcsHistory());
+                                                       myFixture.getProjectManager(), new PublishedPayloads(metrics), new ETagCache(metrics), new PermissionProbes(metrics), installations), myFixture.getVcsHistory(), new VcsModificationsMemo(),
+                              myFixture.getSingletonService(ExecutorServices.class), metrics);
 
     final CommitStatusPublisherProblems problems = new CommitStatusPublisherProblems(myFixture.getSingletonService(BuildProblemsTicketManager.class));
     final SSLTrustStoreProvider trustStoreProvider = () -> null;
@@ -276,11 +288,14 @@ public class CommitStatusPublisherFeatureManagerTest extends BaseServerTestCase
                          myFixture.getSingletonService(OAuthTokensStorage.class),
                          myFixture.getSecurityContext(),
                          trustStoreProvider,
+                         new AdaptiveConcurrencyLimiter(metrics),
+                         new AdaptiveTimeouts(metrics),
+                         new PublishedPayloads(metrics),
                          new GitHubBuildContextProvider()
       );
 
     @SuppressWarnings("deprecation") final CommitStatusPublisherSettings gitlabSettings =
-      new GitlabSettings(new MockPluginDescriptor(), myWebLinks, problems, trustStoreProvider, history,
+      new GitlabSettings(new MockPluginDescriptor(), myWebLinks, problems, trustStoreProvider, new AdaptiveConcurrencyLimiter(metrics), new AdaptiveTimeouts(metrics), new PublishedPayloads(metrics), history, new VcsModificationsMemo(),
                          myFixture.getSingletonService(OAuthConnectionsManager.class),
                          myFixture.getSingletonService(OAuthTokensStorage.class),
                          getUserModelEx(),
@@ -295,6 +310,9 @@ public class CommitStatusPublisherFeatureManagerTest extends BaseServerTestCase
       myWebLinks,
       problems,
       trustStoreProvider,
+      new AdaptiveConcurrencyLimiter(metrics),
+      new AdaptiveTimeouts(metrics),
+      new PublishedPayloads(metrics),
       myFixture.getSingletonService(OAuthConnectionsManager.class),
       myFixture.getSingletonService(OAuthTokensStorage.class),
       getUserModelEx(),
@@ -304,13 +322,13 @@ public class CommitStatusPublisherFeatureManagerTest extends BaseServerTestCase
     );
 
     @SuppressWarnings("deprecation") final CommitStatusPublisherSettings stashSettings =
-      new StashSettings(new MockPluginDescriptor(), myWebLinks, problems, trustStoreProvider, myFixture.getSingletonService(OAuthConnectionsManager.class),
+      new StashSettings(new MockPluginDescriptor(), myWebLinks, problems, trustStoreProvider, new AdaptiveConcurrencyLimiter(metrics), new AdaptiveTimeouts(metrics), new PublishedPayloads(metrics), myFixture.getSingletonService(OAuthConnectionsManager.class),
                         myFixture.getSingletonService(OAuthTokensStorage.class), myFixture.getUserModel(), myFixture.getSecurityContext(), myFixture.getProjectManager(),
                         new StashBuildNameProvider());
 
     @SuppressWarnings("deprecation") final CommitStatusPublisherSettings tfsPublisherSettings =
       new TfsPublisherSettings(new MockPluginDescriptor(), myWebLinks, problems, myFixture.getSingletonService(OAuthConnectionsManager.class),
-                               myFixture.getSingletonService(OAuthTokensStorage.class), myFixture.getSecurityContext(), myFixture.getUserModel(), trustStoreProvider,
+                               myFixture.getSingletonService(OAuthTokensStorage.class), myFixture.getSecurityContext(), myFixture.getUserModel(), trustStoreProvider, new AdaptiveConcurrencyLimiter(metrics), new AdaptiveTimeouts(metrics), new PublishedPayloads(metrics),
                                new TfsBuildNameProvider(), myFixture.getProjectManager());
 
     myServer.registerExtension(CommitStatusPublisherSettings.class, "gitHubSettings", gitHubSettings);
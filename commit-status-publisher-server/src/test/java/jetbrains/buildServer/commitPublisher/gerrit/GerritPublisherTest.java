@@ -68,7 +68,7 @@ public class GerritPublisherTest extends CommitStatusPublisherTest {
     myPublisherSettings = new GerritSettings(new MockPluginDescriptor(),
                                              myFixture.getSingletonService(ExtensionHolder.class),
                                              myGerritClient,
-                                             myWebLinks, myProblems, myTrustStoreProvider);
+                                             myWebLinks, myProblems, myTrustStoreProvider, new AdaptiveConcurrencyLimiter(new PublishingMetrics()), new AdaptiveTimeouts(new PublishingMetrics()), new PublishedPayloads(new PublishingMetrics()));
     Map<String, String> params = getPublisherParams();
     myPublisher = new GerritPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myGerritClient, myWebLinks, params, myProblems);
     myBranch = "custom_branch";
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CombinedCommitStatus;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
+import org.jetbrains.annotations.NotNull;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class CombinedStatusScannerTest extends BaseTestCase {
+
+  private List<CommitStatus> myStatuses;
+  private Set<Integer> myReadPages;
+  private Set<Integer> myPageSizes;
+  private ExecutorService myExecutor;
+  private CombinedStatusScanner myScanner;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myStatuses = new ArrayList<>();
+    myReadPages = ConcurrentHashMap.newKeySet();
+    myPageSizes = ConcurrentHashMap.newKeySet();
+    myExecutor = Executors.newFixedThreadPool(4);
+    myScanner = new CombinedStatusScanner(myExecutor);
+  }
+
+  @AfterMethod
+  @Override
+  protected void tearDown() throws Exception {
+    myExecutor.shutdownNow();
+    super.tearDown();
+  }
+
+  public void stops_on_first_page_with_context() throws Exception {
+    addStatuses(250);
+
+    CombinedStatusScanner.Result result = myScanner.scan(this::read, "context10", Integer.MAX_VALUE);
+
+    then(result.getFound()).isNotNull();
+    then(result.getFound().context).isEqualTo("context10");
+    then(result.getSeen()).hasSize(100);
+    then(myReadPages).containsOnly(1);
+    then(myPageSizes).containsOnly(100);
+  }
+
+  public void reads_rest_of_pages_until_context_is_found() throws Exception {
+    addStatuses(250);
+
+    CombinedStatusScanner.Result result = myScanner.scan(this::read, "context210", Integer.MAX_VALUE);
+
+    then(result.getFound()).isNotNull();
+    then(result.getFound().context).isEqualTo("context210");
+    then(result.getSeen()).extracting(status -> status.context).contains("context0", "context99", "context210");
+    then(myReadPages).contains(1, 3);
+  }
+
+  public void returns_all_statuses_when_context_is_missing() throws Exception {
+    addStatuses(250);
+
+    CombinedStatusScanner.Result result = myScanner.scan(this::read, "missing", Integer.MAX_VALUE);
+
+    then(result.getFound()).isNull();
+    then(result.getSeen()).hasSize(250);
+    then(myReadPages).containsOnly(1, 2, 3);
+  }
+
+  public void pages_are_read_by_scanning_thread_when_executor_does_not_run_them() throws Exception {
+    addStatuses(250);
+    CombinedStatusScanner scanner = new CombinedStatusScanner(command -> {});
+
+    CombinedStatusScanner.Result result = scanner.scan(this::read, "missing", Integer.MAX_VALUE);
+
+    then(result.getSeen()).hasSize(250);
+    then(myReadPages).containsOnly(1, 2, 3);
+  }
+
+  public void does_not_read_more_than_limit() throws Exception {
+    addStatuses(250);
+
+    CombinedStatusScanner.Result result = myScanner.scan(this::read, "missing", 50);
+
+    then(result.getSeen()).hasSize(50);
+    then(myReadPages).containsOnly(1);
+    then(myPageSizes).containsOnly(50);
+  }
+
+  public void sequential_reading() throws Exception {
+    setInternalProperty(CombinedStatusScanner.PARALLELISM_PROPERTY, "1");
+    setInternalProperty(CombinedStatusScanner.PAGE_SIZE_PROPERTY, "30");
+    addStatuses(100);
+
+    CombinedStatusScanner.Result result = myScanner.scan(this::read, "context45", Integer.MAX_VALUE);
+
+    then(result.getFound()).isNotNull();
+    then(result.getSeen()).hasSize(60);
+    then(myReadPages).containsOnly(1, 2);
+  }
+
+  public void page_failure_is_reported() {
+    addStatuses(250);
+
+    try {
+      myScanner.scan((perPage, page) -> {
+        if (page == 2) throw new IOException("Failed to read page");
+        return read(perPage, page);
+      }, "missing", Integer.MAX_VALUE);
+      fail("Exception expected");
+    } catch (IOException e) {
+      then(e).hasMessage("Failed to read page");
+    } catch (PublisherException e) {
+      fail("Unexpected exception", e);
+    }
+  }
+
+  public void no_statuses() throws Exception {
+    CombinedStatusScanner.Result result = myScanner.scan(this::read, "context", Integer.MAX_VALUE);
+
+    then(result.getFound()).isNull();
+    then(result.getSeen()).isEmpty();
+    then(myReadPages).containsOnly(1);
+  }
+
+  private void addStatuses(int count) {
+    for (int i = 0; i < count; i++) {
+      myStatuses.add(new CommitStatus("success", null, null, "context" + i));
+    }
+  }
+
+  @NotNull
+  private CombinedCommitStatus read(int perPage, int page) {
+    myReadPages.add(page);
+    myPageSizes.add(perPage);
+    CombinedCommitStatus result = new CombinedCommitStatus();
+    int from = Math.min((page - 1) * perPage, myStatuses.size());
+    result.statuses = new ArrayList<>(myStatuses.subList(from, Math.min(from + perPage, myStatuses.size())));
+    result.total_count = myStatuses.size();
+    return result;
+  }
+}
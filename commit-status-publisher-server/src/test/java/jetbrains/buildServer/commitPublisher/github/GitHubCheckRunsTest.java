@@ -0,0 +1,168 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.Repository;
+import jetbrains.buildServer.commitPublisher.github.api.GitHubApi;
+import jetbrains.buildServer.commitPublisher.github.api.GitHubChangeState;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CheckRun;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitCheckRuns;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
+import org.mockito.ArgumentCaptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.Mockito.*;
+
+@Test
+public class GitHubCheckRunsTest extends BaseTestCase {
+
+  private static final Repository REPO = new Repository("https://github.com/owner/project", "owner", "project");
+
+  private GitHubApi myApi;
+  private GitHubCheckRuns myCheckRuns;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myApi = mock(GitHubApi.class);
+    when(myApi.createCheckRun(anyString(), anyString(), any())).thenReturn(42L);
+    myCheckRuns = new GitHubCheckRuns();
+  }
+
+  public void check_run_is_created_once_and_updated_in_place() throws Exception {
+    myCheckRuns.publish(myApi, REPO, "hash", 1, "context", checkRun(GitHubChangeState.Pending, true), Collections.emptyList());
+    myCheckRuns.publish(myApi, REPO, "hash", 1, "context", checkRun(GitHubChangeState.Pending, false), Collections.emptyList());
+    myCheckRuns.publish(myApi, REPO, "hash", 1, "context", checkRun(GitHubChangeState.Success, false), Collections.emptyList());
+
+    ArgumentCaptor<CheckRun> created = ArgumentCaptor.forClass(CheckRun.class);
+    verify(myApi, times(1)).createCheckRun(eq("owner"), eq("project"), created.capture());
+    then(created.getValue().name).isEqualTo("context");
+    then(created.getValue().head_sha).isEqualTo("hash");
+    then(created.getValue().status).isEqualTo("queued");
+
+    ArgumentCaptor<CheckRun> updated = ArgumentCaptor.forClass(CheckRun.class);
+    verify(myApi, times(2)).updateCheckRun(eq("owner"), eq("project"), eq(42L), updated.capture());
+    then(updated.getAllValues()).extracting(checkRun -> checkRun.status).containsExactly("in_progress", "completed");
+    then(updated.getAllValues().get(1).conclusion).isEqualTo("success");
+  }
+
+  public void check_runs_are_kept_per_promotion_and_context() throws Exception {
+    myCheckRuns.publish(myApi, REPO, "hash", 1, "context", checkRun(GitHubChangeState.Pending, false), Collections.emptyList());
+    myCheckRuns.publish(myApi, REPO, "hash", 2, "context", checkRun(GitHubChangeState.Pending, false), Collections.emptyList());
+    myCheckRuns.publish(myApi, REPO, "hash", 1, "context - merge", checkRun(GitHubChangeState.Pending, false), Collections.emptyList());
+
+    verify(myApi, times(3)).createCheckRun(eq("owner"), eq("project"), any());
+    verify(myApi, never()).updateCheckRun(anyString(), anyString(), anyLong(), any());
+  }
+
+  public void annotations_are_sent_in_batches() throws Exception {
+    List<CheckRun.Annotation> annotations = new ArrayList<>();
+    for (int i = 0; i < 120; i++) {
+      annotations.add(new CheckRun.Annotation());
+    }
+
+    myCheckRuns.publish(myApi, REPO, "hash", 1, "context", checkRun(GitHubChangeState.Failure, false), annotations);
+
+    ArgumentCaptor<CheckRun> created = ArgumentCaptor.forClass(CheckRun.class);
+    verify(myApi).createCheckRun(eq("owner"), eq("project"), created.capture());
+    then(created.getValue().output.annotations).hasSize(GitHubCheckRuns.ANNOTATIONS_PER_REQUEST);
+
+    ArgumentCaptor<CheckRun> updated = ArgumentCaptor.forClass(CheckRun.class);
+    verify(myApi, times(2)).updateCheckRun(eq("owner"), eq("project"), eq(42L), updated.capture());
+    then(updated.getAllValues()).extracting(checkRun -> checkRun.output.annotations.size()).containsExactly(50, 20);
+  }
+
+  public void check_run_is_created_again_when_update_fails() throws Exception {
+    myCheckRuns.publish(myApi, REPO, "hash", 1, "context", checkRun(GitHubChangeState.Pending, false), Collections.emptyList());
+    doThrow(new PublisherException("Not found")).when(myApi).updateCheckRun(anyString(), anyString(), anyLong(), any());
+
+    myCheckRuns.publish(myApi, REPO, "hash", 1, "context", checkRun(GitHubChangeState.Success, false), Collections.emptyList());
+
+    verify(myApi, times(2)).createCheckRun(eq("owner"), eq("project"), any());
+  }
+
+  public void retryable_failure_is_reported() throws Exception {
+    myCheckRuns.publish(myApi, REPO, "hash", 1, "context", checkRun(GitHubChangeState.Pending, false), Collections.emptyList());
+    doThrow(new PublisherException("Service unavailable").setShouldRetry()).when(myApi).updateCheckRun(anyString(), anyString(), anyLong(), any());
+
+    try {
+      myCheckRuns.publish(myApi, REPO, "hash", 1, "context", checkRun(GitHubChangeState.Success, false), Collections.emptyList());
+      fail("Exception expected");
+    } catch (PublisherException e) {
+      then(e.shouldRetry()).isTrue();
+    }
+    verify(myApi, times(1)).createCheckRun(eq("owner"), eq("project"), any());
+  }
+
+  public void states_of_queued_builds() {
+    then(checkRun(GitHubChangeState.Pending, true).status).isEqualTo("queued");
+    then(checkRun(GitHubChangeState.Success, true).conclusion).isEqualTo("skipped");
+    then(checkRun(GitHubChangeState.Failure, true).conclusion).isEqualTo("cancelled");
+  }
+
+  public void states_of_builds() {
+    then(checkRun(GitHubChangeState.Pending, false).status).isEqualTo("in_progress");
+    then(checkRun(GitHubChangeState.Success, false).conclusion).isEqualTo("success");
+    then(checkRun(GitHubChangeState.Failure, false).conclusion).isEqualTo("failure");
+    then(checkRun(GitHubChangeState.Error, false).conclusion).isEqualTo("failure");
+  }
+
+  public void published_states_are_read_back_as_statuses() {
+    for (GitHubChangeState state : new GitHubChangeState[]{GitHubChangeState.Pending, GitHubChangeState.Success, GitHubChangeState.Failure}) {
+      for (boolean queued : new boolean[]{true, false}) {
+        CheckRun checkRun = checkRun(state, queued);
+        checkRun.name = "context";
+        CommitStatus status = GitHubCheckRuns.toCommitStatus(checkRun);
+        then(status.state).isEqualTo(state.getState());
+        then(status.description).isEqualTo("description");
+        then(status.target_url).isEqualTo("http://teamcity/build/1");
+        then(status.context).isEqualTo("context");
+      }
+    }
+  }
+
+  public void check_runs_are_read_by_pages() throws Exception {
+    when(myApi.readCheckRuns("owner", "project", "hash", GitHubCheckRuns.CHECK_RUNS_PER_PAGE, 1)).thenReturn(checkRuns(150, GitHubCheckRuns.CHECK_RUNS_PER_PAGE));
+    when(myApi.readCheckRuns("owner", "project", "hash", GitHubCheckRuns.CHECK_RUNS_PER_PAGE, 2)).thenReturn(checkRuns(150, 50));
+
+    then(GitHubCheckRuns.readAsStatuses(myApi, REPO, "hash", Integer.MAX_VALUE)).hasSize(150);
+    then(GitHubCheckRuns.readAsStatuses(myApi, REPO, "hash", 10)).hasSize(10);
+    verify(myApi, times(3)).readCheckRuns(anyString(), anyString(), anyString(), anyInt(), anyInt());
+  }
+
+  private static CommitCheckRuns checkRuns(int total, int count) {
+    CommitCheckRuns checkRuns = new CommitCheckRuns();
+    checkRuns.total_count = total;
+    checkRuns.check_runs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      checkRuns.check_runs.add(checkRun(GitHubChangeState.Success, false));
+    }
+    return checkRuns;
+  }
+
+  private static CheckRun checkRun(GitHubChangeState state, boolean queued) {
+    return GitHubCheckRuns.toCheckRun(state, queued, "context", "description", "http://teamcity/build/1");
+  }
+}
@@ -1,10 +1,19 @@
 package jetbrains.buildServer.commitPublisher.github;
 
 import com.google.common.collect.ImmutableMap;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.commitPublisher.VcsModificationsMemo;
+import jetbrains.buildServer.commitPublisher.github.api.impl.ETagCache;
 import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubApiFactoryImpl;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubInstallations;
 import jetbrains.buildServer.commitPublisher.github.api.impl.HttpClientWrapperImpl;
+import jetbrains.buildServer.commitPublisher.github.api.impl.PermissionProbes;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
@@ -29,11 +38,15 @@ public class GitHubCommitStatusPublisherFeatureBuilderTest extends BaseServerTes
   public void setUp() throws Exception {
     super.setUp();
 
+    final PublishingMetrics metrics = new PublishingMetrics();
+    final AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(metrics);
+    final GitHubInstallations installations = new GitHubInstallations(concurrencyLimiter, metrics);
     @SuppressWarnings("deprecation") final ChangeStatusUpdater changeStatusUpdater =
-      new ChangeStatusUpdater(new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null),
+      new ChangeStatusUpdater(new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null, concurrencyLimiter, new AdaptiveTimeouts(metrics), installations),
                                                        myFixture.getSingletonService(OAuthTokensStorage.class),
                                                        myFixture.getSingletonService(OAuthConnectionsManager.class),
-                                                       myFixture.getProjectManager()), myFixture.getVcsHistory());
+                                                       myFixture.getProjectManager(), new PublishedPayloads(metrics), new ETagCache(metrics), new PermissionProbes(metrics), installations), myFixture.getVcsHistory(), new VcsModificationsMemo(),
+                              myFixture.getSingletonService(ExecutorServices.class), metrics);
 
     final CommitStatusPublisherProblems problems = new CommitStatusPublisherProblems(myFixture.getSingletonService(BuildProblemsTicketManager.class));
 
@@ -46,6 +59,9 @@ public class GitHubCommitStatusPublisherFeatureBuilderTest extends BaseServerTes
                                                                                         myFixture.getSingletonService(OAuthTokensStorage.class),
                                                                                         myFixture.getSecurityContext(),
                                                                                         trustStoreProvider,
+                                                                                        new AdaptiveConcurrencyLimiter(metrics),
+                                                                                        new AdaptiveTimeouts(metrics),
+                                                                                        new PublishedPayloads(metrics),
                                                                                         buildNameProvider);
 
     myGitHubFeatureBuilder = new GitHubCommitStatusPublisherFeatureBuilder(settings);
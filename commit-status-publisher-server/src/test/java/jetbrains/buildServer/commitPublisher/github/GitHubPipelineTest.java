@@ -0,0 +1,132 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class GitHubPipelineTest extends BaseTestCase {
+
+  private Deque<Runnable> myExecutorQueue;
+  private GitHubPipeline myPipeline;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myExecutorQueue = new ArrayDeque<>();
+    myPipeline = new GitHubPipeline(myExecutorQueue::addLast);
+  }
+
+  public void step_runs_while_caller_proceeds() throws Exception {
+    setInternalProperty(GitHubPipeline.ENABLED_PROPERTY, "true");
+    CountDownLatch stepStarted = new CountDownLatch(1);
+    CountDownLatch callerProceeded = new CountDownLatch(1);
+    GitHubPipeline pipeline = new GitHubPipeline(command -> new Thread(command, "GitHub publishing pipeline").start());
+
+    CallerRunsTask<String> stage = pipeline.start(() -> {
+      stepStarted.countDown();
+      try {
+        // the step can only complete once the caller has done its own work
+        then(callerProceeded.await(10, TimeUnit.SECONDS)).isTrue();
+      } catch (InterruptedException e) {
+        throw new PublisherException("Interrupted", e);
+      }
+      return Thread.currentThread().getName();
+    });
+    then(stepStarted.await(10, TimeUnit.SECONDS)).isTrue();
+    callerProceeded.countDown();
+
+    then(stage.await()).isEqualTo("GitHub publishing pipeline");
+  }
+
+  public void step_not_taken_by_executor_runs_on_await() throws Exception {
+    setInternalProperty(GitHubPipeline.ENABLED_PROPERTY, "true");
+    AtomicInteger runs = new AtomicInteger();
+
+    CallerRunsTask<String> stage = myPipeline.start(() -> {
+      runs.incrementAndGet();
+      return "result";
+    });
+    then(myExecutorQueue).hasSize(1);
+
+    then(stage.await()).isEqualTo("result");
+    myExecutorQueue.poll().run();
+    then(runs.get()).isEqualTo(1);
+  }
+
+  public void cancelled_step_is_not_run() {
+    setInternalProperty(GitHubPipeline.ENABLED_PROPERTY, "true");
+    AtomicInteger runs = new AtomicInteger();
+
+    myPipeline.start(runs::incrementAndGet).cancel();
+    myExecutorQueue.poll().run();
+
+    then(runs.get()).isZero();
+  }
+
+  public void step_runs_on_await_when_disabled() throws Exception {
+    AtomicReference<String> thread = new AtomicReference<>();
+
+    CallerRunsTask<String> stage = myPipeline.start(() -> {
+      thread.set(Thread.currentThread().getName());
+      return "result";
+    });
+    then(thread.get()).isNull();
+    then(myExecutorQueue).isEmpty();
+
+    then(stage.await()).isEqualTo("result");
+    then(thread.get()).isEqualTo(Thread.currentThread().getName());
+  }
+
+  public void step_failure_is_reported() throws Exception {
+    setInternalProperty(GitHubPipeline.ENABLED_PROPERTY, "true");
+
+    CallerRunsTask<String> ioFailure = myPipeline.start(() -> {
+      throw new IOException("Connection reset");
+    });
+    CallerRunsTask<String> publisherFailure = myPipeline.start(() -> {
+      throw new PublisherException("Not found");
+    });
+    myExecutorQueue.forEach(Runnable::run);
+
+    try {
+      ioFailure.await();
+      fail("Exception expected");
+    } catch (IOException e) {
+      then(e).hasMessage("Connection reset");
+    }
+    try {
+      publisherFailure.await();
+      fail("Exception expected");
+    } catch (PublisherException e) {
+      then(e).hasMessage("Not found");
+    }
+  }
+}
@@ -23,14 +23,18 @@ import java.util.*;
 import jetbrains.buildServer.MockBuildPromotion;
 import jetbrains.buildServer.commitPublisher.*;
 import jetbrains.buildServer.commitPublisher.github.api.GitHubChangeState;
+import jetbrains.buildServer.commitPublisher.github.api.impl.ETagCache;
 import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubApiFactoryImpl;
+import jetbrains.buildServer.commitPublisher.github.api.impl.GitHubInstallations;
 import jetbrains.buildServer.commitPublisher.github.api.impl.HttpClientWrapperImpl;
+import jetbrains.buildServer.commitPublisher.github.api.impl.PermissionProbes;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.CombinedCommitStatus;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.Permissions;
 import jetbrains.buildServer.commitPublisher.github.api.impl.data.RepoInfo;
 import jetbrains.buildServer.messages.Status;
 import jetbrains.buildServer.serverSide.*;
+import jetbrains.buildServer.serverSide.executors.ExecutorServices;
 import jetbrains.buildServer.serverSide.impl.PipelineViewImpl;
 import jetbrains.buildServer.serverSide.impl.ProjectEx;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
@@ -86,6 +90,12 @@ public class GitHubPublisherTest extends HttpPublisherTest {
     test_buildFinished_Successfully();
   }
 
+  public void test_buildFinishedSuccessfully_checks_enabled_without_installation_token() throws Exception {
+    // check runs can't be created with a personal token, commit statuses are published instead
+    setInternalProperty(GitHubCheckRuns.ENABLED_PROPERTY, "true");
+    test_buildFinished_Successfully();
+  }
+
   public void test_buildFinishedSuccessfully_server_url_with_slash() throws Exception {
     Map<String, String> params = getPublisherParams();
     setExpectedApiPath("/subdir/api/v3");
@@ -177,14 +187,18 @@ public class GitHubPublisherTest extends HttpPublisherTest {
     Map<String, String> params = getPublisherParams();
     myBuildType.getProject().addParameter(new SimpleParameter("teamcity.commitStatusPublisher.publishQueuedBuildStatus", "true"));
 
-    myChangeStatusUpdater = new ChangeStatusUpdater(new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null),
+    final PublishingMetrics metrics = new PublishingMetrics();
+    final AdaptiveConcurrencyLimiter concurrencyLimiter = new AdaptiveConcurrencyLimiter(metrics);
+    final GitHubInstallations installations = new GitHubInstallations(concurrencyLimiter, metrics);
+    myChangeStatusUpdater = new ChangeStatusUpdater(new GitHubApiFactoryImpl(new HttpClientWrapperImpl(new HTTPRequestBuilder.ApacheClient43RequestHandler(), () -> null, concurrencyLimiter, new AdaptiveTimeouts(metrics), installations),
                                                                              myFixture.getSingletonService(OAuthTokensStorage.class),
                                                                              myFixture.getSingletonService(OAuthConnectionsManager.class),
-                                                                             myFixture.getProjectManager()), myFixture.getVcsHistory());
+                                                                             myFixture.getProjectManager(), new PublishedPayloads(metrics), new ETagCache(metrics), new PermissionProbes(metrics), installations), myFixture.getVcsHistory(), new VcsModificationsMemo(),
+                                                    myFixture.getSingletonService(ExecutorServices.class), metrics);
 
     myPublisherSettings = new GitHubSettings(myChangeStatusUpdater, new MockPluginDescriptor(), myWebLinks, myProblems,
                                              myOAuthConnectionsManager, myOAuthTokenStorage, myFixture.getSecurityContext(),
-                                             myTrustStoreProvider, myBuildNameProvider);
+                                             myTrustStoreProvider, new AdaptiveConcurrencyLimiter(metrics), new AdaptiveTimeouts(metrics), new PublishedPayloads(metrics), myBuildNameProvider);
     myPublisher = new GitHubPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myChangeStatusUpdater, params, myProblems, myWebLinks, myBuildNameProvider, new CommitStatusesCache<>());
   }
 
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitStatus;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@Test
+public class GitHubStatusesBatchReaderTest extends BaseTestCase {
+
+  private GitHubApi myApi;
+  private GitHubStatusesBatchReader myReader;
+  private ExecutorService myExecutor;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    setInternalProperty(GitHubStatusesBatchReader.WINDOW_PROPERTY, "500");
+    myApi = mock(GitHubApi.class);
+    when(myApi.readCommitStatuses(anyString(), anyString(), anyCollection())).thenAnswer(invocation -> {
+      Map<String, Collection<CommitStatus>> result = new HashMap<>();
+      for (Object hash : (Collection<?>)invocation.getArgument(2)) {
+        result.put((String)hash, Collections.singletonList(new CommitStatus("success", null, null, "context-" + hash)));
+      }
+      return result;
+    });
+    myReader = new GitHubStatusesBatchReader(new PublishingMetrics());
+    myExecutor = Executors.newFixedThreadPool(4);
+  }
+
+  @AfterMethod
+  @Override
+  protected void tearDown() throws Exception {
+    myExecutor.shutdownNow();
+    super.tearDown();
+  }
+
+  public void concurrent_reads_are_merged() throws Exception {
+    List<Future<Collection<CommitStatus>>> reads = new ArrayList<>();
+    for (String hash : Arrays.asList("aaa", "bbb", "ccc", "aaa")) {
+      reads.add(myExecutor.submit(() -> myReader.read("key", myApi, "owner", "repo", hash)));
+    }
+
+    then(reads.get(0).get(10, TimeUnit.SECONDS)).extracting(status -> status.context).containsExactly("context-aaa");
+    then(reads.get(1).get(10, TimeUnit.SECONDS)).extracting(status -> status.context).containsExactly("context-bbb");
+    then(reads.get(2).get(10, TimeUnit.SECONDS)).extracting(status -> status.context).containsExactly("context-ccc");
+    then(reads.get(3).get(10, TimeUnit.SECONDS)).extracting(status -> status.context).containsExactly("context-aaa");
+    verify(myApi, times(1)).readCommitStatuses(eq("owner"), eq("repo"), argThat(hashes -> hashes.size() == 3));
+  }
+
+  public void full_batch_is_read_without_waiting_for_window() throws Exception {
+    setInternalProperty(GitHubStatusesBatchReader.WINDOW_PROPERTY, "60000");
+    setInternalProperty(GitHubStatusesBatchReader.MAX_COMMITS_PROPERTY, "2");
+    Future<Collection<CommitStatus>> first = myExecutor.submit(() -> myReader.read("key", myApi, "owner", "repo", "aaa"));
+    Future<Collection<CommitStatus>> second = myExecutor.submit(() -> myReader.read("key", myApi, "owner", "repo", "bbb"));
+
+    then(first.get(10, TimeUnit.SECONDS)).hasSize(1);
+    then(second.get(10, TimeUnit.SECONDS)).hasSize(1);
+  }
+
+  public void reads_with_different_keys_are_not_merged() throws Exception {
+    Future<Collection<CommitStatus>> first = myExecutor.submit(() -> myReader.read("key1", myApi, "owner", "repo1", "aaa"));
+    Future<Collection<CommitStatus>> second = myExecutor.submit(() -> myReader.read("key2", myApi, "owner", "repo2", "aaa"));
+
+    then(first.get(10, TimeUnit.SECONDS)).hasSize(1);
+    then(second.get(10, TimeUnit.SECONDS)).hasSize(1);
+    verify(myApi, times(1)).readCommitStatuses(eq("owner"), eq("repo1"), anyCollection());
+    verify(myApi, times(1)).readCommitStatuses(eq("owner"), eq("repo2"), anyCollection());
+  }
+
+  public void failure_is_reported_to_all_reads_of_batch() throws Exception {
+    setInternalProperty(GitHubStatusesBatchReader.WINDOW_PROPERTY, "0");
+    when(myApi.readCommitStatuses(anyString(), anyString(), anyCollection())).thenThrow(new PublisherException("Query failed"));
+
+    try {
+      myReader.read("key", myApi, "owner", "repo", "aaa");
+      fail("Exception expected");
+    } catch (PublisherException e) {
+      then(e).hasMessage("Query failed");
+    }
+  }
+
+  public void unknown_commit() throws IOException, PublisherException {
+    setInternalProperty(GitHubStatusesBatchReader.WINDOW_PROPERTY, "0");
+    when(myApi.readCommitStatuses(anyString(), anyString(), anyCollection())).thenReturn(Collections.emptyMap());
+
+    then(myReader.read("key", myApi, "owner", "repo", "aaa")).isNull();
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.CommitInfo;
+import jetbrains.buildServer.commitPublisher.github.api.impl.data.PullRequestInfo;
+import jetbrains.buildServer.http.SimpleCredentials;
+import org.apache.http.HttpHeaders;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class ETagCacheTest extends BaseTestCase {
+
+  private static final String URL = "https://api.github.com/repos/owner/repo/pulls/1";
+
+  private ETagCache myCache;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myCache = new ETagCache(new PublishingMetrics());
+  }
+
+  public void conditional_header_for_known_response() {
+    String key = ETagCache.getKey(URL, new SimpleCredentials("user", "token"));
+    PullRequestInfo info = new PullRequestInfo();
+    myCache.put(key, "\"etag1\"", info);
+
+    Map<String, String> headers = new HashMap<>();
+    myCache.addConditionalHeader(key, headers);
+    then(headers).containsEntry(HttpHeaders.IF_NONE_MATCH, "\"etag1\"");
+    then(myCache.getNotModified(key, PullRequestInfo.class)).isSameAs(info);
+    then(myCache.getNotModified(key, CommitInfo.class)).isNull();
+  }
+
+  public void responses_are_kept_per_credentials() {
+    myCache.put(ETagCache.getKey(URL, new SimpleCredentials("user", "token")), "\"etag1\"", new PullRequestInfo());
+
+    Map<String, String> headers = new HashMap<>();
+    myCache.addConditionalHeader(ETagCache.getKey(URL, new SimpleCredentials("user", "another token")), headers);
+    then(headers).isEmpty();
+    then(ETagCache.getKey(URL, new SimpleCredentials("user", "token"))).doesNotContain("token");
+  }
+
+  public void response_without_etag_is_not_kept() {
+    String key = ETagCache.getKey(URL, new SimpleCredentials("user", "token"));
+    myCache.put(key, "\"etag1\"", new PullRequestInfo());
+    myCache.put(key, null, new PullRequestInfo());
+
+    Map<String, String> headers = new HashMap<>();
+    myCache.addConditionalHeader(key, headers);
+    then(headers).isEmpty();
+    then(myCache.getNotModified(key, PullRequestInfo.class)).isNull();
+  }
+
+  public void disabled() {
+    setInternalProperty(ETagCache.ENABLED_PROPERTY, "false");
+    String key = ETagCache.getKey(URL, new SimpleCredentials("user", "token"));
+    myCache.put(key, "\"etag1\"", new PullRequestInfo());
+
+    Map<String, String> headers = new HashMap<>();
+    myCache.addConditionalHeader(key, headers);
+    then(headers).isEmpty();
+  }
+}
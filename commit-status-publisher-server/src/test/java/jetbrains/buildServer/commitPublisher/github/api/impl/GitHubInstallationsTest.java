@@ -0,0 +1,136 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.PublisherException;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.http.SimpleCredentials;
+import jetbrains.buildServer.util.HTTPRequestBuilder;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.Mockito.*;
+
+@Test
+public class GitHubInstallationsTest extends BaseTestCase {
+
+  private static final SimpleCredentials APP_TOKEN = new SimpleCredentials("oauth2", "installation-token");
+  private static final String APP = "https://api.github.com|PROJECT_EXT_1";
+
+  private GitHubInstallations myInstallations;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myInstallations = new GitHubInstallations(new AdaptiveConcurrencyLimiter(new PublishingMetrics()), new PublishingMetrics());
+    setInternalProperty(GitHubInstallations.ENABLED_PROPERTY, "true");
+    setInternalProperty(GitHubInstallations.MAX_CONCURRENT_REQUESTS_PROPERTY, "1");
+    setInternalProperty(GitHubInstallations.ACQUIRE_TIMEOUT_PROPERTY, "10");
+    myInstallations.registerToken("installation-token", APP);
+  }
+
+  public void requests_of_installation_are_limited() throws Exception {
+    GitHubInstallations.Permit permit = myInstallations.acquire("https://api.github.com/repos/owner/repo1/statuses/hash", APP_TOKEN);
+    try {
+      myInstallations.acquire("https://api.github.com/repos/owner/repo2/statuses/hash", APP_TOKEN);
+      fail("Exception expected");
+    } catch (PublisherException e) {
+      then(e.shouldRetry()).isTrue();
+    }
+
+    // another installation of the app
+    myInstallations.acquire("https://api.github.com/repos/another/repo1/statuses/hash", APP_TOKEN);
+
+    permit.release(null);
+    then(myInstallations.acquire("https://api.github.com/repos/owner/repo2/statuses/hash", APP_TOKEN)).isNotNull();
+  }
+
+  public void requests_with_other_tokens_are_not_limited() throws Exception {
+    SimpleCredentials otherToken = new SimpleCredentials("x-oauth-basic", "personal-token");
+    myInstallations.acquire("https://api.github.com/repos/owner/repo/statuses/hash", otherToken);
+    myInstallations.acquire("https://api.github.com/repos/owner/repo/statuses/hash", otherToken);
+  }
+
+  public void requests_are_not_made_when_quota_is_nearly_exhausted() throws Exception {
+    long reset = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 600;
+    myInstallations.acquire("https://api.github.com/repos/owner/repo1/statuses/hash", APP_TOKEN).release(response("50", reset));
+    then(myInstallations.getRemaining()).containsEntry(APP + "|owner", 50);
+
+    try {
+      myInstallations.acquire("https://api.github.com/repos/owner/repo2/statuses/hash", APP_TOKEN);
+      fail("Exception expected");
+    } catch (PublisherException e) {
+      then(e.shouldRetry()).isTrue();
+    }
+  }
+
+  public void quota_is_restored_after_reset() throws Exception {
+    long reset = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) - 1;
+    myInstallations.acquire("https://api.github.com/repos/owner/repo1/statuses/hash", APP_TOKEN).release(response("0", reset));
+
+    then(myInstallations.acquire("https://api.github.com/repos/owner/repo1/statuses/hash", APP_TOKEN)).isNotNull();
+  }
+
+  public void repositories_are_served_in_turns() throws Exception {
+    GitHubInstallations.Installation installation = new GitHubInstallations.Installation();
+    List<String> served = Collections.synchronizedList(new ArrayList<>());
+    then(installation.acquire("owner/busy", 0)).isTrue();
+
+    List<Thread> threads = new ArrayList<>();
+    for (String repository : new String[]{"owner/busy", "owner/busy", "owner/quiet"}) {
+      Thread thread = new Thread(() -> {
+        try {
+          if (installation.acquire(repository, 10_000)) {
+            served.add(repository);
+            installation.release(null);
+          }
+        } catch (InterruptedException ignored) {
+        }
+      });
+      thread.start();
+      waitForWaiting(thread);
+      threads.add(thread);
+    }
+
+    installation.release(null);
+    for (Thread thread : threads) {
+      thread.join(10_000);
+    }
+    then(served).containsExactly("owner/busy", "owner/quiet", "owner/busy");
+  }
+
+  private static void waitForWaiting(Thread thread) throws InterruptedException {
+    while (thread.getState() != Thread.State.TIMED_WAITING) {
+      Thread.sleep(1);
+    }
+  }
+
+  private static HTTPRequestBuilder.Response response(String remaining, long reset) {
+    HTTPRequestBuilder.Response response = mock(HTTPRequestBuilder.Response.class);
+    when(response.getHeader("X-RateLimit-Remaining")).thenReturn(remaining);
+    when(response.getHeader("X-RateLimit-Reset")).thenReturn(String.valueOf(reset));
+    return response;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
+import jetbrains.buildServer.http.SimpleCredentials;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class PermissionProbesTest extends BaseTestCase {
+
+  private static final String REPO_URL = "https://api.github.com/repos/owner/repo";
+
+  private PermissionProbes myProbes;
+  private String myKey;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myProbes = new PermissionProbes(new PublishingMetrics());
+    myKey = PermissionProbes.getKey(REPO_URL, new SimpleCredentials("x-oauth-basic", "token"));
+  }
+
+  public void nothing_is_known_initially() {
+    then(myProbes.getKnownFailure(myKey)).isNull();
+  }
+
+  public void failure_on_publishing_is_remembered() {
+    myProbes.failed(myKey, "Failed to complete request to GitHub: HTTP/1.1 403 Forbidden");
+
+    then(myProbes.getKnownFailure(myKey)).hasMessageContaining("403");
+    then(myProbes.getKnownFailure(myKey)).hasMessageContaining("403");
+  }
+
+  public void results_are_kept_per_credentials() {
+    myProbes.failed(myKey, "Forbidden");
+
+    String otherKey = PermissionProbes.getKey(REPO_URL, new SimpleCredentials("x-oauth-basic", "another token"));
+    then(myProbes.getKnownFailure(otherKey)).isNull();
+  }
+
+  public void expired_result_is_forgotten() throws Exception {
+    setInternalProperty(PermissionProbes.TTL_PROPERTY, "1");
+    myProbes.failed(myKey, "Forbidden");
+    Thread.sleep(10);
+
+    then(myProbes.getKnownFailure(myKey)).isNull();
+  }
+
+  public void disabled() {
+    setInternalProperty(PermissionProbes.TTL_PROPERTY, "0");
+    myProbes.failed(myKey, "Forbidden");
+
+    then(myProbes.getKnownFailure(myKey)).isNull();
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2000-2024 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package jetbrains.buildServer.commitPublisher.github.api.impl;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import jetbrains.buildServer.BaseTestCase;
+import jetbrains.buildServer.serverSide.oauth.OAuthToken;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+@Test
+public class StoredTokenHolderTest extends BaseTestCase {
+
+  private Deque<OAuthToken> myStoredTokens;
+  private int myLoads;
+  private StoredTokenHolder myHolder;
+
+  @BeforeMethod
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    myStoredTokens = new ArrayDeque<>();
+    myLoads = 0;
+    myHolder = new StoredTokenHolder(() -> {
+      myLoads++;
+      return myStoredTokens.size() > 1 ? myStoredTokens.poll() : myStoredTokens.peek();
+    });
+  }
+
+  public void token_is_resolved_once() {
+    OAuthToken token = createToken("token1", 3600, System.currentTimeMillis());
+    myStoredTokens.add(token);
+
+    then(myHolder.getToken()).isSameAs(token);
+    then(myHolder.getToken()).isSameAs(token);
+    then(myLoads).isEqualTo(1);
+  }
+
+  public void token_is_resolved_again_after_invalidation() {
+    OAuthToken rejected = createToken("token1", 3600, System.currentTimeMillis());
+    OAuthToken refreshed = createToken("token2", 3600, System.currentTimeMillis());
+    myStoredTokens.addAll(Arrays.asList(rejected, refreshed));
+
+    then(myHolder.getToken()).isSameAs(rejected);
+    myHolder.invalidate();
+    then(myHolder.getToken()).isSameAs(refreshed);
+    then(myHolder.getToken()).isSameAs(refreshed);
+    then(myLoads).isEqualTo(2);
+  }
+
+  public void token_is_resolved_again_before_expiration() {
+    // expires in 30 seconds, which is within the default margin
+    OAuthToken expiring = createToken("token1", 3600, System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(3570));
+    OAuthToken refreshed = createToken("token2", 3600, System.currentTimeMillis());
+    myStoredTokens.addAll(Arrays.asList(expiring, refreshed));
+
+    then(myHolder.getToken()).isSameAs(expiring);
+    then(myHolder.getToken()).isSameAs(refreshed);
+    then(myHolder.getToken()).isSameAs(refreshed);
+    then(myLoads).isEqualTo(2);
+  }
+
+  public void not_expiring_token_is_kept_for_ttl() throws InterruptedException {
+    setInternalProperty(StoredTokenHolder.TTL_PROPERTY, "1");
+    OAuthToken token = createToken("token1", -1, System.currentTimeMillis());
+    myStoredTokens.add(token);
+
+    then(myHolder.getToken()).isSameAs(token);
+    Thread.sleep(10);
+    then(myHolder.getToken()).isSameAs(token);
+    then(myLoads).isEqualTo(2);
+  }
+
+  public void missing_token_is_not_kept() {
+    then(myHolder.getToken()).isNull();
+    OAuthToken token = createToken("token1", 3600, System.currentTimeMillis());
+    myStoredTokens.add(token);
+    then(myHolder.getToken()).isSameAs(token);
+  }
+
+  public void disabled() {
+    setInternalProperty(StoredTokenHolder.TTL_PROPERTY, "0");
+    myStoredTokens.add(createToken("token1", 3600, System.currentTimeMillis()));
+
+    myHolder.getToken();
+    myHolder.getToken();
+    then(myLoads).isEqualTo(2);
+  }
+
+  private static OAuthToken createToken(String accessToken, int expiresInSeconds, long createDate) {
+    return new OAuthToken(accessToken, "repo", "x-oauth-user", expiresInSeconds, -1, createDate);
+  }
+}
@@ -1,9 +1,13 @@
 package jetbrains.buildServer.commitPublisher.gitlab;
 
 import com.google.common.collect.ImmutableMap;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherSettings;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
@@ -36,6 +40,9 @@ public class GitLabCommitStatusPublisherFeatureBuilderTest extends BaseServerTes
                          myWebLinks,
                          problems,
                          trustStoreProvider,
+                         new AdaptiveConcurrencyLimiter(new PublishingMetrics()),
+                         new AdaptiveTimeouts(new PublishingMetrics()),
+                         new PublishedPayloads(new PublishingMetrics()),
                          history,
                          myFixture.getSingletonService(OAuthConnectionsManager.class),
                          myFixture.getSingletonService(OAuthTokensStorage.class),
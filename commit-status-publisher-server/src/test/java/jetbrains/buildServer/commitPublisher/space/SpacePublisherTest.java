@@ -95,6 +95,9 @@ public class SpacePublisherTest extends HttpPublisherTest {
                                             myWebLinks,
                                             myProblems,
                                             myTrustStoreProvider,
+                                            new AdaptiveConcurrencyLimiter(new PublishingMetrics()),
+                                            new AdaptiveTimeouts(new PublishingMetrics()),
+                                            new PublishedPayloads(new PublishingMetrics()),
                                             myOAuthConnectionsManager,
                                             myFixture.getSecurityContext(),
                                             applicationInformationManager);
@@ -20,9 +20,13 @@ import com.google.common.collect.ImmutableMap;
 import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherTestBase;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
 import jetbrains.buildServer.serverSide.BuildTypeEx;
 import jetbrains.buildServer.serverSide.impl.ProjectEx;
 import jetbrains.buildServer.serverSide.impl.auth.SecurityContextImpl;
@@ -83,6 +87,9 @@ public class SpaceSettingsTest extends CommitStatusPublisherTestBase {
                                    myWebLinks,
                                    myProblems,
                                    trustStoreProvider,
+                                   new AdaptiveConcurrencyLimiter(new PublishingMetrics()),
+                                   new AdaptiveTimeouts(new PublishingMetrics()),
+                                   new PublishedPayloads(new PublishingMetrics()),
                                    myConnectionsManager,
                                    securityContext,
                                    myMockApplicationInformationManager);
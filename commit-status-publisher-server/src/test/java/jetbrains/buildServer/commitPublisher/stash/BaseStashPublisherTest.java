@@ -50,6 +50,9 @@ public abstract class BaseStashPublisherTest extends HttpPublisherTest {
       myWebLinks,
       myProblems,
       myTrustStoreProvider,
+      new AdaptiveConcurrencyLimiter(new PublishingMetrics()),
+      new AdaptiveTimeouts(new PublishingMetrics()),
+      new PublishedPayloads(new PublishingMetrics()),
       myOAuthConnectionsManager,
       myOAuthTokenStorage,
       myFixture.getUserModel(),
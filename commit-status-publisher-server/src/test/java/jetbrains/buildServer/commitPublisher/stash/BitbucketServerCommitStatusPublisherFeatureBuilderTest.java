@@ -1,9 +1,13 @@
 package jetbrains.buildServer.commitPublisher.stash;
 
 import com.google.common.collect.ImmutableMap;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherSettings;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
@@ -29,7 +33,7 @@ public class BitbucketServerCommitStatusPublisherFeatureBuilderTest extends Base
     final SSLTrustStoreProvider trustStoreProvider = () -> null;
 
     final CommitStatusPublisherSettings settings =
-      new StashSettings(new MockPluginDescriptor(), myWebLinks, problems, trustStoreProvider, myFixture.getSingletonService(OAuthConnectionsManager.class),
+      new StashSettings(new MockPluginDescriptor(), myWebLinks, problems, trustStoreProvider, new AdaptiveConcurrencyLimiter(new PublishingMetrics()), new AdaptiveTimeouts(new PublishingMetrics()), new PublishedPayloads(new PublishingMetrics()), myFixture.getSingletonService(OAuthConnectionsManager.class),
                         myFixture.getSingletonService(OAuthTokensStorage.class), myFixture.getUserModel(), myFixture.getSecurityContext(), myFixture.getProjectManager(),
                         new StashBuildNameProvider());
     myBitbucketServerFeatureBuilder = new BitbucketServerCommitStatusPublisherFeatureBuilder(settings);
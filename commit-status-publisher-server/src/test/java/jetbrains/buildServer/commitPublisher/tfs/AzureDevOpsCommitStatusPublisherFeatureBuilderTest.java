@@ -1,8 +1,12 @@
 package jetbrains.buildServer.commitPublisher.tfs;
 
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherProblems;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherSettings;
 import jetbrains.buildServer.commitPublisher.MockPluginDescriptor;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
 import jetbrains.buildServer.serverSide.impl.BaseServerTestCase;
 import jetbrains.buildServer.serverSide.oauth.OAuthConnectionsManager;
 import jetbrains.buildServer.serverSide.oauth.OAuthTokensStorage;
@@ -30,7 +34,7 @@ public class AzureDevOpsCommitStatusPublisherFeatureBuilderTest extends BaseServ
 
     final CommitStatusPublisherSettings settings =
       new TfsPublisherSettings(new MockPluginDescriptor(), myWebLinks, problems, myFixture.getSingletonService(OAuthConnectionsManager.class),
-                               myFixture.getSingletonService(OAuthTokensStorage.class), myFixture.getSecurityContext(), myFixture.getUserModel(), trustStoreProvider,
+                               myFixture.getSingletonService(OAuthTokensStorage.class), myFixture.getSecurityContext(), myFixture.getUserModel(), trustStoreProvider, new AdaptiveConcurrencyLimiter(new PublishingMetrics()), new AdaptiveTimeouts(new PublishingMetrics()), new PublishedPayloads(new PublishingMetrics()),
                                new TfsBuildNameProvider(), myFixture.getProjectManager());
     myAzureDevOpsFeatureBuilder = new AzureDevOpsCommitStatusPublisherFeatureBuilder(settings);
   }
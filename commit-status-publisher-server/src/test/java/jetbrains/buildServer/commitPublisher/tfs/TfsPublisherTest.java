@@ -76,7 +76,7 @@ public class TfsPublisherTest extends HttpPublisherTest {
   protected void setUp() throws Exception {
     super.setUp();
     myPublisherSettings = new TfsPublisherSettings(new MockPluginDescriptor(), myWebLinks, myProblems, myOAuthConnectionsManager, myOAuthTokenStorage,
-                                                   myFixture.getSecurityContext(), myFixture.getUserModel(), myTrustStoreProvider, myBuildNameProvider,
+                                                   myFixture.getSecurityContext(), myFixture.getUserModel(), myTrustStoreProvider, new AdaptiveConcurrencyLimiter(new PublishingMetrics()), new AdaptiveTimeouts(new PublishingMetrics()), new PublishedPayloads(new PublishingMetrics()), myBuildNameProvider,
                                                    myFixture.getProjectManager());
     myPublisher = new TfsStatusPublisher(myPublisherSettings, myBuildType, FEATURE_ID, myWebLinks, myParams, myProblems, new CommitStatusesCache<>(), myBuildNameProvider);
     myVcsURL = getServerUrl() + "/_git/" + CORRECT_REPO;
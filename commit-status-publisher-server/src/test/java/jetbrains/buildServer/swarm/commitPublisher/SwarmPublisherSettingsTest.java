@@ -19,8 +19,12 @@ package jetbrains.buildServer.swarm.commitPublisher;
 import com.google.common.collect.ImmutableMap;
 import java.util.Collections;
 import java.util.Set;
+import jetbrains.buildServer.commitPublisher.AdaptiveConcurrencyLimiter;
+import jetbrains.buildServer.commitPublisher.AdaptiveTimeouts;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisher;
 import jetbrains.buildServer.commitPublisher.CommitStatusPublisherTestBase;
+import jetbrains.buildServer.commitPublisher.PublishedPayloads;
+import jetbrains.buildServer.commitPublisher.PublishingMetrics;
 import jetbrains.buildServer.serverSide.MockServerPluginDescriptior;
 import jetbrains.buildServer.swarm.SwarmClientManager;
 import jetbrains.buildServer.util.cache.ResetCacheRegisterImpl;
@@ -43,7 +47,7 @@ public class SwarmPublisherSettingsTest extends CommitStatusPublisherTestBase {
 
     final SSLTrustStoreProvider trustStoreProvider = () -> null;
     final SwarmClientManager clientManager = new SwarmClientManager(myWebLinks, trustStoreProvider, new ResetCacheRegisterImpl());
-    mySettings = new SwarmPublisherSettings(new MockServerPluginDescriptior(), myFixture.getWebLinks(), myProblems, trustStoreProvider, clientManager);
+    mySettings = new SwarmPublisherSettings(new MockServerPluginDescriptior(), myFixture.getWebLinks(), myProblems, trustStoreProvider, new AdaptiveConcurrencyLimiter(new PublishingMetrics()), new AdaptiveTimeouts(new PublishingMetrics()), new PublishedPayloads(new PublishingMetrics()), clientManager);
   }
 
   @Test
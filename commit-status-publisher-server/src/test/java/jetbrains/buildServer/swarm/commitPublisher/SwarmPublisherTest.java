@@ -73,7 +73,7 @@ public class SwarmPublisherTest extends HttpPublisherTest {
     super.setUp();
 
     SwarmClientManager clientManager = new SwarmClientManager(myWebLinks, () -> null, new ResetCacheRegisterImpl());
-    myPublisherSettings = new SwarmPublisherSettings(new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, clientManager);
+    myPublisherSettings = new SwarmPublisherSettings(new MockPluginDescriptor(), myWebLinks, myProblems, myTrustStoreProvider, new AdaptiveConcurrencyLimiter(new PublishingMetrics()), new AdaptiveTimeouts(new PublishingMetrics()), new PublishedPayloads(new PublishingMetrics()), clientManager);
 
     Map<String, String> params = getPublisherParams();
     myPublisher = new SwarmPublisher((SwarmPublisherSettings)myPublisherSettings, myBuildType, FEATURE_ID, params, myProblems, myWebLinks,